@@ -18,16 +18,17 @@
 package org.apache.hadoop.gateway.identityasserter.common.filter;
 
 import java.io.IOException;
-import java.security.AccessController;
 import java.security.Principal;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import javax.security.auth.Subject;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -44,6 +45,7 @@ import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.hadoop.gateway.filter.security.AbstractIdentityAssertionBase;
 import org.apache.hadoop.gateway.i18n.GatewaySpiResources;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
 import org.apache.hadoop.gateway.security.GroupPrincipal;
 import org.apache.hadoop.gateway.security.ImpersonatedPrincipal;
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
@@ -60,6 +62,11 @@ public abstract class AbstractIdentityAssertionFilter extends
         AuditConstants.DEFAULT_AUDITOR_NAME, AuditConstants.KNOX_SERVICE_NAME,
         AuditConstants.KNOX_COMPONENT_NAME );
 
+  public static final String PRINCIPAL_MAPPING_CACHE_SIZE_PARAM = "principal.mapping.cache.size";
+  public static final int DEFAULT_PRINCIPAL_MAPPING_CACHE_SIZE = 1000;
+
+  private PrincipalMappingCache principalMappingCache = null;
+
   /**
    * 
    */
@@ -87,6 +94,47 @@ public abstract class AbstractIdentityAssertionFilter extends
    */
   public abstract String mapUserPrincipal(String principalName);
 
+  /**
+   * Enables caching of the results of mapUserPrincipal.  Only subclasses whose mapping depends
+   * solely on the principal name and the filter configuration should enable this.  Any previously
+   * cached mappings are discarded so this should be called from init.  The size of the cache can be
+   * set with the principal.mapping.cache.size parameter and a size of 0 disables the cache.
+   * @param filterConfig the filter configuration
+   */
+  protected void enablePrincipalMappingCache(FilterConfig filterConfig) {
+    int size = DEFAULT_PRINCIPAL_MAPPING_CACHE_SIZE;
+    String value = filterConfig.getInitParameter(PRINCIPAL_MAPPING_CACHE_SIZE_PARAM);
+    if (value != null && !value.trim().isEmpty()) {
+      try {
+        size = Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {
+        // Ignore it and use the default.
+      }
+    }
+    principalMappingCache = size > 0 ? new PrincipalMappingCache(size) : null;
+  }
+
+  /**
+   * Maps the principal name via mapUserPrincipal, using previously mapped names if the cache
+   * has been enabled.
+   * @param principalName
+   * @return new username or the provided principalName
+   */
+  protected String mapUserPrincipalCached(String principalName) {
+    PrincipalMappingCache cache = principalMappingCache;
+    if (cache == null || principalName == null) {
+      return mapUserPrincipal(principalName);
+    }
+    String mappedPrincipalName = cache.get(principalName);
+    if (mappedPrincipalName == null) {
+      mappedPrincipalName = mapUserPrincipal(principalName);
+      if (mappedPrincipalName != null) {
+        cache.put(principalName, mappedPrincipalName);
+      }
+    }
+    return mappedPrincipalName;
+  }
+
   /**
    * @param wrapper
    * @param response
@@ -106,11 +154,11 @@ public abstract class AbstractIdentityAssertionFilter extends
         boolean impersonationNeeded = false;
         boolean groupsMapped = false;
         
-        // look up the current Java Subject and assosciated group principals
-        Subject currentSubject = Subject.getSubject(AccessController.getContext());
-        Set<?> currentGroups = currentSubject.getPrincipals(GroupPrincipal.class);
+        // look up the security context of the request and its group principals
+        GatewaySecurityContext context = GatewaySecurityContext.get(request);
+        List<GroupPrincipal> currentGroups = context.getGroupPrincipals();
         
-        primaryPrincipal = (PrimaryPrincipal) currentSubject.getPrincipals(PrimaryPrincipal.class).toArray()[0];
+        primaryPrincipal = context.getPrimaryPrincipal();
         if (primaryPrincipal != null) {
           if (!primaryPrincipal.getName().equals(mappedPrincipalName)) {
             impersonationNeeded = true;
@@ -136,9 +184,7 @@ public abstract class AbstractIdentityAssertionFilter extends
           principals.add(primaryPrincipal);
           
           // map group principals from current Subject into newly created Subject
-          for (Object obj : currentGroups) {
-            principals.add((Principal)obj);
-          }
+          principals.addAll(currentGroups);
           
           if (impersonationNeeded) {
             impersonationPrincipal = new ImpersonatedPrincipal(mappedPrincipalName);
@@ -147,6 +193,7 @@ public abstract class AbstractIdentityAssertionFilter extends
           if (groupsMapped) {
             addMappedGroupsToSubject(mappedPrincipalName, groups, subject);
           }
+          GatewaySecurityContext.set(request, subject);
           doAs(request, response, chain, subject);
         }
         else {
@@ -27,9 +27,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 
 import org.apache.hadoop.gateway.identityasserter.common.filter.AbstractIdentityAssertionFilter;
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
 
 import java.io.IOException;
-import java.security.AccessController;
 
 public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilter {
   /* (non-Javadoc)
@@ -53,11 +53,15 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
    */
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) 
       throws IOException, ServletException {
-    Subject subject = Subject.getSubject(AccessController.getContext());
+    GatewaySecurityContext context = GatewaySecurityContext.get(request);
+    if (context == null) {
+      throw new ServletException("No authenticated Subject found for identity assertion, an authentication provider must run before it");
+    }
+    Subject subject = context.getSubject();
 
-    String principalName = getPrincipalName(subject);
+    String principalName = context.getPrimaryPrincipalName();
     
-    String mappedPrincipalName = mapUserPrincipal(principalName);
+    String mappedPrincipalName = mapUserPrincipalCached(principalName);
     String[] groups = mapGroupPrincipals(mappedPrincipalName, subject);
 
     HttpServletRequestWrapper wrapper = wrapHttpServletRequest(
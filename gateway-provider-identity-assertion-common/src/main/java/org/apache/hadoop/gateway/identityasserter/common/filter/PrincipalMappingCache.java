@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.identityasserter.common.filter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded cache of principal names to their mapped names.
+ * Lookups are lock free.  Rather than tracking usage the cache is simply emptied when it
+ * fills up, which is enough to bound memory when the set of active users is usually far
+ * smaller than the capacity.
+ */
+class PrincipalMappingCache {
+
+  private final int capacity;
+  private final ConcurrentMap<String,String> map;
+
+  PrincipalMappingCache( int capacity ) {
+    this.capacity = capacity;
+    this.map = new ConcurrentHashMap<String,String>();
+  }
+
+  String get( String principalName ) {
+    return map.get( principalName );
+  }
+
+  void put( String principalName, String mappedPrincipalName ) {
+    if( map.size() >= capacity ) {
+      map.clear();
+    }
+    map.put( principalName, mappedPrincipalName );
+  }
+
+}
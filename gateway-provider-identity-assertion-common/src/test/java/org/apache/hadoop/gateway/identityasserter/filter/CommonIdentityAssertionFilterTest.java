@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway.identityasserter.filter;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -127,4 +128,60 @@ public class CommonIdentityAssertionFilterTest {
     assertTrue(mappedGroups[1], mappedGroups[1].equals("USERS") || mappedGroups[1].equals("ADMIN"));
   }
 
+  @Test
+  public void testMissingSubjectFails() throws IOException {
+    final HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.replay( request );
+    final HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+    final FilterChain chain = EasyMock.createMock( FilterChain.class );
+    EasyMock.replay( chain );
+
+    try {
+      filter.doFilter( request, response, chain );
+      fail( "Expected ServletException" );
+    } catch( ServletException e ) {
+      assertTrue( e.getMessage(), e.getMessage().contains( "No authenticated Subject" ) );
+    }
+  }
+
+  @Test
+  public void testPrincipalMappingCache() throws ServletException {
+    CountingIdentityAssertionFilter counting = new CountingIdentityAssertionFilter();
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.replay( config );
+    counting.init( config );
+    assertEquals( "LARRY", counting.map( "larry" ) );
+    assertEquals( "LARRY", counting.map( "larry" ) );
+    assertEquals( 1, counting.count );
+
+    config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getInitParameter( "principal.mapping.cache.size" ) ).andReturn( "0" ).anyTimes();
+    EasyMock.replay( config );
+    counting.init( config );
+    counting.map( "larry" );
+    counting.map( "larry" );
+    assertEquals( 3, counting.count );
+  }
+
+  private static class CountingIdentityAssertionFilter extends CommonIdentityAssertionFilter {
+    private int count = 0;
+
+    @Override
+    public void init( FilterConfig filterConfig ) throws ServletException {
+      enablePrincipalMappingCache( filterConfig );
+    }
+
+    @Override
+    public String mapUserPrincipal( String principalName ) {
+      count++;
+      return principalName.toUpperCase();
+    }
+
+    private String map( String principalName ) {
+      return mapUserPrincipalCached( principalName );
+    }
+  }
+
 }
@@ -39,6 +39,7 @@ public class ConcatIdentityAssertionFilter extends CommonIdentityAssertionFilter
     if (suffix == null) {
       suffix = "";
     }
+    enablePrincipalMappingCache(filterConfig);
   }
 
   /* (non-Javadoc)
@@ -48,6 +48,7 @@ public class RegexIdentityAssertionFilter extends CommonIdentityAssertionFilter
       }
       dict = loadDictionary( filterConfig.getInitParameter( "lookup" ) );
       template = new RegexTemplate( input, output, dict );
+      enablePrincipalMappingCache( filterConfig );
     } catch ( PrincipalMappingException e ) {
       throw new ServletException( e );
     }
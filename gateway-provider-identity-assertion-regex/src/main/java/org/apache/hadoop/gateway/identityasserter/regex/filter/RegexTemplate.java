@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.gateway.identityasserter.regex.filter;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -29,6 +31,9 @@ public class RegexTemplate {
   Pattern inputPattern;
   String outputTemplate;
   Map<String,String> lookupTable;
+  // The output template split into literal text and group references once instead of being rescanned
+  // for every input.
+  private Part[] parts;
 
   public RegexTemplate( String regex, String template ) {
     this( regex, template, null );
@@ -38,38 +43,75 @@ public class RegexTemplate {
     this.inputPattern = Pattern.compile( regex );
     this.outputTemplate = template;
     this.lookupTable = map;
+    this.parts = compileTemplate( template );
   }
 
   public String apply( String input ) {
     String output = outputTemplate;
     Matcher inputMatcher = inputPattern.matcher( input );
     if( inputMatcher.find() ) {
-      output = expandTemplate( inputMatcher, output );
+      output = expandTemplate( inputMatcher );
     }
     return output;
   }
 
-  private String expandTemplate( Matcher inputMatcher, String output ) {
-    Matcher directMatcher = directPattern.matcher( output );
+  private String expandTemplate( Matcher inputMatcher ) {
+    StringBuilder output = new StringBuilder( outputTemplate.length() + 32 );
+    for( Part part : parts ) {
+      String value;
+      if( part.literal != null ) {
+        value = part.literal;
+      } else if( part.lookup ) {
+        value = null;
+        if( lookupTable != null ) {
+          value = lookupTable.get( inputMatcher.group( part.group ) );
+        }
+      } else {
+        value = inputMatcher.group( part.group );
+      }
+      if( value != null ) {
+        output.append( value );
+      }
+    }
+    return output.toString();
+  }
+
+  private static Part[] compileTemplate( String template ) {
+    List<Part> parts = new ArrayList<Part>();
+    Matcher directMatcher = directPattern.matcher( template );
+    int index = 0;
     while( directMatcher.find() ) {
-      String lookupValue = null;
+      if( directMatcher.start() > index ) {
+        parts.add( new Part( template.substring( index, directMatcher.start() ) ) );
+      }
       String lookupStr = directMatcher.group( 1 );
       Matcher indirectMatcher = indirectPattern.matcher( lookupStr );
       if( indirectMatcher.find() ) {
-        lookupStr = indirectMatcher.group( 1 );
-        int lookupIndex = Integer.parseInt( lookupStr );
-        if( lookupTable != null ) {
-          String lookupKey = inputMatcher.group( lookupIndex );
-          lookupValue = lookupTable.get( lookupKey );
-        }
+        parts.add( new Part( Integer.parseInt( indirectMatcher.group( 1 ) ), true ) );
       } else {
-        int lookupIndex = Integer.parseInt( lookupStr );
-        lookupValue = inputMatcher.group( lookupIndex );
+        parts.add( new Part( Integer.parseInt( lookupStr ), false ) );
       }
-      output = directMatcher.replaceFirst( lookupValue == null ? "" : lookupValue );
-      directMatcher = directPattern.matcher( output );
+      index = directMatcher.end();
+    }
+    if( index < template.length() ) {
+      parts.add( new Part( template.substring( index ) ) );
+    }
+    return parts.toArray( new Part[ parts.size() ] );
+  }
+
+  private static class Part {
+    private String literal;
+    private int group;
+    private boolean lookup;
+
+    private Part( String literal ) {
+      this.literal = literal;
+    }
+
+    private Part( int group, boolean lookup ) {
+      this.group = group;
+      this.lookup = lookup;
     }
-    return output;
   }
 
 }
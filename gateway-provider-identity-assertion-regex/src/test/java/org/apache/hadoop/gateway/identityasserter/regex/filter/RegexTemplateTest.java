@@ -69,4 +69,26 @@ public class RegexTemplateTest {
 
   }
 
+  @Test
+  public void testExpandedValuesAreLiteral() {
+
+    RegexTemplate template;
+    Map<String,String> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    map.put( "us", "$1\\" );
+
+    String actual;
+
+    template = new RegexTemplate( "(.*)@(.*?)\\..*", "{2}/{1}/{[2]}/{1}", map );
+    actual = template.apply( "{1}@us.apache.org" );
+    assertThat( actual, is( "us/{1}/$1\\/{1}" ) );
+
+    template = new RegexTemplate( "(.*)@.*", "constant" );
+    actual = template.apply( "member@apache.org" );
+    assertThat( actual, is( "constant" ) );
+
+    actual = template.apply( "no-match" );
+    assertThat( actual, is( "constant" ) );
+
+  }
+
 }
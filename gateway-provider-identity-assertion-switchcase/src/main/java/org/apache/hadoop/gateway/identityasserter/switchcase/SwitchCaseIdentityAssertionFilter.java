@@ -57,6 +57,7 @@ public class SwitchCaseIdentityAssertionFilter extends CommonIdentityAssertionFi
         // Ignore it and use the default.
       }
     }
+    enablePrincipalMappingCache( filterConfig );
   }
 
   @Override
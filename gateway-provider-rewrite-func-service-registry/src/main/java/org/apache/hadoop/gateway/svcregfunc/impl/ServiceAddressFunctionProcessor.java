@@ -53,32 +53,40 @@ public class ServiceAddressFunctionProcessor
   }
 
   public String resolve( String parameter ) throws Exception {
-    String addr = parameter;
     String url = lookupServiceUrl( parameter );
     if( url != null ) {
-      Template template = Parser.parseLiteral( url );
-      Host host = template.getHost();
-      String hostStr = null;
-      if( host != null ) {
-        hostStr = host.getFirstValue().getPattern();
+      String addr = resolveServiceUrlCached( null, url );
+      if( addr != null ) {
+        parameter = addr;
       }
+    }
+    return parameter;
+  }
 
-      Port port = template.getPort();
-      String portStr = null;
-      if( port != null ) {
-        portStr = port.getFirstValue().getPattern();
-      }
+  @Override
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    String addr = null;
+    Template template = Parser.parseLiteral( url );
+    Host host = template.getHost();
+    String hostStr = null;
+    if( host != null ) {
+      hostStr = host.getFirstValue().getPattern();
+    }
 
-      if( hostStr != null && portStr != null ) {
-        addr = hostStr + ":" + portStr;
-      } else if( host != null && port == null ) {
-        addr = hostStr;
-      } else if( host == null && port != null ) {
-        addr = ":" + portStr;
-      }
+    Port port = template.getPort();
+    String portStr = null;
+    if( port != null ) {
+      portStr = port.getFirstValue().getPattern();
+    }
+
+    if( hostStr != null && portStr != null ) {
+      addr = hostStr + ":" + portStr;
+    } else if( host != null && port == null ) {
+      addr = hostStr;
+    } else if( host == null && port != null ) {
+      addr = ":" + portStr;
     }
     return addr;
   }
 
 }
-
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.svcregfunc.impl;
 
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.svcregfunc.api.ServiceHostFunctionDescriptor;
@@ -44,10 +45,9 @@ public class ServiceHostFunctionProcessor
       for( String parameter : parameters ) {
         String url = lookupServiceUrl( parameter );
         if( url != null ) {
-          Template template = Parser.parseLiteral( url );
-          Host host = template.getHost();
+          String host = resolveServiceUrlCached( null, url );
           if( host != null ) {
-            parameter = host.getFirstValue().getPattern();
+            parameter = host;
           }
         }
         results.add( parameter );
@@ -56,5 +56,14 @@ public class ServiceHostFunctionProcessor
     return results;
   }
 
-}
+  @Override
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    Template template = Parser.parseLiteral( url );
+    Host host = template.getHost();
+    if( host != null ) {
+      return host.getFirstValue().getPattern();
+    }
+    return null;
+  }
 
+}
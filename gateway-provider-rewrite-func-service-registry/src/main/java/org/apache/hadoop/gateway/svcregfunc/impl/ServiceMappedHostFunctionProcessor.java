@@ -18,6 +18,7 @@
 package org.apache.hadoop.gateway.svcregfunc.impl;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.services.GatewayServices;
@@ -55,26 +56,14 @@ public class ServiceMappedHostFunctionProcessor
   public List<String> resolve( UrlRewriteContext context, List<String> parameters ) throws Exception {
     List<String> results = null;
     if( parameters != null ) {
+      UrlRewriter.Direction direction = context.getDirection();
       results = new ArrayList<String>( parameters.size() );
       for( String parameter : parameters ) {
         String url = lookupServiceUrl( parameter );
         if( url != null ) {
-          Template template = Parser.parseLiteral( url );
-          Host host = template.getHost();
+          String host = resolveServiceUrlCached( direction, url );
           if( host != null ) {
-            String hostStr = host.getFirstValue().getPattern();
-            if( hostmap != null ) {
-              switch( context.getDirection() ) {
-                case IN:
-                  parameter = hostmap.resolveInboundHostName( hostStr );
-                  break;
-                case OUT:
-                  parameter = hostmap.resolveOutboundHostName( hostStr );
-                  break;
-              }
-            } else {
-              parameter = hostStr;
-            }
+            parameter = host;
           }
         }
         results.add( parameter );
@@ -83,5 +72,25 @@ public class ServiceMappedHostFunctionProcessor
     return results;
   }
 
-}
+  @Override
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    String hostStr = null;
+    Template template = Parser.parseLiteral( url );
+    Host host = template.getHost();
+    if( host != null ) {
+      hostStr = host.getFirstValue().getPattern();
+      if( hostmap != null ) {
+        switch( direction ) {
+          case IN:
+            hostStr = hostmap.resolveInboundHostName( hostStr );
+            break;
+          case OUT:
+            hostStr = hostmap.resolveOutboundHostName( hostStr );
+            break;
+        }
+      }
+    }
+    return hostStr;
+  }
 
+}
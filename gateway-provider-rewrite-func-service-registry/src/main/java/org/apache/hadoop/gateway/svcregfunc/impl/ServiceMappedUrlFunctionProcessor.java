@@ -67,24 +67,27 @@ public class ServiceMappedUrlFunctionProcessor
   public String resolve( UrlRewriter.Direction direction, String parameter ) throws Exception {
     String url = lookupServiceUrl( parameter );
     if( url != null ) {
-      URI outputUri;
-      URI inputUri = new URI( url );
-      String host = inputUri.getHost();
-      if( host != null && hostmap != null ) {
-        switch( direction ) {
-          case IN:
-            host = hostmap.resolveInboundHostName( host );
-            break;
-          case OUT:
-            host = hostmap.resolveOutboundHostName( host );
-            break;
-        }
-      }
-      outputUri = new URI( inputUri.getScheme(), inputUri.getUserInfo(), host, inputUri.getPort(), inputUri.getPath(), inputUri.getQuery(), inputUri.getFragment() );
-      parameter = outputUri.toString();
+      parameter = resolveServiceUrlCached( direction, url );
     }
     return parameter;
   }
 
-}
+  @Override
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    URI inputUri = new URI( url );
+    String host = inputUri.getHost();
+    if( host != null && hostmap != null ) {
+      switch( direction ) {
+        case IN:
+          host = hostmap.resolveInboundHostName( host );
+          break;
+        case OUT:
+          host = hostmap.resolveOutboundHostName( host );
+          break;
+      }
+    }
+    URI outputUri = new URI( inputUri.getScheme(), inputUri.getUserInfo(), host, inputUri.getPort(), inputUri.getPath(), inputUri.getQuery(), inputUri.getFragment() );
+    return outputUri.toString();
+  }
 
+}
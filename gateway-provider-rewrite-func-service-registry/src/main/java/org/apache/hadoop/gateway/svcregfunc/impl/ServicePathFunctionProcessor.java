@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.svcregfunc.impl;
 
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.svcregfunc.api.ServicePathFunctionDescriptor;
@@ -44,10 +45,9 @@ public class ServicePathFunctionProcessor
       for( String parameter : parameters ) {
         String url = lookupServiceUrl( parameter );
         if( url != null ) {
-          Template template = Parser.parseLiteral( url );
-          List<Path> path = template.getPath();
+          String path = resolveServiceUrlCached( null, url );
           if( path != null ) {
-            parameter = toString( path );
+            parameter = path;
           }
         }
         results.add( parameter );
@@ -56,6 +56,16 @@ public class ServicePathFunctionProcessor
     return results;
   }
 
+  @Override
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    Template template = Parser.parseLiteral( url );
+    List<Path> path = template.getPath();
+    if( path != null ) {
+      return toString( path );
+    }
+    return null;
+  }
+
   private String toString( List<Path> paths ) {
     StringBuilder s = new StringBuilder();
     for( Path path: paths ) {
@@ -69,4 +79,3 @@ public class ServicePathFunctionProcessor
   }
 
 }
-
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.svcregfunc.impl;
 
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.svcregfunc.api.ServicePortFunctionDescriptor;
@@ -44,10 +45,9 @@ public class ServicePortFunctionProcessor
       for( String parameter : parameters ) {
         String url = lookupServiceUrl( parameter );
         if( url != null ) {
-          Template template = Parser.parseLiteral( url );
-          Port port = template.getPort();
+          String port = resolveServiceUrlCached( null, url );
           if( port != null ) {
-            parameter = port.getFirstValue().getPattern();
+            parameter = port;
           }
         }
         results.add( parameter );
@@ -56,5 +56,14 @@ public class ServicePortFunctionProcessor
     return results;
   }
 
-}
+  @Override
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    Template template = Parser.parseLiteral( url );
+    Port port = template.getPort();
+    if( port != null ) {
+      return port.getFirstValue().getPattern();
+    }
+    return null;
+  }
 
+}
@@ -19,14 +19,26 @@ package org.apache.hadoop.gateway.svcregfunc.impl;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFunctionDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.ha.provider.HaProvider;
 import org.apache.hadoop.gateway.ha.provider.HaServletContextListener;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.registry.ServiceRegistry;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 abstract class ServiceRegistryFunctionProcessorBase<T extends UrlRewriteFunctionDescriptor> implements UrlRewriteFunctionProcessor<T> {
 
+  private static final int MAX_CACHED_URLS = 256;
+  private static final String UNRESOLVED = new String();
+
+  // The values computed from a service URL, by direction. They are keyed by the URL itself so a failover
+  // or registry update that changes the URL of a role is picked up without explicit invalidation.
+  private final Map<String,String> inboundValues = new ConcurrentHashMap<String,String>();
+  private final Map<String,String> outboundValues = new ConcurrentHashMap<String,String>();
+
   private String cluster;
   private GatewayServices services;
   private ServiceRegistry registry;
@@ -56,6 +68,8 @@ abstract class ServiceRegistryFunctionProcessorBase<T extends UrlRewriteFunction
   public void destroy() throws Exception {
     registry = null;
     cluster = null;
+    inboundValues.clear();
+    outboundValues.clear();
   }
 
   public String lookupServiceUrl( String role ) throws Exception {
@@ -65,6 +79,35 @@ abstract class ServiceRegistryFunctionProcessorBase<T extends UrlRewriteFunction
     return registry.lookupServiceURL( cluster, role );
   }
 
+  /**
+   * Returns the value computed from the service URL by resolveServiceUrl, computing it only the first time
+   * the URL is seen for the direction.
+   * @return The computed value or null if resolveServiceUrl returned null.
+   */
+  String resolveServiceUrlCached( UrlRewriter.Direction direction, String url ) throws Exception {
+    Map<String,String> values = direction == UrlRewriter.Direction.OUT ? outboundValues : inboundValues;
+    String value = values.get( url );
+    if( value == null ) {
+      value = resolveServiceUrl( direction, url );
+      if( value == null ) {
+        value = UNRESOLVED;
+      }
+      if( values.size() >= MAX_CACHED_URLS ) {
+        values.clear();
+      }
+      values.put( url, value );
+    }
+    return value == UNRESOLVED ? null : value;
+  }
+
+  /**
+   * Computes the function value from a service URL.  The value may only depend on the URL and the direction.
+   * @return The value or null to leave the function parameter unchanged.
+   */
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    return url;
+  }
+
   String cluster() {
     return cluster;
   }
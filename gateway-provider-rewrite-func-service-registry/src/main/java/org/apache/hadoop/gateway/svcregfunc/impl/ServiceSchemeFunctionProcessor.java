@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.svcregfunc.impl;
 
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.svcregfunc.api.ServiceSchemeFunctionDescriptor;
@@ -44,10 +45,9 @@ public class ServiceSchemeFunctionProcessor
       for( String parameter : parameters ) {
         String url = lookupServiceUrl( parameter );
         if( url != null && !url.equals( parameter ) ) {
-          Template template = Parser.parseLiteral( url );
-          Scheme scheme = template.getScheme();
+          String scheme = resolveServiceUrlCached( null, url );
           if( scheme != null ) {
-            parameter = scheme.getFirstValue().getPattern();
+            parameter = scheme;
           }
         }
         results.add( parameter );
@@ -56,5 +56,14 @@ public class ServiceSchemeFunctionProcessor
     return results;
   }
 
-}
+  @Override
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    Template template = Parser.parseLiteral( url );
+    Scheme scheme = template.getScheme();
+    if( scheme != null ) {
+      return scheme.getFirstValue().getPattern();
+    }
+    return null;
+  }
 
+}
@@ -39,7 +39,6 @@ public class ServiceUrlFunctionProcessor
   public List<String> resolve( UrlRewriteContext context, List<String> parameters ) throws Exception {
     List<String> results = null;
     if( parameters != null ) {
-      UrlRewriter.Direction direction = context.getDirection();
       results = new ArrayList<String>( parameters.size() );
       for( String parameter : parameters ) {
         parameter = resolve( parameter );
@@ -50,15 +49,17 @@ public class ServiceUrlFunctionProcessor
   }
 
   private String resolve( String parameter ) throws Exception {
-     String url = lookupServiceUrl( parameter );
-     if( url != null ) {
-        URI outputUri;
-        URI inputUri = new URI( url );
-        String host = inputUri.getHost();
-        outputUri = new URI( inputUri.getScheme(), inputUri.getUserInfo(), host, inputUri.getPort(), inputUri.getPath(), inputUri.getQuery(), inputUri.getFragment() );
-        parameter = outputUri.toString();
-     }
-     return parameter;
+    String url = lookupServiceUrl( parameter );
+    if( url != null ) {
+      parameter = resolveServiceUrlCached( null, url );
+    }
+    return parameter;
   }
-}
 
+  @Override
+  String resolveServiceUrl( UrlRewriter.Direction direction, String url ) throws Exception {
+    URI inputUri = new URI( url );
+    URI outputUri = new URI( inputUri.getScheme(), inputUri.getUserInfo(), inputUri.getHost(), inputUri.getPort(), inputUri.getPath(), inputUri.getQuery(), inputUri.getFragment() );
+    return outputUri.toString();
+  }
+}
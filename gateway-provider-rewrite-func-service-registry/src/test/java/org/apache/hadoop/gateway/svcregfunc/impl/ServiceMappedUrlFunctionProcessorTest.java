@@ -151,4 +151,41 @@ public class ServiceMappedUrlFunctionProcessorTest {
     func.destroy();
   }
 
+  @Test
+  public void testResolveCachedUntilServiceUrlChanges() throws Exception {
+    HostMapper hm = EasyMock.createStrictMock( HostMapper.class );
+    EasyMock.expect( hm.resolveInboundHostName( "test-host" ) ).andReturn( "test-internal-host" ).once();
+    EasyMock.expect( hm.resolveInboundHostName( "test-other-host" ) ).andReturn( "test-other-internal-host" ).once();
+
+    HostMapperService hms = EasyMock.createNiceMock( HostMapperService.class );
+    EasyMock.expect( hms.getHostMapper( "test-cluster" ) ).andReturn( hm ).anyTimes();
+
+    ServiceRegistry reg = EasyMock.createNiceMock( ServiceRegistry.class );
+    EasyMock.expect( reg.lookupServiceURL( "test-cluster", "test-service" ) ).andReturn( "test-scheme://test-host:777/test-path" ).times( 3 );
+    EasyMock.expect( reg.lookupServiceURL( "test-cluster", "test-service" ) ).andReturn( "test-scheme://test-other-host:777/test-path" ).anyTimes();
+
+    GatewayServices svc = EasyMock.createNiceMock( GatewayServices.class );
+    EasyMock.expect( svc.getService( GatewayServices.SERVICE_REGISTRY_SERVICE ) ).andReturn( reg ).anyTimes();
+    EasyMock.expect( svc.getService( GatewayServices.HOST_MAPPING_SERVICE ) ).andReturn( hms ).anyTimes();
+
+    UrlRewriteEnvironment env = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    EasyMock.expect( env.getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE ) ).andReturn( svc ).anyTimes();
+    EasyMock.expect( env.getAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE ) ).andReturn( "test-cluster" ).anyTimes();
+    EasyMock.replay( hm, hms, reg, svc, env );
+
+    ServiceMappedUrlFunctionProcessor func = new ServiceMappedUrlFunctionProcessor();
+    func.initialize( env, desc );
+
+    // The host map is only consulted the first time a service URL is seen.
+    for( int i = 0; i < 3; i++ ) {
+      assertThat( func.resolve( ctx, Arrays.asList( "test-service" ) ), contains( "test-scheme://test-internal-host:777/test-path" ) );
+    }
+    // A new URL for the role, after a failover for example, is resolved again.
+    assertThat( func.resolve( ctx, Arrays.asList( "test-service" ) ), contains( "test-scheme://test-other-internal-host:777/test-path" ) );
+    assertThat( func.resolve( ctx, Arrays.asList( "test-service" ) ), contains( "test-scheme://test-other-internal-host:777/test-path" ) );
+    EasyMock.verify( hm );
+
+    func.destroy();
+  }
+
 }
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An unsynchronized writer used by the filter readers to stage rewritten output until it is read.
+ * Unlike StringWriter it does not synchronize every write and the backing array is reused once drained.
+ * Default sized arrays are returned to a small shared pool on close so that each response does not
+ * allocate a new one.  The buffer can not be written once closed since the array may belong to another
+ * reader by then.
+ */
+public class FilterCharBuffer extends Writer {
+
+  private static final int DEFAULT_CAPACITY = 8 * 1024;
+  private static final int POOL_SIZE = 64;
+  private static final BlockingQueue<char[]> POOL = new ArrayBlockingQueue<char[]>( POOL_SIZE );
+
+  private char[] chars;
+  private int offset;
+  private int length;
+
+  public FilterCharBuffer() {
+    chars = POOL.poll();
+    if( chars == null ) {
+      chars = new char[ DEFAULT_CAPACITY ];
+    }
+    offset = 0;
+    length = 0;
+  }
+
+  /**
+   * @return The number of chars written but not yet read.
+   */
+  public int available() {
+    return length - offset;
+  }
+
+  /**
+   * Moves up to count chars into the destination array.
+   * @return The number of chars moved, which is zero when nothing is available.
+   */
+  public int read( char[] destBuffer, int destOffset, int destCount ) {
+    int count = Math.min( destCount, length - offset );
+    if( count > 0 ) {
+      System.arraycopy( chars, offset, destBuffer, destOffset, count );
+      offset += count;
+      if( offset == length ) {
+        offset = 0;
+        length = 0;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void write( int c ) throws IOException {
+    ensureCapacity( 1 );
+    chars[ length++ ] = (char)c;
+  }
+
+  @Override
+  public void write( char[] cbuf, int off, int len ) throws IOException {
+    ensureCapacity( len );
+    System.arraycopy( cbuf, off, chars, length, len );
+    length += len;
+  }
+
+  @Override
+  public void write( String str ) throws IOException {
+    write( str, 0, str.length() );
+  }
+
+  @Override
+  public void write( String str, int off, int len ) throws IOException {
+    ensureCapacity( len );
+    str.getChars( off, off + len, chars, length );
+    length += len;
+  }
+
+  @Override
+  public Writer append( CharSequence csq ) throws IOException {
+    if( csq == null ) {
+      csq = "null";
+    }
+    return append( csq, 0, csq.length() );
+  }
+
+  @Override
+  public Writer append( CharSequence csq, int start, int end ) throws IOException {
+    if( csq == null ) {
+      csq = "null";
+    }
+    int len = end - start;
+    ensureCapacity( len );
+    if( csq instanceof String ) {
+      ((String)csq).getChars( start, end, chars, length );
+    } else if( csq instanceof StringBuilder ) {
+      ((StringBuilder)csq).getChars( start, end, chars, length );
+    } else {
+      for( int i = start; i < end; i++ ) {
+        chars[ length + i - start ] = csq.charAt( i );
+      }
+    }
+    length += len;
+    return this;
+  }
+
+  @Override
+  public Writer append( char c ) throws IOException {
+    write( c );
+    return this;
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+    char[] released = chars;
+    if( released != null ) {
+      chars = null;
+      offset = 0;
+      length = 0;
+      if( released.length == DEFAULT_CAPACITY ) {
+        POOL.offer( released );
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return chars == null ? "" : new String( chars, offset, length - offset );
+  }
+
+  private void ensureCapacity( int count ) throws IOException {
+    if( chars == null ) {
+      throw new IOException( "closed" );
+    }
+    if( length + count > chars.length ) {
+      // Reclaim the already read space before growing.
+      if( offset > 0 ) {
+        System.arraycopy( chars, offset, chars, 0, length - offset );
+        length -= offset;
+        offset = 0;
+      }
+      if( length + count > chars.length ) {
+        chars = Arrays.copyOf( chars, Math.max( chars.length * 2, length + count ) );
+      }
+    }
+  }
+
+}
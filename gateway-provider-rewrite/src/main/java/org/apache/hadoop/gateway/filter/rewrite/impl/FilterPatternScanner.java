@@ -0,0 +1,389 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the matches of all of a content's apply selectors in a single pass over some text.
+ * Where matches of several selectors overlap the one that starts first wins, ties going to the
+ * selector declared first.
+ * <p>
+ * Most selectors are a regex around a literal URL path (e.g. "/cluster/app").  Those literals are
+ * loaded into an Aho-Corasick automaton so that a single scan of the text determines which
+ * selectors could match at all.  Only those have their regex run.  Selectors without a required
+ * literal are always run.
+ * <p>
+ * A scanner is not thread safe and is intended to be created once per filter reader.
+ */
+public class FilterPatternScanner {
+
+  private static final int MIN_LITERAL_LENGTH = 2;
+  // Literals are limited to ASCII so that the automaton can be a dense table.
+  private static final int ALPHABET = 128;
+  // Escapes whose meaning continues past the char following the backslash.
+  private static final String MULTI_CHAR_ESCAPES = "xuckpPN";
+
+  private UrlRewriteFilterApplyDescriptor[] applies;
+  private Pattern[] patterns;
+  // The next state for each state and char.  Failure links are already folded in.
+  private int[][] transitions;
+  // The selectors whose literal ends at each state, including those ending at a suffix.
+  private int[][] outputs;
+  // The selectors that must always be run because no required literal was found.
+  private boolean[] unfiltered;
+  private boolean prefiltered;
+  private int rewrites;
+
+  public FilterPatternScanner( UrlRewriteFilterContentDescriptor config, UrlRewriteFilterPathDescriptor.Compiler<Pattern> compiler ) {
+    List<UrlRewriteFilterApplyDescriptor> list = new ArrayList<UrlRewriteFilterApplyDescriptor>();
+    if( config != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+        if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
+          list.add( (UrlRewriteFilterApplyDescriptor)selector );
+        }
+      }
+    }
+    applies = list.toArray( new UrlRewriteFilterApplyDescriptor[ list.size() ] );
+    patterns = new Pattern[ applies.length ];
+    unfiltered = new boolean[ applies.length ];
+    String[] literals = new String[ applies.length ];
+    for( int i = 0; i < applies.length; i++ ) {
+      patterns[ i ] = applies[ i ].compiledPath( compiler );
+      literals[ i ] = requiredLiteral( patterns[ i ] );
+      if( literals[ i ] == null ) {
+        unfiltered[ i ] = true;
+      } else {
+        prefiltered = true;
+      }
+    }
+    if( prefiltered ) {
+      buildAutomaton( literals );
+    }
+  }
+
+  /**
+   * @return True if there are no apply selectors so nothing will ever be rewritten.
+   */
+  public boolean isEmpty() {
+    return applies.length == 0;
+  }
+
+  /**
+   * Rewrites the whole of the value.
+   * @return The rewritten value or the input value itself if nothing matched.
+   */
+  public String filter( String value, UrlRewriteFilterReader filterReader ) {
+    if( isEmpty() ) {
+      return value;
+    }
+    StringBuilder output = new StringBuilder( value.length() + 64 );
+    filter( value, value.length(), true, filterReader, output );
+    if( rewrites == 0 ) {
+      return value;
+    }
+    return output.toString();
+  }
+
+  /**
+   * Rewrites the text up to, but not over, the limit.  Unless the text is complete any match that would
+   * cross the limit is left for a later call along with the rest of the text after its start.  The
+   * caller is responsible for keeping enough unconsumed text beyond the limit for matches to be decided.
+   * @param text The text to scan.
+   * @param limit The index in the text beyond which nothing will be consumed.
+   * @param complete True if there is no more text to follow, in which case the limit must be the length.
+   * @param filterReader Used to rewrite each match.
+   * @param output The rewritten text is appended here.
+   * @return The number of chars of the text consumed.
+   */
+  public int filter( CharSequence text, int limit, boolean complete, UrlRewriteFilterReader filterReader, StringBuilder output ) {
+    int length = text.length();
+    int index = 0;
+    rewrites = 0;
+    List<Integer> candidates = candidates( text );
+    List<Integer> active = new LinkedList<Integer>();
+    Matcher[] matchers = new Matcher[ applies.length ];
+    for( Integer i : candidates ) {
+      Matcher matcher = patterns[ i ].matcher( text );
+      if( matcher.find() ) {
+        matchers[ i ] = matcher;
+        active.add( i );
+      }
+    }
+    while( !active.isEmpty() ) {
+      int first = -1;
+      for( Integer i : active ) {
+        if( first < 0 || matchers[ i ].start() < matchers[ first ].start() ||
+            ( matchers[ i ].start() == matchers[ first ].start() && i < first ) ) {
+          first = i;
+        }
+      }
+      Matcher matcher = matchers[ first ];
+      int start = matcher.start();
+      int end = matcher.end();
+      if( start >= limit || ( !complete && end >= limit ) ) {
+        limit = Math.min( start, limit );
+        break;
+      }
+      output.append( text, index, start );
+      output.append( filterReader.filterValueString( null, matcher.group(), applies[ first ].rule() ) );
+      rewrites++;
+      index = end;
+      // Step over an empty match so that it isn't found again at the same position.
+      if( start == end ) {
+        if( index == length ) {
+          break;
+        }
+        output.append( text.charAt( index ) );
+        index++;
+      }
+      // Advance any matcher whose next match overlaps the text already consumed.
+      for( Iterator<Integer> iterator = active.iterator(); iterator.hasNext(); ) {
+        Integer i = iterator.next();
+        if( matchers[ i ].start() < index && !matchers[ i ].find( index ) ) {
+          iterator.remove();
+        }
+      }
+    }
+    if( index < limit ) {
+      output.append( text, index, limit );
+      index = limit;
+    }
+    return index;
+  }
+
+  // Returns the selectors worth running a regex for in declaration order.
+  private List<Integer> candidates( CharSequence text ) {
+    List<Integer> candidates = new ArrayList<Integer>( applies.length );
+    boolean[] found = unfiltered.clone();
+    if( prefiltered ) {
+      int state = 0;
+      for( int i = 0, n = text.length(); i < n; i++ ) {
+        char c = text.charAt( i );
+        state = ( c < ALPHABET ? transitions[ state ][ c ] : 0 );
+        for( int selector : outputs[ state ] ) {
+          found[ selector ] = true;
+        }
+      }
+    }
+    for( int i = 0; i < found.length; i++ ) {
+      if( found[ i ] ) {
+        candidates.add( i );
+      }
+    }
+    return candidates;
+  }
+
+  private void buildAutomaton( String[] literals ) {
+    List<int[]> gotos = new ArrayList<int[]>();
+    List<List<Integer>> matches = new ArrayList<List<Integer>>();
+    gotos.add( newState() );
+    matches.add( new ArrayList<Integer>() );
+    for( int i = 0; i < literals.length; i++ ) {
+      String literal = literals[ i ];
+      if( literal != null ) {
+        int state = 0;
+        for( int j = 0; j < literal.length(); j++ ) {
+          char c = literal.charAt( j );
+          if( gotos.get( state )[ c ] < 0 ) {
+            gotos.get( state )[ c ] = gotos.size();
+            gotos.add( newState() );
+            matches.add( new ArrayList<Integer>() );
+          }
+          state = gotos.get( state )[ c ];
+        }
+        matches.get( state ).add( i );
+      }
+    }
+    // Breadth first so that the failure state of each parent is complete before its children.
+    int[] failures = new int[ gotos.size() ];
+    LinkedList<Integer> queue = new LinkedList<Integer>();
+    int[] root = gotos.get( 0 );
+    for( int c = 0; c < ALPHABET; c++ ) {
+      if( root[ c ] < 0 ) {
+        root[ c ] = 0;
+      } else {
+        queue.addLast( root[ c ] );
+      }
+    }
+    while( !queue.isEmpty() ) {
+      int state = queue.removeFirst();
+      int[] next = gotos.get( state );
+      int[] fail = gotos.get( failures[ state ] );
+      for( int c = 0; c < ALPHABET; c++ ) {
+        int child = next[ c ];
+        if( child < 0 ) {
+          next[ c ] = fail[ c ];
+        } else {
+          failures[ child ] = fail[ c ];
+          matches.get( child ).addAll( matches.get( failures[ child ] ) );
+          queue.addLast( child );
+        }
+      }
+    }
+    transitions = gotos.toArray( new int[ gotos.size() ][] );
+    outputs = new int[ matches.size() ][];
+    for( int i = 0; i < outputs.length; i++ ) {
+      List<Integer> list = matches.get( i );
+      outputs[ i ] = new int[ list.size() ];
+      for( int j = 0; j < outputs[ i ].length; j++ ) {
+        outputs[ i ][ j ] = list.get( j );
+      }
+    }
+  }
+
+  private static int[] newState() {
+    int[] state = new int[ ALPHABET ];
+    Arrays.fill( state, -1 );
+    return state;
+  }
+
+  /**
+   * Finds the longest run of literal chars that every match of the pattern must contain.
+   * Only runs outside of groups and character classes are considered.  Patterns with flags,
+   * quoting or top level alternation are given up on.
+   * @return The literal or null if none could be determined.
+   */
+  static String requiredLiteral( Pattern pattern ) {
+    if( pattern.flags() != 0 ) {
+      return null;
+    }
+    String regex = pattern.pattern();
+    String best = "";
+    StringBuilder run = new StringBuilder();
+    int depth = 0;
+    for( int i = 0, n = regex.length(); i < n; i++ ) {
+      char c = regex.charAt( i );
+      switch( c ) {
+        case '\\':
+          if( i + 1 >= n ) {
+            return null;
+          }
+          char e = regex.charAt( ++i );
+          if( e == 'Q' || Character.isDigit( e ) || MULTI_CHAR_ESCAPES.indexOf( e ) >= 0 ) {
+            // Quoting, back references and escapes spanning several chars aren't worth parsing.
+            return null;
+          } else if( Character.isLetterOrDigit( e ) ) {
+            best = longest( best, run );
+          } else if( depth == 0 ) {
+            run.append( e );
+          }
+          break;
+        case '[':
+          best = longest( best, run );
+          i = skipClass( regex, i );
+          if( i < 0 ) {
+            return null;
+          }
+          break;
+        case '(':
+          if( i + 1 < n && regex.charAt( i + 1 ) == '?' && ( i + 2 >= n || regex.charAt( i + 2 ) != ':' ) ) {
+            return null;
+          }
+          best = longest( best, run );
+          depth++;
+          break;
+        case ')':
+          best = longest( best, run );
+          depth--;
+          break;
+        case '|':
+          if( depth == 0 ) {
+            return null;
+          }
+          break;
+        case '?':
+        case '*':
+        case '{':
+          // The preceding char is optional or repeated so it can't be part of the literal.
+          if( depth == 0 && run.length() > 0 ) {
+            run.setLength( run.length() - 1 );
+          }
+          best = longest( best, run );
+          if( c == '{' ) {
+            i = regex.indexOf( '}', i );
+            if( i < 0 ) {
+              return null;
+            }
+          }
+          break;
+        case '+':
+        case '.':
+        case '^':
+        case '$':
+          best = longest( best, run );
+          break;
+        default:
+          if( depth == 0 ) {
+            run.append( c );
+          }
+      }
+    }
+    best = longest( best, run );
+    for( int i = 0; i < best.length(); i++ ) {
+      if( best.charAt( i ) >= ALPHABET ) {
+        return null;
+      }
+    }
+    return best.length() < MIN_LITERAL_LENGTH ? null : best;
+  }
+
+  private static String longest( String best, StringBuilder run ) {
+    if( run.length() > best.length() ) {
+      best = run.toString();
+    }
+    run.setLength( 0 );
+    return best;
+  }
+
+  private static int skipClass( String regex, int i ) {
+    int depth = 0;
+    for( int n = regex.length(); i < n; i++ ) {
+      char c = regex.charAt( i );
+      if( c == '\\' ) {
+        i++;
+      } else if( c == '[' ) {
+        depth++;
+        // A ] immediately after the opening [ or [^ is a literal.
+        if( i + 1 < n && regex.charAt( i + 1 ) == '^' ) {
+          i++;
+        }
+        if( i + 1 < n && regex.charAt( i + 1 ) == ']' ) {
+          i++;
+        }
+      } else if( c == ']' ) {
+        depth--;
+        if( depth == 0 ) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+}
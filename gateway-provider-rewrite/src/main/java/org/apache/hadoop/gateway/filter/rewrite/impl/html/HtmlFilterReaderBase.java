@@ -27,18 +27,16 @@ import net.htmlparser.jericho.Tag;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.filter.rewrite.impl.FilterCharBuffer;
+import org.apache.hadoop.gateway.filter.rewrite.impl.FilterPatternScanner;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
-import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -52,26 +50,21 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
-  private Document document;
   private Stack<Level> stack;
   private Reader reader;
   private StreamedSource parser;
   private Iterator<Segment> iterator;
   private int lastSegEnd;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private FilterCharBuffer writer;
   private UrlRewriteFilterContentDescriptor config = null;
+  private FilterPatternScanner scanner = null;
 
   protected HtmlFilterReaderBase( Reader reader ) throws IOException, ParserConfigurationException {
     this.reader = reader;
-    document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
     stack = new Stack<Level>();
     parser = new StreamedSource( reader );
     iterator = parser.iterator();
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
+    writer = new FilterCharBuffer();
   }
 
   protected HtmlFilterReaderBase( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException, ParserConfigurationException {
@@ -86,32 +79,26 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
-    int available = buffer.length() - offset;
+    int available = writer.available();
 
     if( available == 0 ) {
       if( iterator.hasNext() ) {
         iterator.next();
         processCurrentSegment();
-        available = buffer.length() - offset;
+        available = writer.available();
       } else {
         count = -1;
       }
     }
 
     if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset + count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
-      }
+      count = writer.read( destBuffer, destOffset, destCount );
     }
 
     return count;
   }
 
-  private void processCurrentSegment() {
+  private void processCurrentSegment() throws IOException {
     Segment segment = parser.getCurrentSegment();
     // If this tag is inside the previous tag (e.g. a server tag) then
     // ignore it as it was already output along with the previous tag.
@@ -132,7 +119,7 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
     }
   }
 
-  private void processEndTag( EndTag tag ) {
+  private void processEndTag( EndTag tag ) throws IOException {
     while( !stack.isEmpty() ) {
       Level popped = stack.pop();
       if( popped.getTag().getName().equalsIgnoreCase( tag.getName() ) ) {
@@ -142,9 +129,8 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
     writer.write( tag.toString() );
   }
 
-  private void processStartTag( StartTag tag ) {
+  private void processStartTag( StartTag tag ) throws IOException {
     if( "<".equals( tag.getTagType().getStartDelimiter() ) ) {
-      Element e = document.createElement( tag.getNameSegment().toString() );
       stack.push( new Level( tag ) );
       writer.write( "<" );
       writer.write( tag.getNameSegment().toString() );
@@ -154,7 +140,7 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
           processAttribute( attribute );
         }
       }
-      if( tag.toString().trim().endsWith( "/>" ) || tag.isEmptyElementTag() ) {
+      if( tag.isEmptyElementTag() || tag.toString().trim().endsWith( "/>" ) ) {
         stack.pop();
         writer.write( "/>" );
       } else {
@@ -165,12 +151,19 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
     }
   }
 
-  private void processAttribute( Attribute attribute ) {
+  private void processAttribute( Attribute attribute ) throws IOException {
     writer.write( " " );
     writer.write( attribute.getName() );
     if(attribute.hasValue()) {
       String inputValue = attribute.getValue();
       String outputValue = inputValue;
+      // There is nothing in an empty value that could be rewritten.
+      if( inputValue.isEmpty() ) {
+        writer.write( "=" );
+        writer.write( attribute.getQuoteChar() );
+        writer.write( attribute.getQuoteChar() );
+        return;
+      }
       try {
         Level tag = stack.peek();
         outputValue = filterAttribute( tag.getQName(), tag.getQName( attribute.getName() ), inputValue, null );
@@ -187,7 +180,7 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
     }
   }
 
-  private void processText( Segment segment ) {
+  private void processText( Segment segment ) throws IOException {
     String inputValue = segment.toString();
     String outputValue = inputValue;
     try {
@@ -198,7 +191,10 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
         String tagName = stack.peek().getTag().getName();
         if (SCRIPTTAG.equals(tagName) && config != null && !config.getSelectors().isEmpty() ) {
           // embedded javascript content
-          outputValue = UrlRewriteUtil.filterJavaScript( inputValue, config, this, REGEX_COMPILER );
+          if( scanner == null ) {
+            scanner = new FilterPatternScanner( config, REGEX_COMPILER );
+          }
+          outputValue = scanner.filter( inputValue, this );
         } else {
           outputValue = filterText( stack.peek().getQName(), inputValue, null );
         }
@@ -274,7 +270,8 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
 
     private Map<String,String> getNamespaces() {
       if( namespaces == null ) {
-        namespaces = new HashMap<String,String>();
+        // Most tags declare no namespaces so only allocate a map for those that do.
+        namespaces = Collections.emptyMap();
         parseNamespaces();
       }
       return namespaces;
@@ -285,7 +282,7 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
       if( attributes != null ) {
         for( Attribute attribute : tag.getAttributes() ) {
           String name = attribute.getName();
-          if( name.toLowerCase().startsWith( "xmlns" ) ) {
+          if( name.regionMatches( true, 0, "xmlns", 0, 5 ) ) {
             int colon = name.indexOf( ":", 5 );
             String prefix;
             if( colon <= 0 ) {
@@ -293,6 +290,9 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
             } else {
               prefix = name.substring( colon );
             }
+            if( namespaces.isEmpty() ) {
+              namespaces = new HashMap<String,String>();
+            }
             namespaces.put( prefix, attribute.getValue() );
           }
         }
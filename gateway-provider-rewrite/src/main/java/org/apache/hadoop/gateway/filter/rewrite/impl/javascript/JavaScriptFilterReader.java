@@ -19,35 +19,43 @@ package org.apache.hadoop.gateway.filter.rewrite.impl.javascript;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
-import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.filter.rewrite.impl.FilterCharBuffer;
+import org.apache.hadoop.gateway.filter.rewrite.impl.FilterPatternScanner;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
-import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
-import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.regex.Pattern;
 
 public abstract class JavaScriptFilterReader extends Reader implements UrlRewriteFilterReader {
 
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
 
-  private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
+  private static final int CHUNK_SIZE = 8 * 1024;
+  // Minified scripts are often a single huge line.  Once this much of a line is pending it is rewritten
+  // in pieces, holding back enough of the tail for a match to complete with the next chunk.
+  private static final int MAX_PENDING = 64 * 1024;
+  private static final int CARRY_SIZE = 4 * 1024;
 
-  private BufferedReader reader;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
-  private UrlRewriteFilterContentDescriptor config;
+  private Reader reader;
+  private FilterCharBuffer writer;
+  private FilterPatternScanner scanner;
+  private char[] chunk;
+  private StringBuilder pending;
+  private StringBuilder output;
+  // The position in pending up to which there is known to be no line terminator.
+  private int scanned;
+  private boolean eof;
 
   protected JavaScriptFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
-    this.reader = new BufferedReader( reader );
-    this.config = config;
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
+    this.reader = reader;
+    writer = new FilterCharBuffer();
+    scanner = new FilterPatternScanner( config, REGEX_COMPILER );
+    chunk = new char[ CHUNK_SIZE ];
+    pending = new StringBuilder();
+    output = new StringBuilder();
+    scanned = 0;
+    eof = false;
   }
 
   @Override
@@ -56,33 +64,105 @@ public abstract class JavaScriptFilterReader extends Reader implements UrlRewrit
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
-    int available = buffer.length() - offset;
-    String cbuff;
-    if( available == 0 ) {
-      cbuff = reader.readLine();
-      if( cbuff != null ) {
-        count = cbuff.length();
-        writer.write( UrlRewriteUtil.filterJavaScript( cbuff, config, this, REGEX_COMPILER ) );
-        writer.write( '\n' );
-        available = buffer.length() - offset;
-      } else {
+    int available = writer.available();
+
+    while( available == 0 ) {
+      if( !process() ) {
         count = -1;
+        break;
       }
+      available = writer.available();
     }
 
     if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset + count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
-      }
+      count = writer.read( destBuffer, destOffset, destCount );
     }
 
     return count;
   }
 
+  // Each line is rewritten separately and terminated with a \n as when the input was read line by line.
+  // Returns false once all of the input has been processed.
+  private boolean process() throws IOException {
+    int end = findLineEnd();
+    if( end >= 0 ) {
+      int next = end + 1;
+      if( pending.charAt( end ) == '\r' ) {
+        if( next == pending.length() && !eof ) {
+          // Need to know if the \r is followed by a \n.
+          fill();
+          return true;
+        }
+        if( next < pending.length() && pending.charAt( next ) == '\n' ) {
+          next++;
+        }
+      }
+      filter( end, true );
+      writer.write( '\n' );
+      pending.delete( 0, next - end );
+      scanned = 0;
+    } else if( eof ) {
+      if( pending.length() == 0 ) {
+        return false;
+      }
+      filter( pending.length(), true );
+      writer.write( '\n' );
+    } else if( pending.length() >= MAX_PENDING && !scanner.isEmpty() ) {
+      filter( pending.length() - CARRY_SIZE, false );
+    } else if( pending.length() >= MAX_PENDING ) {
+      filter( pending.length(), true );
+    } else {
+      fill();
+    }
+    return true;
+  }
+
+  // Rewrites and removes the pending text up to the limit.  If the text isn't complete a match crossing the
+  // limit is left pending.
+  private void filter( int limit, boolean complete ) throws IOException {
+    if( complete ) {
+      if( scanner.isEmpty() ) {
+        writer.append( pending, 0, limit );
+      } else {
+        String line = pending.substring( 0, limit );
+        writer.write( scanner.filter( line, this ) );
+      }
+      pending.delete( 0, limit );
+    } else {
+      CharSequence text = pending;
+      int consumed = scanner.filter( text, limit, false, this, output );
+      writer.append( output );
+      output.setLength( 0 );
+      if( consumed == 0 ) {
+        // A single match is longer than the carry so more input is needed to decide it.
+        fill();
+      } else {
+        pending.delete( 0, consumed );
+        scanned = Math.max( 0, scanned - consumed );
+      }
+    }
+  }
+
+  private int findLineEnd() {
+    for( int i = scanned, n = pending.length(); i < n; i++ ) {
+      char c = pending.charAt( i );
+      if( c == '\n' || c == '\r' ) {
+        return i;
+      }
+    }
+    scanned = pending.length();
+    return -1;
+  }
+
+  private void fill() throws IOException {
+    int count = reader.read( chunk, 0, chunk.length );
+    if( count < 0 ) {
+      eof = true;
+    } else {
+      pending.append( chunk, 0, count );
+    }
+  }
+
   @Override
   public void close() throws IOException {
     reader.close();
@@ -25,20 +25,19 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterBufferDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterDetectDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterGroupDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.impl.FilterCharBuffer;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.util.JsonPath;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.List;
 import java.util.Stack;
 import java.util.regex.Pattern;
@@ -47,22 +46,25 @@ class JsonFilterReader extends Reader {
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
-  private static final UrlRewriteFilterPathDescriptor.Compiler<JsonPath.Expression> JPATH_COMPILER = new JsonPathCompiler();
+  private static final UrlRewriteFilterPathDescriptor.Compiler<CompiledPath> JPATH_COMPILER = new JsonPathCompiler();
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
 
+  // The number of tokens processed between generator flushes while filling the output buffer.
+  private static final int TOKENS_PER_FLUSH = 64;
+
   private JsonFactory factory;
   private JsonParser parser;
   private JsonGenerator generator;
   private ObjectMapper mapper;
 
   private Reader reader;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private FilterCharBuffer buffer;
   private Stack<Level> stack;
   private Level bufferingLevel;
   private UrlRewriteFilterBufferDescriptor bufferingConfig;
   private UrlRewriteFilterGroupDescriptor config;
+  // Only build the JsonNode path when a selector can't be evaluated against the stack alone.
+  private boolean treeRequired;
 
 
   public JsonFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
@@ -70,39 +72,48 @@ class JsonFilterReader extends Reader {
     factory = new JsonFactory();
     mapper = new ObjectMapper();
     parser = factory.createParser( reader );
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
-    generator = factory.createGenerator( writer );
+    buffer = new FilterCharBuffer();
+    generator = factory.createGenerator( buffer );
     stack = new Stack<Level>();
     bufferingLevel = null;
     bufferingConfig = null;
     this.config = config;
+    treeRequired = false;
+    if( config != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+        CompiledPath path = (CompiledPath)selector.compiledPath( JPATH_COMPILER );
+        if( path.steps == null ) {
+          treeRequired = true;
+        }
+      }
+    }
   }
 
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
-    int available = buffer.length() - offset;
-
-    if( available == 0 ) {
-      JsonToken token = parser.nextToken();
-      if( token == null ) {
+    int available = buffer.available();
+
+    while( available == 0 ) {
+      boolean done = false;
+      for( int i = 0; i < TOKENS_PER_FLUSH && !done; i++ ) {
+        JsonToken token = parser.nextToken();
+        if( token == null ) {
+          done = true;
+        } else {
+          processCurrentToken();
+        }
+      }
+      generator.flush();
+      available = buffer.available();
+      if( done && available == 0 ) {
         count = -1;
-      } else {
-        processCurrentToken();
-        available = buffer.length() - offset;
+        break;
       }
     }
 
     if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset+count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
-      }
+      count = buffer.read( destBuffer, destOffset, destCount );
     }
 
     return count;
@@ -143,7 +154,6 @@ class JsonFilterReader extends Reader {
         // Ignore it.
         break;
     }
-    generator.flush();
   }
 
   private Level pushLevel( String field, JsonNode node, JsonNode scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
@@ -159,37 +169,70 @@ class JsonFilterReader extends Reader {
     return level;
   }
 
-  private void processStartObject() throws IOException {
-    JsonNode node;
+  private Level pushContainer( JsonToken token ) {
+    JsonNode node = null;
+    if( treeRequired || bufferingLevel != null ) {
+      node = createNode( token );
+    }
     Level child;
-    Level parent;
     if( stack.isEmpty() ) {
-      node = mapper.createObjectNode();
       child = pushLevel( null, node, node, config );
     } else {
       child = stack.peek();
-      if( child.node == null ) {
-        child.node = mapper.createObjectNode();
-        parent = stack.get( stack.size()-2 );
-        switch( parent.node.asToken() ) {
-          case START_ARRAY:
-            ((ArrayNode)parent.node ).add( child.node );
-            break;
-          case START_OBJECT:
-            ((ObjectNode)parent.node ).put( child.field, child.node );
-            break;
-          default:
-            throw new IllegalStateException();
+      if( child.token == null ) {
+        child.node = node;
+        if( node != null ) {
+          addChildNode( stack.get( stack.size() - 2 ), child );
         }
       } else if( child.isArray() ) {
-        parent = child;
-        node = mapper.createObjectNode();
+        Level parent = child;
         child = pushLevel( null, node, null, null );
-        ((ArrayNode)parent.node ).add( child.node );
+        if( node != null ) {
+          ((ArrayNode)parent.node ).add( node );
+        }
       } else {
         throw new IllegalStateException();
       }
     }
+    child.token = token;
+    return child;
+  }
+
+  private JsonNode createNode( JsonToken token ) {
+    return ( token == JsonToken.START_ARRAY ) ? mapper.createArrayNode() : mapper.createObjectNode();
+  }
+
+  private void addChildNode( Level parent, Level child ) {
+    switch( parent.node.asToken() ) {
+      case START_ARRAY:
+        ((ArrayNode)parent.node ).add( child.node );
+        break;
+      case START_OBJECT:
+        ((ObjectNode)parent.node ).put( child.field, child.node );
+        break;
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  private void clearParentNode() {
+    if( !stack.isEmpty() && stack.peek().node != null ) {
+      Level parent = stack.peek();
+      switch( parent.node.asToken() ) {
+        case START_ARRAY:
+          ((ArrayNode)parent.node ).removeAll();
+          break;
+        case START_OBJECT:
+          ((ObjectNode)parent.node ).removeAll();
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+    }
+  }
+
+  private void processStartObject() throws IOException {
+    Level child = pushContainer( JsonToken.START_OBJECT );
     if( bufferingLevel == null ) {
       if( !startBuffering( child ) ) {
         generator.writeStartObject();
@@ -198,62 +241,21 @@ class JsonFilterReader extends Reader {
   }
 
   private void processEndObject() throws IOException {
-    Level child;
-    Level parent;
-    child = stack.pop();
+    Level child = stack.pop();
     if( bufferingLevel == child ) {
       filterBufferedNode( child );
       mapper.writeTree( generator, child.node );
       bufferingLevel = null;
       bufferingConfig = null;
+      clearParentNode();
     } else if( bufferingLevel == null ) {
       generator.writeEndObject();
-      if( !stack.isEmpty() ) {
-        parent = stack.peek();
-        switch( parent.node.asToken() ) {
-          case START_ARRAY:
-            ((ArrayNode)parent.node ).removeAll();
-            break;
-          case START_OBJECT:
-            ((ObjectNode)parent.node ).removeAll();
-            break;
-          default:
-            throw new IllegalStateException();
-        }
-      }
+      clearParentNode();
     }
   }
 
   private void processStartArray() throws IOException {
-    JsonNode node;
-    Level child;
-    Level parent;
-    if( stack.isEmpty() ) {
-      node = mapper.createArrayNode();
-      child = pushLevel( null, node, node, config );
-    } else {
-      child = stack.peek();
-      if( child.node == null ) {
-        child.node = mapper.createArrayNode();
-        parent = stack.get( stack.size() - 2 );
-        switch( parent.node.asToken() ) {
-          case START_ARRAY:
-            ((ArrayNode)parent.node ).add( child.node );
-            break;
-          case START_OBJECT:
-            ((ObjectNode)parent.node ).put( child.field, child.node );
-            break;
-          default:
-            throw new IllegalStateException();
-        }
-      } else if( child.isArray() ) {
-        parent = child;
-        child = pushLevel( null, mapper.createArrayNode(), null, null );
-        ((ArrayNode)parent.node ).add( child.node );
-      } else {
-        throw new IllegalStateException();
-      }
-    }
+    Level child = pushContainer( JsonToken.START_ARRAY );
     if( bufferingLevel == null ) {
       if( !startBuffering( child ) ) {
         generator.writeStartArray();
@@ -262,29 +264,16 @@ class JsonFilterReader extends Reader {
   }
 
   private void processEndArray() throws IOException {
-    Level child;
-    Level parent;
-    child = stack.pop();
+    Level child = stack.pop();
     if( bufferingLevel == child ) {
       filterBufferedNode( child );
       mapper.writeTree( generator, child.node );
       bufferingLevel = null;
       bufferingConfig = null;
+      clearParentNode();
     } else if( bufferingLevel == null ) {
       generator.writeEndArray();
-      if( !stack.isEmpty() ) {
-        parent = stack.peek();
-        switch( parent.node.asToken() ) {
-          case START_ARRAY:
-            ((ArrayNode)parent.node ).removeAll();
-            break;
-          case START_OBJECT:
-            ((ObjectNode)parent.node ).removeAll();
-            break;
-          default:
-            throw new IllegalStateException();
-        }
-      }
+      clearParentNode();
     }
   }
 
@@ -304,31 +293,33 @@ class JsonFilterReader extends Reader {
   private void processValueString() throws IOException {
     Level child;
     Level parent;
-    String value = null;
+    String value = parser.getText();
     parent = stack.peek();
     if( parent.isArray() ) {
-      ArrayNode array = (ArrayNode)parent.node;
-      array.add( parser.getText() );
+      if( parent.node != null ) {
+        ((ArrayNode)parent.node ).add( value );
+      }
       if( bufferingLevel == null ) {
-        value = filterStreamValue( parent );
-        array.set( array.size()-1, new TextNode( value ) );
-      } else {
-        array.removeAll();
+        value = filterStreamValue( parent, value, stack.size() );
       }
     } else {
-      child = stack.pop();
-      parent = stack.peek();
-      ((ObjectNode)parent.node ).put( child.field, parser.getText() );
+      child = stack.peek();
+      parent = stack.get( stack.size() - 2 );
+      if( parent.node != null ) {
+        ((ObjectNode)parent.node ).put( child.field, value );
+      }
       if( bufferingLevel == null ) {
-        child.node = parent.node; // Populate the JsonNode of the child for filtering.
-        value = filterStreamValue( child );
+        value = filterStreamValue( child, value, stack.size() - 1 );
       }
+      stack.pop();
     }
     if( bufferingLevel == null ) {
-      if( parent.node.isArray() ) {
-        ((ArrayNode)parent.node).removeAll();
-      } else {
-        ((ObjectNode)parent.node).removeAll();
+      if( parent.node != null ) {
+        if( parent.isArray() ) {
+          ((ArrayNode)parent.node).removeAll();
+        } else {
+          ((ObjectNode)parent.node).removeAll();
+        }
       }
       generator.writeString( value );
     }
@@ -432,18 +423,14 @@ class JsonFilterReader extends Reader {
     Level parent;
     parent = stack.peek();
     if( parent.isArray() ) {
-      ((ArrayNode)parent.node ).add( parser.getBooleanValue() );
-      //dump();
-      if( bufferingLevel == null ) {
-        ((ArrayNode)parent.node ).removeAll();
+      if( bufferingLevel != null ) {
+        ((ArrayNode)parent.node ).add( parser.getBooleanValue() );
       }
     } else {
       child = stack.pop();
-      parent = stack.peek();
-      ((ObjectNode)parent.node ).put( child.field, parser.getBooleanValue() );
-      //dump();
-      if( bufferingLevel == null ) {
-        ((ObjectNode)parent.node ).remove( child.field );
+      if( bufferingLevel != null ) {
+        parent = stack.peek();
+        ((ObjectNode)parent.node ).put( child.field, parser.getBooleanValue() );
       }
     }
     if( bufferingLevel == null ) {
@@ -455,18 +442,14 @@ class JsonFilterReader extends Reader {
     Level child;
     Level parent = stack.peek();
     if( parent.isArray() ) {
-      ((ArrayNode)parent.node ).addNull();
-      //dump();
-      if( bufferingLevel == null ) {
-        ((ArrayNode)parent.node ).removeAll();
+      if( bufferingLevel != null ) {
+        ((ArrayNode)parent.node ).addNull();
       }
     } else {
       child = stack.pop();
-      parent = stack.peek();
-      ((ObjectNode)parent.node ).putNull( child.field );
-      //dump();
-      if( bufferingLevel == null ) {
-        ((ObjectNode)parent.node ).remove( child.field );
+      if( bufferingLevel != null ) {
+        parent = stack.peek();
+        ((ObjectNode)parent.node ).putNull( child.field );
       }
     }
     if( bufferingLevel == null ) {
@@ -479,13 +462,23 @@ class JsonFilterReader extends Reader {
     UrlRewriteFilterGroupDescriptor scope = node.scopeConfig;
     if( scope != null ) {
       for( UrlRewriteFilterPathDescriptor selector : scope.getSelectors() ) {
-        JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
-        List<JsonPath.Match> matches = path.evaluate( node.scopeNode );
-        if( matches != null && matches.size() > 0 ) {
+        CompiledPath path = (CompiledPath)selector.compiledPath( JPATH_COMPILER );
+        boolean matched;
+        if( path.steps != null ) {
+          // The stack is the only path through the document so anything selected must be on it.
+          matched = path.steps.length <= stack.size() && stackMatches( path.steps );
+        } else {
+          List<JsonPath.Match> matches = path.expression.evaluate( node.scopeNode );
+          matched = matches != null && matches.size() > 0;
+        }
+        if( matched ) {
           if( selector instanceof UrlRewriteFilterBufferDescriptor ) {
             bufferingLevel = node;
             bufferingConfig = (UrlRewriteFilterBufferDescriptor)selector;
             buffered = true;
+            if( node.node == null ) {
+              node.node = createNode( node.token );
+            }
           }
           break;
         }
@@ -494,48 +487,55 @@ class JsonFilterReader extends Reader {
     return buffered;
   }
 
-  protected String filterStreamValue( Level node ) {
-    String value;
-    if( node.isArray() ) {
-      value = node.node.get( 0 ).asText();
-    } else {
-      value = node.node.get( node.field ).asText();
-    }
+  protected String filterStreamValue( Level node, String value, int depth ) {
     String rule = null;
     UrlRewriteFilterGroupDescriptor scope = node.scopeConfig;
     //TODO: Scan the top level apply rules for the first match.
     if( scope != null ) {
       for( UrlRewriteFilterPathDescriptor selector : scope.getSelectors() ) {
-        JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
-        List<JsonPath.Match> matches = path.evaluate( node.scopeNode );
-        if( matches != null && matches.size() > 0 ) {
-          JsonPath.Match match = matches.get( 0 );
-          if( match.getNode().isTextual() ) {
-            if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
-              UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
-              rule = apply.rule();
-              break;
-            }
+        CompiledPath path = (CompiledPath)selector.compiledPath( JPATH_COMPILER );
+        boolean matched;
+        if( path.steps != null ) {
+          // Only the value itself is textual so the path must select exactly the value's depth.
+          matched = path.steps.length == depth + 1 && stackMatches( path.steps );
+        } else {
+          List<JsonPath.Match> matches = path.expression.evaluate( node.scopeNode );
+          matched = matches != null && matches.size() > 0 && matches.get( 0 ).getNode().isTextual();
+        }
+        if( matched ) {
+          if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
+            UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
+            rule = apply.rule();
+            break;
           }
         }
       }
     }
     try {
       value = filterValueString( node.field, value, rule );
-      if( node.isArray() ) {
-        ((ArrayNode)node.node).set( 0, new TextNode( value ) );
-      } else {
-        ((ObjectNode)node.node).put( node.field, value );
-      }
     } catch( Exception e ) {
       LOG.failedToFilterValue( value, rule, e );
     }
     return value;
   }
 
+  // Matches the steps against the path from the root.  The path may extend one past the top of the stack
+  // for a value in an array.
+  private boolean stackMatches( JsonPath.Segment[] steps ) {
+    for( int i = 1; i < steps.length; i++ ) {
+      JsonPath.Segment step = steps[ i ];
+      if( step.getType() == JsonPath.Segment.Type.FIELD ) {
+        if( stack.get( i - 1 ).isArray() || !step.getField().equals( stack.get( i ).field ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   private void filterBufferedNode( Level node ) {
     for( UrlRewriteFilterPathDescriptor selector : bufferingConfig.getSelectors() ) {
-      JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
+      JsonPath.Expression path = ((CompiledPath)selector.compiledPath( JPATH_COMPILER )).expression;
       List<JsonPath.Match> matches = path.evaluate( node.node );
       for( JsonPath.Match match : matches ) {
         if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
@@ -544,7 +544,7 @@ class JsonFilterReader extends Reader {
           }
         } else if( selector instanceof UrlRewriteFilterDetectDescriptor ) {
           UrlRewriteFilterDetectDescriptor detectConfig = (UrlRewriteFilterDetectDescriptor)selector;
-          JsonPath.Expression detectPath = (JsonPath.Expression)detectConfig.compiledPath( JPATH_COMPILER );
+          JsonPath.Expression detectPath = ((CompiledPath)detectConfig.compiledPath( JPATH_COMPILER )).expression;
           List<JsonPath.Match> detectMatches = detectPath.evaluate( node.node );
           for( JsonPath.Match detectMatch : detectMatches ) {
             if( detectMatch.getNode().isTextual() ) {
@@ -562,7 +562,7 @@ class JsonFilterReader extends Reader {
 
   private void filterBufferedValues( Level node, List<UrlRewriteFilterPathDescriptor> selectors ) {
     for( UrlRewriteFilterPathDescriptor selector : selectors ) {
-      JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
+      JsonPath.Expression path = ((CompiledPath)selector.compiledPath( JPATH_COMPILER )).expression;
       List<JsonPath.Match> matches = path.evaluate( node.node );
       for( JsonPath.Match match : matches ) {
         if( match.getNode().isTextual() ) {
@@ -596,13 +596,15 @@ class JsonFilterReader extends Reader {
   @Override
   public void close() throws IOException {
     generator.close();
-    writer.close();
+    buffer.close();
     parser.close();
     reader.close();
   }
 
   private static class Level {
     String field;
+    // Null until the level turns out to be an object or array rather than a field value.
+    JsonToken token;
     JsonNode node;
     JsonNode scopeNode;
     UrlRewriteFilterGroupDescriptor scopeConfig;
@@ -613,14 +615,36 @@ class JsonFilterReader extends Reader {
       this.scopeConfig = scopeConfig;
     }
     public boolean isArray() {
-      return node != null && node.isArray();
+      return token == JsonToken.START_ARRAY;
     }
   }
 
-  private static class JsonPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<JsonPath.Expression> {
+  private static class JsonPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<CompiledPath> {
     @Override
-    public JsonPath.Expression compile( String expression, JsonPath.Expression compiled ) {
-      return JsonPath.compile( expression );
+    public CompiledPath compile( String expression, CompiledPath compiled ) {
+      if( compiled != null ) {
+        return compiled;
+      } else {
+        return new CompiledPath( JsonPath.compile( expression ) );
+      }
+    }
+  }
+
+  // A compiled selector.  The steps are only present when every segment can be matched against the stack
+  // of field names while streaming.  Index and glob segments need the JsonNode tree.
+  private static class CompiledPath {
+    private final JsonPath.Expression expression;
+    private final JsonPath.Segment[] steps;
+    private CompiledPath( JsonPath.Expression expression ) {
+      JsonPath.Segment[] segments = expression.getSegments();
+      for( JsonPath.Segment segment : segments ) {
+        if( segment.getType() == JsonPath.Segment.Type.INDEX || segment.getType() == JsonPath.Segment.Type.GLOB ) {
+          segments = null;
+          break;
+        }
+      }
+      this.expression = expression;
+      this.steps = segments;
     }
   }
 
@@ -27,6 +27,7 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescript
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterScopeDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteResources;
+import org.apache.hadoop.gateway.filter.rewrite.impl.FilterCharBuffer;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
 import org.w3c.dom.Attr;
@@ -35,21 +36,13 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 
-import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.Characters;
-import javax.xml.stream.events.Comment;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.Namespace;
-import javax.xml.stream.events.StartDocument;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -63,11 +56,12 @@ import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.io.Writer;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 import java.util.regex.Pattern;
 
@@ -78,32 +72,42 @@ public abstract class XmlFilterReader extends Reader {
   private static String DEFAULT_XML_VERSION = "1.0";
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
-  private static final UrlRewriteFilterPathDescriptor.Compiler<XPathExpression> XPATH_COMPILER = new XmlPathCompiler();
+  private static final UrlRewriteFilterPathDescriptor.Compiler<CompiledPath> XPATH_COMPILER = new XmlPathCompiler();
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
+  private static final DocumentBuilderFactory DOCUMENT_FACTORY = DocumentBuilderFactory.newInstance();
+  private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
 
   private Reader reader;
   private UrlRewriteFilterContentDescriptor config;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private FilterCharBuffer writer;
   private XMLInputFactory factory;
-  private XMLEventReader parser;
+  private XMLStreamReader parser;
+  private boolean started;
   private Document document;
   private Stack<Level> stack;
+  // Only mirror the streamed elements into a DOM when a selector must be evaluated with XPath.
+  // Otherwise a document is only built for the extent of a buffer.
+  private boolean treeRequired;
+  private XPath xpath;
+  private Map<String,XPathExpression> xpaths;
+  private Transformer transformer;
 
   protected XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException, XMLStreamException {
     this.reader = reader;
     this.config = config;
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
+    writer = new FilterCharBuffer();
     document = null;
     stack = new Stack<Level>();
+    treeRequired = requiresTree( config );
+    xpath = null;
+    xpaths = null;
+    transformer = null;
     factory = XMLInputFactory.newFactory();
     //KNOX-620 factory.setProperty( XMLConstants.ACCESS_EXTERNAL_DTD, "false" );
     //KNOX-620 factory.setProperty( XMLConstants.ACCESS_EXTERNAL_SCHEMA, "false" );
     factory.setProperty( "javax.xml.stream.isReplacingEntityReferences", Boolean.FALSE );
-    parser = factory.createXMLEventReader( reader );
+    parser = factory.createXMLStreamReader( reader );
+    started = false;
   }
 
   protected abstract String filterAttribute( QName elementName, QName attributeName, String attributeValue, String ruleName );
@@ -113,84 +117,84 @@ public abstract class XmlFilterReader extends Reader {
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
-    int available = buffer.length() - offset;
-
-    if( available == 0 ) {
-      if( parser.hasNext() ) {
-        try {
-          XMLEvent event = parser.nextEvent();
-          processEvent( event );
-        } catch( IOException e ) {
-          throw e;
-        } catch( RuntimeException e ) {
-          throw e;
-        } catch ( Exception e ) {
-          throw new RuntimeException( e );
+    int available = writer.available();
+
+    try {
+      while( available == 0 ) {
+        int event;
+        if( !started ) {
+          // The parser is positioned on the start of the document before the first call to next().
+          started = true;
+          event = parser.getEventType();
+        } else if( parser.hasNext() ) {
+          event = parser.next();
+        } else {
+          count = -1;
+          break;
         }
-        available = buffer.length() - offset;
-      } else {
-        count = -1;
+        processEvent( event );
+        available = writer.available();
       }
+    } catch( IOException e ) {
+      throw e;
+    } catch( RuntimeException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new RuntimeException( e );
     }
 
     if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset + count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
-      }
+      count = writer.read( destBuffer, destOffset, destCount );
     }
     return count;
   }
 
-  private void processEvent( XMLEvent event ) throws ParserConfigurationException, XPathExpressionException, IOException {
-    int type = event.getEventType();
+  private void processEvent( int type ) throws ParserConfigurationException, XPathExpressionException, IOException {
     switch( type ) {
-      case XMLEvent.START_DOCUMENT:
-        processStartDocument( (StartDocument)event );
+      case XMLStreamConstants.START_DOCUMENT:
+        processStartDocument();
         break;
-      case XMLEvent.END_DOCUMENT:
+      case XMLStreamConstants.END_DOCUMENT:
         processEndDocument();
         break;
-      case XMLEvent.START_ELEMENT:
-        processStartElement( event.asStartElement() );
+      case XMLStreamConstants.START_ELEMENT:
+        processStartElement();
         break;
-      case XMLEvent.END_ELEMENT:
-        processEndElement( event.asEndElement() );
+      case XMLStreamConstants.END_ELEMENT:
+        processEndElement();
         break;
-      case XMLEvent.CHARACTERS:
-      case XMLEvent.CDATA:
-      case XMLEvent.SPACE:
-        processCharacters( event.asCharacters() );
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        processCharacters( type == XMLStreamConstants.CDATA );
         break;
-      case XMLEvent.COMMENT:
-        processComment( (Comment)event );
+      case XMLStreamConstants.COMMENT:
+        processComment();
         break;
-      case XMLEvent.DTD:
-      case XMLEvent.NAMESPACE:
-      case XMLEvent.ATTRIBUTE:
-      case XMLEvent.ENTITY_REFERENCE:
-      case XMLEvent.ENTITY_DECLARATION:
-      case XMLEvent.NOTATION_DECLARATION:
-      case XMLEvent.PROCESSING_INSTRUCTION:
+      case XMLStreamConstants.DTD:
+      case XMLStreamConstants.NAMESPACE:
+      case XMLStreamConstants.ATTRIBUTE:
+      case XMLStreamConstants.ENTITY_REFERENCE:
+      case XMLStreamConstants.ENTITY_DECLARATION:
+      case XMLStreamConstants.NOTATION_DECLARATION:
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
       default:
         // Fail if we run into any of these for now.
         throw new IllegalStateException( Integer.toString( type ) );
     }
   }
 
-  private void processStartDocument( StartDocument event ) throws ParserConfigurationException {
-    //System.out.println( "SD=" + event );
+  private void processStartDocument() throws ParserConfigurationException, IOException {
     String s;
 
-    document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-    pushLevel( null, event, document, document, config );
+    if( treeRequired ) {
+      document = createDocument();
+    }
+    pushLevel( null, null, null, document, document, config, false );
 
     writer.write( "<?xml" );
 
-    s = event.getVersion();
+    s = parser.getVersion();
     if( s == null ) {
       s = DEFAULT_XML_VERSION;
     }
@@ -198,7 +202,7 @@ public abstract class XmlFilterReader extends Reader {
     writer.write( s );
     writer.write( "\"" );
 
-    s = event.getCharacterEncodingScheme();
+    s = parser.getCharacterEncodingScheme();
     if( s != null ) {
       writer.write( " encoding=\"");
       writer.write( s );
@@ -206,7 +210,7 @@ public abstract class XmlFilterReader extends Reader {
     }
 
     writer.write( " standalone=\"");
-    writer.write( event.isStandalone() ? "yes" : "no" );
+    writer.write( parser.isStandalone() ? "yes" : "no" );
     writer.write( "\"" );
 
     writer.write( "?>" );
@@ -217,57 +221,67 @@ public abstract class XmlFilterReader extends Reader {
     document = null;
   }
 
-  private void processStartElement( StartElement event ) throws XPathExpressionException {
-    //System.out.println( "SE=" + event );
-
-    // Create a new "empty" element and add it to the document.
-    Element element = bufferElement( event );
+  private void processStartElement() throws XPathExpressionException, ParserConfigurationException, IOException {
+    QName name = parser.getName();
+    String[] namespaces = readNamespaces();
     Level parent = stack.peek();
-    parent.node.appendChild( element );
+
+    // Create a new "empty" element and add it to the document if the parent is in one.
+    Element element = null;
+    if( parent.node != null ) {
+      element = bufferElement( name, namespaces );
+      parent.node.appendChild( element );
+    }
 
     // If already buffering just continue to do so.
     // Note: Don't currently support nested buffer or scope descriptors.
     if( currentlyBuffering() ) {
-      pushLevel( parent, event, element, parent.scopeNode, parent.scopeConfig );
-      bufferAttributes( event, element );
+      pushLevel( parent, name, namespaces, element, parent.scopeNode, parent.scopeConfig, false );
+      bufferAttributes( element );
     // Else not currently buffering
     } else {
       // See if there is a matching path descriptor in the current scope.
-      UrlRewriteFilterPathDescriptor descriptor = pickFirstMatchingPath( parent );
+      UrlRewriteFilterPathDescriptor descriptor = pickFirstMatchingPath( parent, name, null );
       if( descriptor != null ) {
         // If this is a buffer descriptor then switch to buffering and buffer the attributes.
         if( descriptor instanceof UrlRewriteFilterBufferDescriptor ) {
-          pushLevel( parent, event, element, element, (UrlRewriteFilterBufferDescriptor)descriptor );
-          bufferAttributes( event, element );
+          if( element == null ) {
+            element = bufferAncestors( name, namespaces );
+          }
+          pushLevel( parent, name, namespaces, element, element, (UrlRewriteFilterBufferDescriptor)descriptor, true );
+          bufferAttributes( element );
         // Otherwise if this is a scope descriptor then change the scope and stream the attributes.
         } else if( descriptor instanceof UrlRewriteFilterScopeDescriptor ) {
-          pushLevel( parent, event, element, element, (UrlRewriteFilterScopeDescriptor)descriptor );
-          streamElement( event, element );
+          pushLevel( parent, name, namespaces, element, element, (UrlRewriteFilterScopeDescriptor)descriptor, true );
+          streamElement( name, namespaces, element );
         // Else found an unexpected matching path.
         } else {
           // This is likely because there is an <apply> targeted at the text of an element.
           // That "convenience" config will be taken care of in the streamElement() processing.
-          pushLevel( parent, event, element, parent.scopeNode, parent.scopeConfig );
-          streamElement( event, element );
+          pushLevel( parent, name, namespaces, element, parent.scopeNode, parent.scopeConfig, false );
+          streamElement( name, namespaces, element );
         }
       // If there is no matching path descriptor then continue streaming.
       } else {
-        pushLevel( parent, event, element, parent.scopeNode, parent.scopeConfig );
-        streamElement( event, element );
+        pushLevel( parent, name, namespaces, element, parent.scopeNode, parent.scopeConfig, false );
+        streamElement( name, namespaces, element );
       }
     }
   }
 
-  private void processEndElement( EndElement event ) throws XPathExpressionException, IOException {
-    //System.out.println( "EE=" + event );
+  private void processEndElement() throws XPathExpressionException, IOException {
     boolean buffering = currentlyBuffering();
     Level child = stack.pop();
     if( buffering ) {
       if( child.node == child.scopeNode ) {
         processBufferedElement( child );
+        child.node.getParentNode().removeChild( child.node );
+        if( !treeRequired ) {
+          document = null;
+        }
       }
     } else {
-      QName n = event.getName();
+      QName n = child.name;
       writer.write( "</" );
       String p = n.getPrefix();
       if( p != null && !p.isEmpty() ) {
@@ -276,12 +290,29 @@ public abstract class XmlFilterReader extends Reader {
       }
       writer.write( n.getLocalPart() );
       writer.write( ">" );
-      child.node.getParentNode().removeChild( child.node );
+      if( child.node != null ) {
+        child.node.getParentNode().removeChild( child.node );
+      }
     }
   }
 
-  private Element bufferElement( StartElement event ) {
-    QName qname = event.getName();
+  // Builds a document for a buffer that starts while streaming without one.  The ancestors are included so
+  // that absolute paths within the buffer still select the same nodes.
+  private Element bufferAncestors( QName name, String[] namespaces ) throws ParserConfigurationException {
+    document = createDocument();
+    Node parent = document;
+    for( int i = 1; i < stack.size(); i++ ) {
+      Level level = stack.get( i );
+      Element ancestor = bufferElement( level.name, level.namespaces );
+      parent.appendChild( ancestor );
+      parent = ancestor;
+    }
+    Element element = bufferElement( name, namespaces );
+    parent.appendChild( element );
+    return element;
+  }
+
+  private Element bufferElement( QName qname, String[] namespaces ) {
     String prefix = qname.getPrefix();
     String uri = qname.getNamespaceURI();
     Element element;
@@ -295,40 +326,53 @@ public abstract class XmlFilterReader extends Reader {
     }
     // Always need to buffer the namespaces regardless of what else happens so that XPath will work on attributes
     // namespace qualified attributes.
-    bufferNamespaces( event, element );
+    bufferNamespaces( namespaces, element );
     return element;
   }
 
-  private void bufferNamespaces( StartElement event, Element element ) {
-    Iterator namespaces = event.getNamespaces();
-    while( namespaces.hasNext() ) {
-      Namespace namespace = (Namespace)namespaces.next();
-      if( namespace.isDefaultNamespaceDeclaration() ) {
-        element.setAttribute( "xmlns", namespace.getNamespaceURI() );
-      } else {
-        element.setAttribute( "xmlns:" + namespace.getPrefix(), namespace.getNamespaceURI() );
+  private String[] readNamespaces() {
+    String[] namespaces = null;
+    int count = parser.getNamespaceCount();
+    if( count > 0 ) {
+      namespaces = new String[ count * 2 ];
+      for( int i = 0; i < count; i++ ) {
+        namespaces[ i * 2 ] = parser.getNamespacePrefix( i );
+        namespaces[ i * 2 + 1 ] = parser.getNamespaceURI( i );
+      }
+    }
+    return namespaces;
+  }
+
+  private void bufferNamespaces( String[] namespaces, Element element ) {
+    if( namespaces != null ) {
+      for( int i = 0; i < namespaces.length; i += 2 ) {
+        String prefix = namespaces[ i ];
+        if( prefix == null || prefix.isEmpty() ) {
+          element.setAttribute( "xmlns", namespaces[ i + 1 ] );
+        } else {
+          element.setAttribute( "xmlns:" + prefix, namespaces[ i + 1 ] );
+        }
       }
     }
   }
 
-  private void streamElement( StartElement event, Element element ) throws XPathExpressionException {
+  private void streamElement( QName qname, String[] namespaces, Element element ) throws XPathExpressionException, IOException {
     writer.write( "<" );
-    QName qname = event.getName();
-    String prefix = event.getName().getPrefix();
+    String prefix = qname.getPrefix();
     if( prefix != null && !prefix.isEmpty() ) {
       writer.write( prefix );
       writer.write( ":" );
     }
     writer.write( qname.getLocalPart() );
-    streamNamespaces( event );
-    streamAttributes( event, element );
+    streamNamespaces( namespaces );
+    streamAttributes( element );
     writer.write( ">" );
   }
 
   private void processBufferedElement( Level level, UrlRewriteFilterGroupDescriptor config ) throws XPathExpressionException {
     for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
       if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
-        XPathExpression path = (XPathExpression)selector.compiledPath( XPATH_COMPILER );
+        XPathExpression path = xpath( selector );
         Object node = path.evaluate( level.scopeNode, XPathConstants.NODE );
         if( node != null ) {
           UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
@@ -352,7 +396,7 @@ public abstract class XmlFilterReader extends Reader {
           }
         }
       } else if( selector instanceof UrlRewriteFilterDetectDescriptor ) {
-        XPathExpression path = (XPathExpression)selector.compiledPath( XPATH_COMPILER );
+        XPathExpression path = xpath( selector );
         Object node = path.evaluate( level.scopeNode, XPathConstants.NODE );
         if( node != null ) {
           UrlRewriteFilterDetectDescriptor detect = (UrlRewriteFilterDetectDescriptor)selector;
@@ -400,16 +444,13 @@ public abstract class XmlFilterReader extends Reader {
     return qname;
   }
 
-  private void bufferAttributes( StartElement event, Element element ) {
-    Iterator attributes = event.getAttributes();
-    while( attributes.hasNext() ) {
-      Attribute attribute = (Attribute)attributes.next();
-      bufferAttribute( element, attribute );
+  private void bufferAttributes( Element element ) {
+    for( int i = 0, n = parser.getAttributeCount(); i < n; i++ ) {
+      bufferAttribute( element, parser.getAttributeName( i ), parser.getAttributeValue( i ) );
     }
   }
 
-  private Attr bufferAttribute( Element element, Attribute attribute ) {
-    QName name = attribute.getName();
+  private Attr bufferAttribute( Element element, QName name, String value ) {
     String prefix = name.getPrefix();
     String uri = name.getNamespaceURI();
     Attr node;
@@ -423,65 +464,51 @@ public abstract class XmlFilterReader extends Reader {
       }
       element.setAttributeNodeNS( node );
     }
-    node.setTextContent( attribute.getValue() );
+    node.setTextContent( value );
     return node;
   }
 
-  private void streamNamespaces( StartElement event ) {
-    Iterator i = event.getNamespaces();
-    while( i.hasNext() ) {
-      Namespace ns = (Namespace)i.next();
-      writer.write( " xmlns" );
-      if( !ns.isDefaultNamespaceDeclaration() ) {
-        writer.write( ":" );
-        writer.write( ns.getPrefix() );
+  private void streamNamespaces( String[] namespaces ) throws IOException {
+    if( namespaces != null ) {
+      for( int i = 0; i < namespaces.length; i += 2 ) {
+        String prefix = namespaces[ i ];
+        writer.write( " xmlns" );
+        if( prefix != null && !prefix.isEmpty() ) {
+          writer.write( ":" );
+          writer.write( prefix );
+        }
+        writer.write( "=\"" );
+        writer.write( namespaces[ i + 1 ] );
+        writer.write( "\"" );
       }
-      writer.write( "=\"" );
-      writer.write( ns.getNamespaceURI() );
-      writer.write( "\"" );
     }
   }
 
-  private void streamAttributes( StartElement event, Element element ) throws XPathExpressionException {
-    Iterator i = event.getAttributes();
-    while( i.hasNext() ) {
-      Attribute attribute = (Attribute)i.next();
-      streamAttribute( element, attribute );
+  private void streamAttributes( Element element ) throws XPathExpressionException, IOException {
+    for( int i = 0, n = parser.getAttributeCount(); i < n; i++ ) {
+      streamAttribute( element, parser.getAttributeName( i ), parser.getAttributeValue( i ) );
     }
   }
 
-  private void streamAttribute( Element element, Attribute attribute ) throws XPathExpressionException {
-    Attr node;
-    QName name = attribute.getName();
-    String prefix = name.getPrefix();
-    String uri = name.getNamespaceURI();
-    if( uri == null || uri.isEmpty() ) {
-      node = document.createAttribute( name.getLocalPart() );
-      element.setAttributeNode( node );
-    } else {
-      node = document.createAttributeNS( uri, name.getLocalPart() );
-      if( prefix != null && !prefix.isEmpty() ) {
-        node.setPrefix( prefix );
-      }
-      element.setAttributeNodeNS( node );
+  private void streamAttribute( Element element, QName name, String value ) throws XPathExpressionException, IOException {
+    // The attribute only needs to be in the document while it is selected against.
+    Attr node = null;
+    if( element != null ) {
+      node = bufferAttribute( element, name, value );
     }
 
-    String value = attribute.getValue();
+    String prefix = name.getPrefix();
     Level level = stack.peek();
     if( ( level.scopeConfig ) == null || ( level.scopeConfig.getSelectors().isEmpty() ) ) {
-      value = filterAttribute( null, attribute.getName(), value, null );
-      node.setValue( value );
+      value = filterAttribute( null, name, value, null );
     } else {
-      UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level );
+      UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level, null, name );
       if( path instanceof UrlRewriteFilterApplyDescriptor ) {
         String rule = ((UrlRewriteFilterApplyDescriptor)path).rule();
-        value = filterAttribute( null, attribute.getName(), value, rule );
-        node.setValue( value );
+        value = filterAttribute( null, name, value, rule );
       }
     }
 
-    //dump( document );
-
     if( prefix == null || prefix.isEmpty() ) {
       writer.write( " " );
       writer.write( name.getLocalPart() );
@@ -494,28 +521,31 @@ public abstract class XmlFilterReader extends Reader {
     writer.write( "=\"" );
     writer.write( value );
     writer.write( "\"" );
-    element.removeAttributeNode( node );
+    if( node != null ) {
+      element.removeAttributeNode( node );
+    }
   }
 
-  private void processCharacters( Characters event ) throws XPathExpressionException {
-    //System.out.println( "T[" + event.isCData() + "," + event.isWhiteSpace() + "," + event.isIgnorableWhiteSpace() + "]=" + event );
+  private void processCharacters( boolean cdata ) throws XPathExpressionException, IOException {
     Level level = stack.peek();
-    Node node = stack.peek().node;
-    if( event.isCData() ) {
-      node.appendChild( document.createCDATASection( event.getData() ) );
-    } else {
-      node.appendChild( document.createTextNode( event.getData() ) );
+    Node node = level.node;
+    String value = parser.getText();
+    if( node != null ) {
+      if( cdata ) {
+        node.appendChild( document.createCDATASection( value ) );
+      } else {
+        node.appendChild( document.createTextNode( value ) );
+      }
     }
     if( !currentlyBuffering() ) {
-      String value = event.getData();
-      if( !event.isWhiteSpace() ) {
+      if( !parser.isWhiteSpace() ) {
         if( level.scopeConfig == null || level.scopeConfig.getSelectors().isEmpty() ) {
-          value = filterText( extractQName( node ), value, null );
+          value = filterText( level.name, value, null );
         } else {
-          UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level );
+          UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level, null, null );
           if( path instanceof UrlRewriteFilterApplyDescriptor ) {
             String rule = ((UrlRewriteFilterApplyDescriptor)path).rule();
-            value = filterText( extractQName( node ), value, rule );
+            value = filterText( level.name, value, rule );
           }
         }
       }
@@ -523,13 +553,12 @@ public abstract class XmlFilterReader extends Reader {
     }
   }
 
-  private void processComment( Comment event ) {
-    //System.out.println( "C=" + event );
+  private void processComment() throws IOException {
     if( currentlyBuffering() ) {
-      stack.peek().node.appendChild( document.createComment( event.getText() ) );
+      stack.peek().node.appendChild( document.createComment( parser.getText() ) );
     } else {
       writer.write( "<!--" );
-      writer.write( event.getText() );
+      writer.write( parser.getText() );
       writer.write( "-->" );
     }
   }
@@ -546,63 +575,222 @@ public abstract class XmlFilterReader extends Reader {
     stack.clear();
   }
 
-  protected UrlRewriteFilterPathDescriptor pickFirstMatchingPath( Level level ) {
+  // The element is the name of an element being started and not yet on the stack.
+  // The attribute is the name of the attribute being streamed for the element on the top of the stack.
+  protected UrlRewriteFilterPathDescriptor pickFirstMatchingPath( Level level, QName element, QName attribute ) {
     UrlRewriteFilterPathDescriptor match = null;
     if( level.scopeConfig != null ) {
       for( UrlRewriteFilterPathDescriptor selector : level.scopeConfig.getSelectors() ) {
-        try {
-          XPathExpression path = (XPathExpression)selector.compiledPath( XPATH_COMPILER );
-          Object node = path.evaluate( level.scopeNode, XPathConstants.NODE );
-          if( node != null ) {
-            match = selector;
-            break;
+        CompiledPath path = (CompiledPath)selector.compiledPath( XPATH_COMPILER );
+        boolean matched;
+        if( path.steps != null ) {
+          matched = streamMatches( path, level.scopeDepth, element, attribute );
+        } else {
+          try {
+            matched = xpath( selector ).evaluate( level.scopeNode, XPathConstants.NODE ) != null;
+          } catch( XPathExpressionException e ) {
+            throw new IllegalArgumentException( selector.path(), e );
           }
-        } catch( XPathExpressionException e ) {
-          throw new IllegalArgumentException( selector.path(), e );
+        }
+        if( matched ) {
+          match = selector;
+          break;
         }
       }
     }
     return match;
   }
 
+  // Decides if the path selects any node of the ancestor path without evaluating it against the document.
+  // While streaming the only elements in the document are the ancestors of the current event and the only
+  // attribute is the one currently being streamed.
+  private boolean streamMatches( CompiledPath path, int scopeDepth, QName element, QName attribute ) {
+    int depth = stack.size() - 1;
+    if( element != null ) {
+      depth++;
+    }
+    return streamMatches( path.steps, 0, path.absolute ? 0 : scopeDepth, depth, element, attribute );
+  }
+
+  private boolean streamMatches( Step[] steps, int index, int position, int depth, QName element, QName attribute ) {
+    if( index == steps.length ) {
+      return true;
+    }
+    Step step = steps[ index ];
+    if( step.attribute ) {
+      // Only the element on the top of the stack has a live attribute.
+      return attribute != null
+          && ( step.descendant ? position <= depth && depth > 0 : position == depth && depth > 0 )
+          && step.matches( attribute );
+    }
+    int last = step.descendant ? depth : Math.min( position + 1, depth );
+    for( int i = position + 1; i <= last; i++ ) {
+      QName name = ( i < stack.size() ) ? stack.get( i ).name : element;
+      if( step.matches( name ) && streamMatches( steps, index + 1, i, depth, element, attribute ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // XPathExpression isn't thread safe so the fallback expressions are compiled per reader.
+  private XPathExpression xpath( UrlRewriteFilterPathDescriptor selector ) throws XPathExpressionException {
+    if( xpaths == null ) {
+      xpath = XPathFactory.newInstance().newXPath();
+      xpaths = new HashMap<String,XPathExpression>();
+    }
+    XPathExpression expression = xpaths.get( selector.path() );
+    if( expression == null ) {
+      expression = xpath.compile( selector.path() );
+      xpaths.put( selector.path(), expression );
+    }
+    return expression;
+  }
+
   private boolean currentlyBuffering() {
     return stack.peek().buffered;
   }
 
-  private Level pushLevel( Level parent, XMLEvent event, Node node, Node scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
-    Level level = new Level( parent, event, node, scopeNode, scopeConfig );
+  private Level pushLevel( Level parent, QName name, String[] namespaces, Node node, Node scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig, boolean scoped ) {
+    Level level = new Level( parent, name, namespaces, node, scopeNode, scopeConfig, scoped ? stack.size() : -1 );
     stack.push( level );
     return level;
   }
 
+  private static boolean requiresTree( UrlRewriteFilterGroupDescriptor group ) {
+    if( group != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : group.getSelectors() ) {
+        CompiledPath path = (CompiledPath)selector.compiledPath( XPATH_COMPILER );
+        if( path.steps == null ) {
+          return true;
+        }
+        if( selector instanceof UrlRewriteFilterScopeDescriptor && requiresTree( (UrlRewriteFilterScopeDescriptor)selector ) ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static Document createDocument() throws ParserConfigurationException {
+    synchronized( DOCUMENT_FACTORY ) {
+      return DOCUMENT_FACTORY.newDocumentBuilder().newDocument();
+    }
+  }
+
   private static class Level {
-//    private Level parent;
-//    private XMLEvent event;
     private Node node;
+    private QName name;
+    private String[] namespaces;
     private UrlRewriteFilterGroupDescriptor scopeConfig;
     private Node scopeNode;
+    private int scopeDepth;
     private boolean buffered;
 
-    private Level( Level parent, XMLEvent event, Node node, Node scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
-//      this.parent = parent;
-//      this.event = event;
+    private Level( Level parent, QName name, String[] namespaces, Node node, Node scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig, int scopeDepth ) {
       this.node = node;
+      this.name = name;
+      this.namespaces = namespaces;
       this.scopeConfig = scopeConfig;
       this.scopeNode = scopeNode;
+      if( scopeDepth >= 0 ) {
+        this.scopeDepth = scopeDepth;
+      } else if( parent != null ) {
+        this.scopeDepth = parent.scopeDepth;
+      } else {
+        this.scopeDepth = 0;
+      }
       this.buffered = ( ( parent != null ) && parent.buffered ) ||
                       ( ( scopeConfig != null ) && ( scopeConfig instanceof UrlRewriteFilterBufferDescriptor ) );
     }
   }
 
-  private static class XmlPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<XPathExpression> {
+  private static class XmlPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<CompiledPath> {
     private static XPath XPATH = XPathFactory.newInstance().newXPath();
     @Override
-    public XPathExpression compile( String expression, XPathExpression compiled ) {
+    public CompiledPath compile( String expression, CompiledPath compiled ) {
+      if( compiled != null ) {
+        return compiled;
+      }
+      // Always compile with XPath to reject invalid expressions even if they will be matched while streaming.
       try {
-        return XPATH.compile( expression );
+        synchronized( XPATH ) {
+          XPATH.compile( expression );
+        }
       } catch( XPathExpressionException e ) {
         throw new IllegalArgumentException( e );
       }
+      return new CompiledPath( expression );
+    }
+  }
+
+  // A compiled selector.  The steps are only present for the subset of XPath that can be decided from the
+  // ancestor path while streaming: child and descendant steps with names or wildcards and an optional
+  // trailing attribute.  Everything else (predicates, functions, text(), prefixes) is evaluated with XPath.
+  private static class CompiledPath {
+    private static final Pattern NAME = Pattern.compile( "[A-Za-z_][A-Za-z0-9_.\\-]*" );
+    private boolean absolute;
+    private Step[] steps;
+    private CompiledPath( String expression ) {
+      List<Step> list = new ArrayList<Step>();
+      absolute = expression.startsWith( "/" );
+      int i = 0;
+      int n = expression.length();
+      while( list != null && i < n ) {
+        boolean descendant = false;
+        if( expression.startsWith( "//", i ) ) {
+          descendant = true;
+          i += 2;
+        } else if( expression.charAt( i ) == '/' ) {
+          i++;
+        } else if( i > 0 ) {
+          list = null;
+          break;
+        }
+        int end = expression.indexOf( '/', i );
+        if( end < 0 ) {
+          end = n;
+        }
+        Step step = Step.parse( expression.substring( i, end ), descendant, end == n );
+        if( step == null ) {
+          list = null;
+        } else {
+          list.add( step );
+        }
+        i = end;
+      }
+      if( list != null && !list.isEmpty() ) {
+        steps = list.toArray( new Step[ list.size() ] );
+      }
+    }
+  }
+
+  private static class Step {
+    private boolean descendant;
+    private boolean attribute;
+    private String name; // Null for a wildcard.
+    private static Step parse( String token, boolean descendant, boolean last ) {
+      Step step = new Step();
+      step.descendant = descendant;
+      if( token.startsWith( "@" ) ) {
+        token = token.substring( 1 );
+        if( !last || "xmlns".equals( token ) ) {
+          return null;
+        }
+        step.attribute = true;
+      }
+      if( "*".equals( token ) && !step.attribute ) {
+        step.name = null;
+      } else if( CompiledPath.NAME.matcher( token ).matches() ) {
+        step.name = token;
+      } else {
+        return null;
+      }
+      return step;
+    }
+    private boolean matches( QName qname ) {
+      return name == null || ( name.equals( qname.getLocalPart() )
+          && ( qname.getNamespaceURI() == null || qname.getNamespaceURI().isEmpty() ) );
     }
   }
 
@@ -617,17 +805,22 @@ public abstract class XmlFilterReader extends Reader {
     }
   }
 
-  private static final void writeBufferedElement( Node node, Writer writer ) throws IOException {
+  private void writeBufferedElement( Node node, Writer writer ) throws IOException {
     try {
-      getTransformer().transform( new DOMSource( node ), new StreamResult( writer ) );
+      if( transformer == null ) {
+        transformer = createTransformer();
+      }
+      transformer.transform( new DOMSource( node ), new StreamResult( writer ) );
     } catch( TransformerException e ) {
       throw new IOException( e );
     }
   }
 
-  private static final Transformer getTransformer() throws TransformerConfigurationException {
-    TransformerFactory tf = TransformerFactory.newInstance();
-    Transformer t = tf.newTransformer();
+  private static Transformer createTransformer() throws TransformerConfigurationException {
+    Transformer t;
+    synchronized( TRANSFORMER_FACTORY ) {
+      t = TRANSFORMER_FACTORY.newTransformer();
+    }
     t.setOutputProperty( OutputKeys.OMIT_XML_DECLARATION, "yes" );
     return t;
   }
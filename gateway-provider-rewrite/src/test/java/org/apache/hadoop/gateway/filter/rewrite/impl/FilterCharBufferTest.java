@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class FilterCharBufferTest {
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    FilterCharBuffer buffer = new FilterCharBuffer();
+    buffer.write( "abc" );
+    buffer.append( "def", 1, 3 );
+    buffer.write( 'g' );
+    assertThat( buffer.available(), is( 6 ) );
+    char[] chars = new char[ 4 ];
+    assertThat( buffer.read( chars, 0, 4 ), is( 4 ) );
+    assertThat( new String( chars ), is( "abce" ) );
+    assertThat( buffer.toString(), is( "fg" ) );
+    buffer.close();
+  }
+
+  @Test
+  public void testWriteAfterCloseFails() throws IOException {
+    FilterCharBuffer buffer = new FilterCharBuffer();
+    buffer.write( "abc" );
+    buffer.close();
+    assertThat( buffer.available(), is( 0 ) );
+    assertThat( buffer.read( new char[ 3 ], 0, 3 ), is( 0 ) );
+    assertThat( buffer.toString(), is( "" ) );
+    try {
+      buffer.write( "def" );
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      assertThat( e.getMessage(), is( "closed" ) );
+    }
+    try {
+      buffer.append( 'x' );
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      assertThat( e.getMessage(), is( "closed" ) );
+    }
+    // Closing again is harmless.
+    buffer.close();
+  }
+
+}
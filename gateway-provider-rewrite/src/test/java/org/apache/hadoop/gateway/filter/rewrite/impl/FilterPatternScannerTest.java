@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FilterPatternScannerTest {
+
+  private static class TagFilterReader implements UrlRewriteFilterReader {
+    @Override
+    public String filterValueString( String name, String value, String rule ) {
+      return "{" + rule + ":" + value + "}";
+    }
+  }
+
+  @Test
+  public void testRequiredLiteral() {
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "/webhdfs/v1" ) ), is( "/webhdfs/v1" ) );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "(https?://[^/':,]+:[\\d]+)?/cluster/app" ) ), is( "/cluster/app" ) );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "https?://[^/':,]+:[\\d]+/proxy/[^']*" ) ), is( "/proxy/" ) );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "//[^/':,]+:[\\d]+/node/containerlogs/container[^']*" ) ), is( "/node/containerlogs/container" ) );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "abcd?" ) ), is( "abc" ) );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "a\\.b\\d" ) ), is( "a.b" ) );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "/one|/two" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "(?i)/one" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "/one", Pattern.CASE_INSENSITIVE ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "[a-z]+" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "\\x2Fcluster/app" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "\\x{2F}cluster/app" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "\\u002Fproxy/x" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "ab\\0101cd" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "\\cJline/feed" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "(?<g>ab)\\k<g>cd" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "\\p{Alpha}+/node" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "\\P{Alpha}+/node" ) ), nullValue() );
+    assertThat( FilterPatternScanner.requiredLiteral( Pattern.compile( "(ab)\\12/node" ) ), nullValue() );
+  }
+
+  @Test
+  public void testFilterWithMultiCharEscapes() {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "\\x2Fcluster/app", "hex" );
+    config.addApply( "\\u002Fproxy/x", "unicode" );
+    config.addApply( "ab\\0101cd", "octal" );
+    FilterPatternScanner scanner = new FilterPatternScanner( config, new UrlRewriteFilterReader.RegexCompiler() );
+    UrlRewriteFilterReader filterReader = new TagFilterReader();
+
+    assertThat(
+        scanner.filter( "a='/cluster/app' b='/proxy/x' c='abAcd'", filterReader ),
+        is( "a='{hex:/cluster/app}' b='{unicode:/proxy/x}' c='{octal:abAcd}'" ) );
+  }
+
+  @Test
+  public void testFilter() {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "(https?://[^/':,]+:[\\d]+)?/cluster/app", "app" );
+    config.addApply( "/cluster/container", "container" );
+    config.addApply( "[0-9]{4}", "number" );
+    FilterPatternScanner scanner = new FilterPatternScanner( config, new UrlRewriteFilterReader.RegexCompiler() );
+    UrlRewriteFilterReader filterReader = new TagFilterReader();
+
+    String input = "no match here";
+    assertThat( scanner.filter( input, filterReader ), sameInstance( input ) );
+
+    assertThat(
+        scanner.filter( "a='/cluster/container/1' b='http://host:8088/cluster/app/2' c=12345", filterReader ),
+        is( "a='{container:/cluster/container}/1' b='{app:http://host:8088/cluster/app}/2' c={number:1234}5" ) );
+  }
+
+  @Test
+  public void testFilterStopsBeforeLimit() {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/cluster/app/[0-9]+", "app" );
+    FilterPatternScanner scanner = new FilterPatternScanner( config, new UrlRewriteFilterReader.RegexCompiler() );
+    UrlRewriteFilterReader filterReader = new TagFilterReader();
+
+    StringBuilder output = new StringBuilder();
+    String input = "x /cluster/app/12 y /cluster/app/34";
+    int consumed = scanner.filter( input, input.length() - 4, false, filterReader, output );
+    assertThat( consumed, is( input.indexOf( "/cluster/app/34" ) ) );
+    assertThat( output.toString(), is( "x {app:/cluster/app/12} y " ) );
+  }
+
+}
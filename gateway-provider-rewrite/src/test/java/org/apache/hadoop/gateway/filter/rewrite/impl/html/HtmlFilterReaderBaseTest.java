@@ -350,6 +350,32 @@ public class HtmlFilterReaderBaseTest {
     assertThat( outputXml, is( expectedOutput ) );
   }
 
+  @Test
+  public void testMultipleMatchedJavaScriptTextSelectors() throws IOException, ParserConfigurationException {
+    Map<String, Map<String, String>> rules = new HashMap<String, Map<String, String>>();
+    Map<String, String> apps = new HashMap<String, String>();
+    apps.put( "(https?://[^/':,]+:[\\d]+)?/cluster/app", "https://knoxhost:8443/cluster/app" );
+    rules.put( "apps-rule", apps );
+    Map<String, String> containers = new HashMap<String, String>();
+    containers.put( "/cluster/container", "https://knoxhost:8443/cluster/container" );
+    rules.put( "containers-rule", containers );
+    String inputXml =
+        "<root><script type=\"text/javascript\">" +
+        "var a='/cluster/container/c_1', b='http://testhost:8088/cluster/app/a_1', c='/cluster/container/c_2', d='';" +
+        "</script><a href=\"\">empty</a></root>";
+    StringReader inputReader = new StringReader( inputXml );
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "(https?://[^/':,]+:[\\d]+)?/cluster/app", "apps-rule" );
+    config.addApply( "/cluster/container", "containers-rule" );
+    HtmlFilterReaderBase filterReader = new MatchRuleXmlFilterReader( inputReader, rules, config );
+    String outputXml = new String( IOUtils.toCharArray( filterReader ) );
+    String expectedOutput =
+        "<root><script type=\"text/javascript\">" +
+        "var a='https://knoxhost:8443/cluster/container/c_1', b='https://knoxhost:8443/cluster/app/a_1', c='https://knoxhost:8443/cluster/container/c_2', d='';" +
+        "</script><a href=\"\">empty</a></root>";
+    assertThat( outputXml, is( expectedOutput ) );
+  }
+
   public static class XmlRewriteRulesDescriptorDigesterTest {
 
     private static DigesterLoader loader = DigesterLoader.newLoader( new XmlRewriteRulesDigester() );
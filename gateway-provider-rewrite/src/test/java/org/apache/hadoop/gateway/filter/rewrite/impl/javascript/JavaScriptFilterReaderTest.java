@@ -115,4 +115,31 @@ public class JavaScriptFilterReaderTest {
         "}).error(network_error_handler(url));\n";
     assertThat( outputJs, is ( expectedOutputJs ) );
   }
+
+  @Test
+  public void testLargeSingleLineReadInSmallChunks() throws IOException {
+    Map<String, Map<String, String>> rules = new HashMap<String, Map<String, String>>();
+    Map<String, String> map = new HashMap<String, String>();
+    map.put( "/webhdfs/v1/[a-z0-9]+", "https://knoxhost:8443/webhdfs/v1/file" );
+    rules.put( "test-rule", map );
+    StringBuilder input = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for( int i = 0; i < 20000; i++ ) {
+      input.append( "f(\"/webhdfs/v1/f" ).append( i ).append( "\");" );
+      expected.append( "f(\"https://knoxhost:8443/webhdfs/v1/file\");" );
+    }
+    input.append( "\r\nvar x=1;" );
+    expected.append( "\nvar x=1;\n" );
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/webhdfs/v1/[a-z0-9]+", "test-rule" );
+    JavaScriptFilterReader filterReader = new MatchRuleJsFilterReader( new StringReader( input.toString() ), rules, config );
+    StringBuilder output = new StringBuilder();
+    char[] chunk = new char[ 7 ];
+    int count = filterReader.read( chunk, 0, chunk.length );
+    while( count >= 0 ) {
+      output.append( chunk, 0, count );
+      count = filterReader.read( chunk, 0, chunk.length );
+    }
+    assertThat( output.toString(), is( expected.toString() ) );
+  }
 }
@@ -31,6 +31,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
@@ -356,6 +357,45 @@ public class JsonFilterReaderTest {
     assertThat( output, is( "{\"test-name\":\"\\b\"}" ) );
   }
 
+  @Test
+  public void testLargeListingReadInSmallChunks() throws Exception {
+    StringBuilder input = new StringBuilder();
+    input.append( "{\"FileStatuses\":{\"FileStatus\":[" );
+    for( int i = 0; i < 5000; i++ ) {
+      if( i > 0 ) {
+        input.append( "," );
+      }
+      input.append( "{\"pathSuffix\":\"file-" ).append( i ).append( "\",\"length\":" ).append( i );
+      input.append( ",\"permission\":\"644\",\"replication\":3,\"owner\":null,\"symlink\":false}" );
+    }
+    input.append( "]}}" );
+
+    UrlRewriteRulesDescriptor rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    UrlRewriteFilterDescriptor filterConfig = rulesConfig.addFilter( "filter-1" );
+    UrlRewriteFilterContentDescriptor contentConfig = filterConfig.addContent( "text/json" );
+    UrlRewriteFilterBufferDescriptor bufferConfig = contentConfig.addBuffer( "$.FileStatuses.FileStatus[*]" );
+    bufferConfig.addApply( "$.pathSuffix", "test-rule" );
+
+    String streamed = readInChunks( new NoopJsonFilterReader( new StringReader( input.toString() ), null ), 7 );
+    String buffered = readInChunks( new JsonFilterReader( new StringReader( input.toString() ), contentConfig ), 7 );
+    String expected = input.toString().replaceAll( "\\s", "" );
+
+    assertThat( streamed, is( expected ) );
+    assertThat( buffered, is( expected ) );
+  }
+
+  private static String readInChunks( Reader reader, int size ) throws IOException {
+    StringBuilder output = new StringBuilder();
+    char[] chunk = new char[ size ];
+    int count = reader.read( chunk, 0, chunk.length );
+    while( count >= 0 ) {
+      output.append( chunk, 0, count );
+      count = reader.read( chunk, 0, chunk.length );
+    }
+    reader.close();
+    return output.toString();
+  }
+
 //  private void dump( ObjectMapper mapper, JsonGenerator generator, JsonNode node ) throws IOException {
 //    mapper.writeTree( generator, node );
 //    System.out.println();
@@ -913,6 +913,79 @@ public class XmlFilterReaderTest {
     }
   }
 
+  @Test
+  public void testStreamedSelectorsMatchXPathEvaluation() throws Exception {
+    InputStream stream = TestUtils.getResourceStream( this.getClass(), "properties-attributes.xml" );
+    String input = IOUtils.toString( stream, Charset.forName( "UTF-8" ) );
+
+    // These are decided from the element stack while the predicate forces evaluation against the document.
+    String[] streamed = new String[]{ "//property/@value", "/*/property/@value", "properties//@value" };
+    String evaluated = "/properties/property[@value]/@value";
+
+    UrlRewriteRulesDescriptor rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    UrlRewriteFilterDescriptor filterConfig = rulesConfig.addFilter( "filter-1" );
+    UrlRewriteFilterContentDescriptor contentConfig = filterConfig.addContent( "text/xml" );
+    contentConfig.addApply( evaluated, "test-rule-2" );
+    String expected = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig ) );
+    assertThat( the( expected ), hasXPath( "/properties/property[2]/@name", equalTo( "test-name-2" ) ) );
+    assertThat( the( expected ), hasXPath( "/properties/property[2]/@value", equalTo( "attr:test-rule-2{test-value-2}" ) ) );
+
+    for( String path : streamed ) {
+      rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+      filterConfig = rulesConfig.addFilter( "filter-1" );
+      contentConfig = filterConfig.addContent( "text/xml" );
+      contentConfig.addApply( path, "test-rule-2" );
+      String output = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig ) );
+      assertThat( path, output, is( expected ) );
+    }
+
+    // Unqualified names only select elements without a namespace, just like XPath.
+    input = "<root xmlns=\"ns\"><node attribute=\"attr\">nodevalue</node></root>";
+    rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    filterConfig = rulesConfig.addFilter( "filter-1" );
+    contentConfig = filterConfig.addContent( "text/xml" );
+    contentConfig.addApply( "/root/node/@attribute", "test-rule" );
+    String output = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig ) );
+    assertThat( output, containsString( "attribute=\"attr\"" ) );
+    rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    filterConfig = rulesConfig.addFilter( "filter-1" );
+    contentConfig = filterConfig.addContent( "text/xml" );
+    contentConfig.addApply( "/root/node[@attribute]/@attribute", "test-rule" );
+    expected = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig ) );
+    assertThat( output, is( expected ) );
+  }
+
+  @Test
+  public void testLargeDocumentReadInSmallChunks() throws IOException, ParserConfigurationException, XMLStreamException {
+    StringBuilder input = new StringBuilder( "<root xmlns:x=\"ns\">" );
+    for( int i = 0; i < 2000; i++ ) {
+      input.append( "<x:entry id=\"" ).append( i ).append( "\"><name>name-" ).append( i ).append( "</name></x:entry>" );
+    }
+    input.append( "</root>" );
+
+    UrlRewriteRulesDescriptor rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    UrlRewriteFilterDescriptor filterConfig = rulesConfig.addFilter( "filter-1" );
+    UrlRewriteFilterContentDescriptor contentConfig = filterConfig.addContent( "text/xml" );
+    UrlRewriteFilterBufferDescriptor bufferConfig = contentConfig.addBuffer( "/root/*" );
+    bufferConfig.addApply( "name", "test-rule" );
+
+    String output = readInChunks( new NoopXmlFilterReader( new StringReader( input.toString() ), contentConfig ), 7 );
+    SimpleNamespaceContext ns = new SimpleNamespaceContext().withBinding( "x", "ns" );
+    assertThat( the( output ), hasXPath( "count(/root/x:entry)", ns, equalTo( "2000" ) ) );
+    assertThat( the( output ), hasXPath( "/root/x:entry[@id='1999']/name", ns, equalTo( "name-1999" ) ) );
+  }
+
+  private static String readInChunks( Reader reader, int size ) throws IOException {
+    StringBuilder output = new StringBuilder();
+    char[] chunk = new char[ size ];
+    int count = reader.read( chunk, 0, size );
+    while( count >= 0 ) {
+      output.append( chunk, 0, count );
+      count = reader.read( chunk, 0, size );
+    }
+    return output.toString();
+  }
+
   @Test
   public void testDefaultNamespace() throws IOException, ParserConfigurationException, XMLStreamException {
     String input = "<root xmlns=\"ns\"><node attribute=\"attr\">nodevalue</node></root>";
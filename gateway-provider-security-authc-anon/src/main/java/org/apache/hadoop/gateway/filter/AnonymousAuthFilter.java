@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.filter;
 
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 
 import java.io.IOException;
@@ -53,6 +54,7 @@ public class AnonymousAuthFilter implements Filter {
   }
 
   private void continueWithEstablishedSecurityContext(Subject subject, final HttpServletRequest request, final HttpServletResponse response, final FilterChain chain) throws IOException, ServletException {
+    GatewaySecurityContext.set(request, subject);
     try {
       Subject.doAs(
           subject,
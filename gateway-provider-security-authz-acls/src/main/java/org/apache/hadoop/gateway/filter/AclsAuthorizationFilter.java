@@ -17,7 +17,6 @@
  */
 package org.apache.hadoop.gateway.filter;
 
-import javax.security.auth.Subject;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -34,17 +33,15 @@ import org.apache.hadoop.gateway.audit.api.Auditor;
 import org.apache.hadoop.gateway.audit.api.ResourceType;
 import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
-import org.apache.hadoop.gateway.security.GroupPrincipal;
-import org.apache.hadoop.gateway.security.ImpersonatedPrincipal;
-import org.apache.hadoop.gateway.security.PrimaryPrincipal;
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
 import org.apache.hadoop.gateway.util.IpAddressValidator;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
 
 import java.io.IOException;
-import java.security.AccessController;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Set;
 
 public class AclsAuthorizationFilter implements Filter {
   private static AclsAuthorizationMessages log = MessagesFactory.get( AclsAuthorizationMessages.class );
@@ -108,22 +105,21 @@ public class AclsAuthorizationFilter implements Filter {
     boolean groupAccess = false;
     boolean ipAddrAccess = false;
     
-    Subject subject = Subject.getSubject(AccessController.getContext());
-    Principal primaryPrincipal = (Principal)subject.getPrincipals(PrimaryPrincipal.class).toArray()[0];
+    GatewaySecurityContext context = GatewaySecurityContext.get(request);
+    Principal primaryPrincipal = context.getPrimaryPrincipal();
     log.primaryPrincipal(primaryPrincipal.getName());
-    Object[] impersonations = subject.getPrincipals(ImpersonatedPrincipal.class).toArray();
-    if (impersonations.length > 0) {
-      log.impersonatedPrincipal(((Principal)impersonations[0]).getName());
-      userAccess = checkUserAcls((Principal)impersonations[0]);
+    Principal impersonation = context.getImpersonatedPrincipal();
+    if (impersonation != null) {
+      log.impersonatedPrincipal(impersonation.getName());
+      userAccess = checkUserAcls(impersonation);
       log.impersonatedPrincipalHasAccess(userAccess);
     }
     else {
       userAccess = checkUserAcls(primaryPrincipal);
       log.primaryPrincipalHasAccess(userAccess);
     }
-    Object[] groups = subject.getPrincipals(GroupPrincipal.class).toArray();
-    if (groups.length > 0) {
-//      System.out.println("GroupPrincipal: " + ((Principal)groups[0]).getName());
+    Set<String> groups = context.getGroupNames();
+    if (groups.size() > 0) {
       groupAccess = checkGroupAcls(groups);
       log.groupPrincipalHasAccess(groupAccess);
     }
@@ -182,7 +178,7 @@ public class AclsAuthorizationFilter implements Filter {
     return allowed;
   }
 
-  private boolean checkGroupAcls(Object[] userGroups) {
+  private boolean checkGroupAcls(Set<String> userGroups) {
     boolean allowed = false;
     if (userGroups == null) {
       return false;
@@ -191,8 +187,8 @@ public class AclsAuthorizationFilter implements Filter {
       allowed = true;
     }
     else {
-      for (int i = 0; i < userGroups.length; i++) {
-        if (parser.groups.contains(((Principal)userGroups[i]).getName())) {
+      for (String group : userGroups) {
+        if (parser.groups.contains(group)) {
           allowed = true;
           break;
         }
@@ -201,6 +197,7 @@ public class AclsAuthorizationFilter implements Filter {
     return allowed;
   }
 
+
   private void sendForbidden(HttpServletResponse res) {
     sendErrorCode(res, 403);
   }
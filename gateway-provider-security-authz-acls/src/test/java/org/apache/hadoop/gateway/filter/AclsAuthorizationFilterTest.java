@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter;
+
+import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
+import org.apache.hadoop.gateway.filter.security.AbstractIdentityAssertionFilter;
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
+import org.apache.hadoop.gateway.security.GroupPrincipal;
+import org.apache.hadoop.gateway.security.PrimaryPrincipal;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.security.auth.Subject;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AclsAuthorizationFilterTest {
+
+  private boolean accessGranted;
+
+  @Before
+  public void setup() {
+    AuditServiceFactory.getAuditService().createContext();
+    accessGranted = false;
+  }
+
+  @After
+  public void reset() {
+    AuditServiceFactory.getAuditService().detachContext();
+  }
+
+  @Test
+  public void testAclsCheckAssertedIdentity() throws Exception {
+    // guest is asserted as admin who is mapped into the admins group.
+    runChain( "admin;admins;*" );
+    assertTrue( accessGranted );
+  }
+
+  @Test
+  public void testAclsIgnoreAuthenticatedIdentity() throws Exception {
+    runChain( "guest;users;*" );
+    assertFalse( accessGranted );
+  }
+
+  // Authentication as done by the Shiro provider, identity assertion as done by the JWT assertion filters
+  // and then the ACLs.
+  private void runChain( String acl ) throws Exception {
+    final HttpServletRequest request = createRequest();
+    final HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    final AclsAuthorizationFilter acls = new AclsAuthorizationFilter();
+    FilterConfig aclsConfig = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( aclsConfig.getInitParameter( "resource.role" ) ).andReturn( "knox" ).anyTimes();
+    EasyMock.expect( aclsConfig.getInitParameter( "knox.acl" ) ).andReturn( acl ).anyTimes();
+    EasyMock.replay( aclsConfig );
+    acls.init( aclsConfig );
+
+    final AbstractIdentityAssertionFilter assertion = new AbstractIdentityAssertionFilter() {
+      @Override
+      public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain )
+          throws IOException, ServletException {
+        Subject subject = Subject.getSubject( AccessController.getContext() );
+        String principalName = mapper.mapUserPrincipal( getPrincipalName( subject ) );
+        continueChainAsPrincipal( request, response, chain, principalName );
+      }
+    };
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getInitParameter( "principal.mapping" ) ).andReturn( "guest=admin" ).anyTimes();
+    EasyMock.expect( context.getInitParameter( "group.principal.mapping" ) ).andReturn( "admin=admins" ).anyTimes();
+    EasyMock.replay( context );
+    FilterConfig assertionConfig = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( assertionConfig.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.replay( assertionConfig );
+    assertion.init( assertionConfig );
+
+    final FilterChain dispatch = new FilterChain() {
+      @Override
+      public void doFilter( ServletRequest request, ServletResponse response ) {
+        accessGranted = true;
+      }
+    };
+    final FilterChain authorization = new FilterChain() {
+      @Override
+      public void doFilter( ServletRequest request, ServletResponse response ) throws IOException, ServletException {
+        acls.doFilter( request, response, dispatch );
+      }
+    };
+
+    Subject subject = new Subject();
+    subject.getPrincipals().add( new PrimaryPrincipal( "guest" ) );
+    subject.getPrincipals().add( new GroupPrincipal( "users" ) );
+    GatewaySecurityContext.set( request, subject );
+    try {
+      Subject.doAs( subject, new PrivilegedExceptionAction<Object>() {
+        @Override
+        public Object run() throws Exception {
+          assertion.doFilter( request, response, authorization );
+          return null;
+        }
+      } );
+    } catch( PrivilegedActionException e ) {
+      throw e.getException();
+    }
+  }
+
+  private static HttpServletRequest createRequest() {
+    final Map<String, Object> attributes = new HashMap<String, Object>();
+    attributes.put( AbstractGatewayFilter.SOURCE_REQUEST_CONTEXT_URL_ATTRIBUTE_NAME, "/gateway/sandbox/webhdfs/v1" );
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( request.getRemoteAddr() ).andReturn( "127.0.0.1" ).anyTimes();
+    EasyMock.expect( request.getAttribute( EasyMock.anyObject( String.class ) ) ).andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() {
+        return attributes.get( (String)EasyMock.getCurrentArguments()[ 0 ] );
+      }
+    } ).anyTimes();
+    request.setAttribute( EasyMock.anyObject( String.class ), EasyMock.anyObject() );
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() {
+        attributes.put( (String)EasyMock.getCurrentArguments()[ 0 ], EasyMock.getCurrentArguments()[ 1 ] );
+        return null;
+      }
+    } ).anyTimes();
+    EasyMock.replay( request );
+    return request;
+  }
+
+}
@@ -33,6 +33,7 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.hadoopauth.HadoopAuthMessages;
@@ -67,6 +68,7 @@ public class HadoopAuthPostFilter implements Filter {
 
   private void doAs(final ServletRequest request, final ServletResponse response, final FilterChain chain, Subject subject)
       throws IOException, ServletException {
+      GatewaySecurityContext.set(request, subject);
       try {
         Subject.doAs(
             subject,
@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway.pac4j.filter;
 
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.pac4j.Pac4jMessages;
+import org.apache.hadoop.gateway.pac4j.session.KnoxSessionResponseWrapper;
 import org.apache.hadoop.gateway.pac4j.session.KnoxSessionStore;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.security.KeystoreService;
@@ -30,7 +31,6 @@ import org.pac4j.config.client.PropertiesConfigFactory;
 import org.pac4j.core.client.Client;
 import org.pac4j.core.config.Config;
 import org.pac4j.core.config.ConfigSingleton;
-import org.pac4j.core.context.J2EContext;
 import org.pac4j.core.context.Pac4jConstants;
 import org.pac4j.core.util.CommonHelper;
 import org.pac4j.http.client.indirect.IndirectBasicAuthClient;
@@ -72,6 +72,8 @@ public class Pac4jDispatcherFilter implements Filter {
 
   private static final String PAC4J_COOKIE_DOMAIN_SUFFIX_PARAM = "pac4j.cookie.domain.suffix";
 
+  private static final String PAC4J_SESSION_CACHE_SIZE_PARAM = "pac4j.session.cache.size";
+
   private CallbackFilter callbackFilter;
 
   private RequiresAuthenticationFilter requiresAuthenticationFilter;
@@ -100,8 +102,9 @@ public class Pac4jDispatcherFilter implements Filter {
       log.cryptoServiceAndAliasServiceAndClusterNameRequired();
       throw new ServletException("The crypto service, alias service and cluster name are required.");
     }
+    final char[] password;
     try {
-      aliasService.getPasswordFromAliasForCluster(clusterName, KnoxSessionStore.PAC4J_PASSWORD, true);
+      password = aliasService.getPasswordFromAliasForCluster(clusterName, KnoxSessionStore.PAC4J_PASSWORD, true);
     } catch (AliasServiceException e) {
       log.unableToGenerateAPasswordForEncryption(e);
       throw new ServletException("Unable to generate a password for encryption.");
@@ -159,7 +162,16 @@ public class Pac4jDispatcherFilter implements Filter {
     requiresAuthenticationFilter.setConfig(config);
 
     final String domainSuffix = context.getInitParameter(PAC4J_COOKIE_DOMAIN_SUFFIX_PARAM);
-    config.setSessionStore(new KnoxSessionStore(cryptoService, clusterName, domainSuffix));
+    int sessionCacheSize = KnoxSessionStore.DEFAULT_SESSION_CACHE_SIZE;
+    final String sessionCacheSizeParameter = filterConfig.getInitParameter(PAC4J_SESSION_CACHE_SIZE_PARAM);
+    if (sessionCacheSizeParameter != null) {
+      try {
+        sessionCacheSize = Integer.parseInt(sessionCacheSizeParameter);
+      } catch (NumberFormatException e) {
+        // Ignore it and use the default.
+      }
+    }
+    config.setSessionStore(new KnoxSessionStore(cryptoService, password, clusterName, domainSuffix, sessionCacheSize));
     ConfigSingleton.setConfig(config);
   }
 
@@ -196,17 +208,21 @@ public class Pac4jDispatcherFilter implements Filter {
   public void doFilter( ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
 
     final HttpServletRequest request = (HttpServletRequest) servletRequest;
-    final HttpServletResponse response = (HttpServletResponse) servletResponse;
-    final J2EContext context = new J2EContext(request, response, ConfigSingleton.getConfig().getSessionStore());
+    // the session cookie is written once whatever the number of session changes
+    final KnoxSessionResponseWrapper response = new KnoxSessionResponseWrapper((HttpServletResponse) servletResponse);
 
-    // it's a callback from an identity provider
-    if (request.getParameter(PAC4J_CALLBACK_PARAMETER) != null) {
-      // apply CallbackFilter
-      callbackFilter.doFilter(servletRequest, servletResponse, filterChain);
-    } else {
-      // otherwise just apply security and requires authentication
-      // apply RequiresAuthenticationFilter
-      requiresAuthenticationFilter.doFilter(servletRequest, servletResponse, filterChain);
+    try {
+      // it's a callback from an identity provider
+      if (request.getParameter(PAC4J_CALLBACK_PARAMETER) != null) {
+        // apply CallbackFilter
+        callbackFilter.doFilter(request, response, filterChain);
+      } else {
+        // otherwise just apply security and requires authentication
+        // apply RequiresAuthenticationFilter
+        requiresAuthenticationFilter.doFilter(request, response, filterChain);
+      }
+    } finally {
+      response.writeSessionCookie();
     }
   }
 
@@ -20,6 +20,7 @@ package org.apache.hadoop.gateway.pac4j.filter;
 import org.apache.hadoop.gateway.audit.api.*;
 import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 import org.pac4j.core.config.ConfigSingleton;
 import org.pac4j.core.context.J2EContext;
@@ -84,6 +85,7 @@ public class Pac4jIdentityAdapter implements Filter {
   private void doAs(final ServletRequest request,
       final ServletResponse response, final FilterChain chain, Subject subject)
       throws IOException, ServletException {
+    GatewaySecurityContext.set(request, subject);
     try {
       Subject.doAs(
           subject,
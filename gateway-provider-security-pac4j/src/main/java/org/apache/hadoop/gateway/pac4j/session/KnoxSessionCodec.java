@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.pac4j.session;
+
+import org.apache.commons.codec.binary.Base64;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.util.JavaSerializationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes all the pac4j session attributes into a single cookie value.
+ * <p>The value is the URL safe base64 encoding of a version byte, a random nonce and the AES/GCM encryption
+ * of the deflated attributes.  Strings are written as UTF-8, any other value is Java serialized.
+ * The key is derived once from the cluster password so every gateway sharing the password can read the cookie.</p>
+ * <p>Decrypted sessions are cached by their authentication tag.  Only the strings and the serialized form
+ * of the other values are cached, each decode returns a new map with the other values deserialized again
+ * so requests presenting the same cookie never share a mutable value such as a user profile.</p>
+ *
+ * @since 0.10.0
+ */
+public class KnoxSessionCodec {
+
+  private final static Logger logger = LoggerFactory.getLogger(KnoxSessionCodec.class);
+
+  static final byte VERSION = 1;
+
+  private static final byte STRING_VALUE = 0;
+  private static final byte SERIALIZED_VALUE = 1;
+
+  private static final String KEY_SALT_PREFIX = "knox.pac4j.session.";
+  private static final int KEY_ITERATION_COUNT = 65536;
+  private static final int KEY_LENGTH = 128;
+  private static final int NONCE_LENGTH = 12;
+  private static final int TAG_LENGTH = 16;
+
+  private final SecretKey key;
+  private final SecureRandom random = new SecureRandom();
+  private final JavaSerializationHelper javaSerializationHelper = new JavaSerializationHelper();
+  private final int cacheSize;
+  private final Map<ByteBuffer, CachedSession> cache;
+
+  public KnoxSessionCodec(final char[] password, final String clusterName, final int cacheSize) {
+    try {
+      final byte[] salt = (KEY_SALT_PREFIX + clusterName).getBytes(StandardCharsets.UTF_8);
+      final SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+      final SecretKey secret = factory.generateSecret(new PBEKeySpec(password, salt, KEY_ITERATION_COUNT, KEY_LENGTH));
+      this.key = new SecretKeySpec(secret.getEncoded(), "AES");
+    } catch (final GeneralSecurityException e) {
+      throw new TechnicalException(e);
+    }
+    this.cacheSize = cacheSize;
+    this.cache = new ConcurrentHashMap<>();
+  }
+
+  public String encode(final Map<String, Object> session) {
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(bytes));
+      output.writeShort(session.size());
+      for (final Map.Entry<String, Object> entry : session.entrySet()) {
+        output.writeUTF(entry.getKey());
+        final Object value = entry.getValue();
+        final byte[] data;
+        if (value instanceof String) {
+          output.writeByte(STRING_VALUE);
+          data = ((String) value).getBytes(StandardCharsets.UTF_8);
+        } else {
+          output.writeByte(SERIALIZED_VALUE);
+          data = javaSerializationHelper.serializeToBytes((Serializable) value);
+        }
+        output.writeInt(data.length);
+        output.write(data);
+      }
+      output.close();
+
+      final byte[] nonce = new byte[NONCE_LENGTH];
+      random.nextBytes(nonce);
+      final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+      cipher.updateAAD(new byte[]{VERSION});
+      final byte[] encrypted = cipher.doFinal(bytes.toByteArray());
+
+      final byte[] value = new byte[1 + NONCE_LENGTH + encrypted.length];
+      value[0] = VERSION;
+      System.arraycopy(nonce, 0, value, 1, NONCE_LENGTH);
+      System.arraycopy(encrypted, 0, value, 1 + NONCE_LENGTH, encrypted.length);
+      return Base64.encodeBase64URLSafeString(value);
+    } catch (final IOException | GeneralSecurityException e) {
+      throw new TechnicalException(e);
+    }
+  }
+
+  /**
+   * @return The unmodifiable session attributes or null if the value was not produced with this key and version.
+   */
+  public Map<String, Object> decode(final String value) {
+    if (value == null || value.isEmpty()) {
+      return null;
+    }
+    final byte[] bytes = Base64.decodeBase64(value);
+    if (bytes.length < 1 + NONCE_LENGTH + TAG_LENGTH || bytes[0] != VERSION) {
+      return null;
+    }
+    final ByteBuffer tag = ByteBuffer.wrap(bytes, bytes.length - TAG_LENGTH, TAG_LENGTH).slice();
+    final CachedSession cached = cache.get(tag);
+    if (cached != null && Arrays.equals(cached.bytes, bytes)) {
+      return materialize(cached.values);
+    }
+    final Map<String, Object> values = decrypt(bytes);
+    if (values == null) {
+      return null;
+    }
+    if (cache.size() >= cacheSize) {
+      cache.clear();
+    }
+    cache.put(tag, new CachedSession(bytes, values));
+    return materialize(values);
+  }
+
+  /**
+   * @return The session attributes where the values that are not strings are deserialized from their bytes.
+   */
+  private Map<String, Object> materialize(final Map<String, Object> values) {
+    final Map<String, Object> session = new LinkedHashMap<>();
+    for (final Map.Entry<String, Object> entry : values.entrySet()) {
+      final Object value = entry.getValue();
+      if (value instanceof byte[]) {
+        session.put(entry.getKey(), javaSerializationHelper.unserializeFromBytes((byte[]) value));
+      } else {
+        session.put(entry.getKey(), value);
+      }
+    }
+    return Collections.unmodifiableMap(session);
+  }
+
+  /**
+   * @return The attributes with the strings decoded and the other values still serialized.
+   */
+  private Map<String, Object> decrypt(final byte[] bytes) {
+    final byte[] clear;
+    try {
+      final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, bytes, 1, NONCE_LENGTH));
+      cipher.updateAAD(bytes, 0, 1);
+      clear = cipher.doFinal(bytes, 1 + NONCE_LENGTH, bytes.length - 1 - NONCE_LENGTH);
+    } catch (final GeneralSecurityException e) {
+      logger.debug("Unable to decrypt the session cookie", e);
+      return null;
+    }
+    try {
+      final DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(clear)));
+      final int size = input.readUnsignedShort();
+      final Map<String, Object> session = new LinkedHashMap<>();
+      for (int i = 0; i < size; i++) {
+        final String name = input.readUTF();
+        final byte type = input.readByte();
+        final byte[] data = new byte[input.readInt()];
+        input.readFully(data);
+        if (type == STRING_VALUE) {
+          session.put(name, new String(data, StandardCharsets.UTF_8));
+        } else {
+          session.put(name, data);
+        }
+      }
+      return session;
+    } catch (final IOException e) {
+      logger.debug("Unable to read the session cookie", e);
+      return null;
+    }
+  }
+
+  private static class CachedSession {
+    private final byte[] bytes;
+    private final Map<String, Object> values;
+
+    private CachedSession(final byte[] bytes, final Map<String, Object> values) {
+      this.bytes = bytes;
+      this.values = values;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.pac4j.session;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Holds back the session cookie so that a response carries it only once even though the {@link KnoxSessionStore}
+ * writes it again each time a session attribute changes.  The last session cookie is added to the response
+ * before anything can commit it, or when {@link #writeSessionCookie()} is called once the request is handled.
+ *
+ * @since 0.10.0
+ */
+public class KnoxSessionResponseWrapper extends HttpServletResponseWrapper {
+
+    private Cookie sessionCookie;
+
+    public KnoxSessionResponseWrapper(final HttpServletResponse response) {
+        super(response);
+    }
+
+    @Override
+    public void addCookie(final Cookie cookie) {
+        if (KnoxSessionStore.PAC4J_SESSION_COOKIE.equals(cookie.getName())) {
+            sessionCookie = cookie;
+        } else {
+            super.addCookie(cookie);
+        }
+    }
+
+    /**
+     * Adds the last session cookie written, if any, to the wrapped response.
+     */
+    public void writeSessionCookie() {
+        if (sessionCookie != null) {
+            super.addCookie(sessionCookie);
+            sessionCookie = null;
+        }
+    }
+
+    @Override
+    public void sendRedirect(final String location) throws IOException {
+        writeSessionCookie();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void sendError(final int sc) throws IOException {
+        writeSessionCookie();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(final int sc, final String msg) throws IOException {
+        writeSessionCookie();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        writeSessionCookie();
+        return super.getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        writeSessionCookie();
+        return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        writeSessionCookie();
+        super.flushBuffer();
+    }
+}
@@ -31,10 +31,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Specific session store where data are saved into cookies (and not in memory).
- * Each data is encrypted and base64 encoded before being saved as a cookie (for security reasons).
+ * All the data are saved together into a single encrypted cookie (see {@link KnoxSessionCodec}).
+ * The cookie is written again on each change, {@link KnoxSessionResponseWrapper} keeps only the last one.
+ * A session which does not fit in a cookie is refused rather than left for the browser to drop.
+ * The cookies of the previous format, one encrypted cookie per data, are still read and are replaced
+ * by the single cookie the first time the session is saved.
  *
  * @since 0.8.0
  */
@@ -46,17 +55,30 @@ public class KnoxSessionStore implements SessionStore {
 
     public final static String PAC4J_SESSION_PREFIX = "pac4j.session.";
 
+    public final static String PAC4J_SESSION_COOKIE = "pac4j.session";
+
+    public final static int DEFAULT_SESSION_CACHE_SIZE = 1000;
+
+    /** Browsers drop cookies over about 4KB including the name and attributes. */
+    final static int MAX_COOKIE_VALUE_LENGTH = 4000;
+
+    private final static String SESSION_ATTRIBUTE = KnoxSessionStore.class.getName();
+
     private final JavaSerializationHelper javaSerializationHelper;
 
     private final CryptoService cryptoService;
 
+    private final KnoxSessionCodec codec;
+
     private final String clusterName;
 
     private final String domainSuffix;
 
-    public KnoxSessionStore(final CryptoService cryptoService, final String clusterName, final String domainSuffix) {
+    public KnoxSessionStore(final CryptoService cryptoService, final char[] password, final String clusterName,
+                            final String domainSuffix, final int sessionCacheSize) {
         javaSerializationHelper = new JavaSerializationHelper();
         this.cryptoService = cryptoService;
+        this.codec = new KnoxSessionCodec(password, clusterName, sessionCacheSize);
         this.clusterName = clusterName;
         this.domainSuffix = domainSuffix;
     }
@@ -81,29 +103,87 @@ public class KnoxSessionStore implements SessionStore {
         return null;
     }
 
-    public Object get(WebContext context, String key) {
-        final Cookie cookie = ContextHelper.getCookie(context, PAC4J_SESSION_PREFIX + key);
-        Object value = null;
-        if (cookie != null) {
-            value = decryptBase64(cookie.getValue());
+    /**
+     * Returns the session of the current request, decoding the session cookie the first time.
+     */
+    private Session getSession(final WebContext context) {
+        Session session = (Session) context.getRequestAttribute(SESSION_ATTRIBUTE);
+        if (session == null) {
+            Map<String, Object> values = null;
+            List<String> legacyCookies = null;
+            for (final Cookie cookie : context.getRequestCookies()) {
+                final String name = cookie.getName();
+                if (PAC4J_SESSION_COOKIE.equals(name)) {
+                    values = codec.decode(cookie.getValue());
+                } else if (name.startsWith(PAC4J_SESSION_PREFIX)) {
+                    if (legacyCookies == null) {
+                        legacyCookies = new ArrayList<>();
+                    }
+                    legacyCookies.add(name);
+                }
+            }
+            if (values == null) {
+                values = Collections.emptyMap();
+            }
+            if (legacyCookies != null) {
+                values = new LinkedHashMap<>(values);
+                for (final String name : legacyCookies) {
+                    final String key = name.substring(PAC4J_SESSION_PREFIX.length());
+                    if (!values.containsKey(key)) {
+                        final Object value = decryptBase64(ContextHelper.getCookie(context, name).getValue());
+                        if (value != null) {
+                            values.put(key, value);
+                        }
+                    }
+                }
+            }
+            session = new Session(values, legacyCookies);
+            context.setRequestAttribute(SESSION_ATTRIBUTE, session);
         }
+        return session;
+    }
+
+    public Object get(WebContext context, String key) {
+        final Object value = getSession(context).values.get(key);
         logger.debug("Get from session: {} = {}", key, value);
         return value;
     }
 
-    private String encryptBase64(final Object o) {
-        if (o == null || o.equals("")) {
-            return null;
+    public void set(WebContext context, String key, Object value) {
+        logger.debug("Save in session: {} = {}", key, value);
+        final Session session = getSession(context);
+        final Object previous = session.values.get(key);
+        final boolean remove = value == null || value.equals("");
+        Map<String, Object> values = session.values;
+        if (remove ? previous == null : value == previous) {
+            if (session.legacyCookies == null) {
+                return;
+            }
         } else {
-            final byte[] bytes = javaSerializationHelper.serializeToBytes((Serializable) o);
-            EncryptionResult result = cryptoService.encryptForCluster(this.clusterName, PAC4J_PASSWORD, bytes);
-            return Base64.encodeBase64String(result.toByteAray());
+            values = new LinkedHashMap<>(values);
+            if (remove) {
+                values.remove(key);
+            } else {
+                values.put(key, value);
+            }
+        }
+        final String encoded = values.isEmpty() ? null : codec.encode(values);
+        if (encoded != null && encoded.length() > MAX_COOKIE_VALUE_LENGTH) {
+            logger.error("Unable to save {} in session, the session cookie would be {} bytes long", key, encoded.length());
+            throw new TechnicalException("The session does not fit in a cookie: " + encoded.length() + " bytes");
+        }
+        session.values = values;
+        context.addResponseCookie(newCookie(context, PAC4J_SESSION_COOKIE, encoded));
+        if (session.legacyCookies != null) {
+            for (final String name : session.legacyCookies) {
+                context.addResponseCookie(newCookie(context, name, null));
+            }
+            session.legacyCookies = null;
         }
     }
 
-    public void set(WebContext context, String key, Object value) {
-        logger.debug("Save in session: {} = {}", key, value);
-        final Cookie cookie = new Cookie(PAC4J_SESSION_PREFIX + key, encryptBase64(value));
+    private Cookie newCookie(final WebContext context, final String name, final String value) {
+        final Cookie cookie = new Cookie(name, value);
         try {
             String domain = Urls.getDomainName(context.getFullRequestURL(), this.domainSuffix);
             if (domain == null) {
@@ -115,6 +195,19 @@ public class KnoxSessionStore implements SessionStore {
         }
         cookie.setHttpOnly(true);
         cookie.setSecure(ContextHelper.isHttpsOrSecure(context));
-        context.addResponseCookie(cookie);
+        if (value == null) {
+            cookie.setMaxAge(0);
+        }
+        return cookie;
+    }
+
+    private static class Session {
+        private Map<String, Object> values;
+        private List<String> legacyCookies;
+
+        private Session(final Map<String, Object> values, final List<String> legacyCookies) {
+            this.values = values;
+            this.legacyCookies = legacyCookies;
+        }
     }
 }
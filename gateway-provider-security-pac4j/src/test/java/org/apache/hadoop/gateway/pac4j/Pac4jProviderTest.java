@@ -22,6 +22,7 @@ import org.apache.hadoop.gateway.audit.api.AuditService;
 import org.apache.hadoop.gateway.audit.api.Auditor;
 import org.apache.hadoop.gateway.pac4j.filter.Pac4jDispatcherFilter;
 import org.apache.hadoop.gateway.pac4j.filter.Pac4jIdentityAdapter;
+import org.apache.hadoop.gateway.pac4j.session.KnoxSessionCodec;
 import org.apache.hadoop.gateway.pac4j.session.KnoxSessionStore;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.security.AliasService;
@@ -34,7 +35,6 @@ import org.pac4j.http.client.indirect.IndirectBasicAuthClient;
 import javax.servlet.*;
 import javax.servlet.http.*;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -98,11 +98,14 @@ public class Pac4jProviderTest {
         // it should be a redirection to the idp topology
         assertEquals(302, response.getStatus());
         assertEquals(PAC4J_CALLBACK_URL + "?" + Pac4jDispatcherFilter.PAC4J_CALLBACK_PARAMETER + "=true&" + Clients.DEFAULT_CLIENT_NAME_PARAMETER + "=" + CLIENT_CLASS, response.getHeaders().get("Location"));
-        // we should have one cookie for the saved requested url
+        // we should have one session cookie for the saved requested url
         List<Cookie> cookies = response.getCookies();
         assertEquals(1, cookies.size());
         final Cookie requestedUrlCookie = cookies.get(0);
-        assertEquals(KnoxSessionStore.PAC4J_SESSION_PREFIX + Pac4jConstants.REQUESTED_URL, requestedUrlCookie.getName());
+        assertEquals(KnoxSessionStore.PAC4J_SESSION_COOKIE, requestedUrlCookie.getName());
+        final KnoxSessionCodec codec = new KnoxSessionCodec(PAC4J_PASSWORD.toCharArray(), CLUSTER_NAME, 10);
+        Map<String, Object> session = codec.decode(requestedUrlCookie.getValue());
+        assertEquals(KNOXSSO_SERVICE_URL + "?" + ORIGINAL_URL + "=" + HADOOP_SERVICE_URL, session.get(Pac4jConstants.REQUESTED_URL));
 
         // step 2: send credentials to the callback url (callback from the identity provider)
         request = new MockHttpServletRequest();
@@ -118,20 +121,19 @@ public class Pac4jProviderTest {
         // it should be a redirection to the original url
         assertEquals(302, response.getStatus());
         assertEquals(KNOXSSO_SERVICE_URL + "?" + ORIGINAL_URL + "=" + HADOOP_SERVICE_URL, response.getHeaders().get("Location"));
-        // we should have 3 cookies among with the user profile
+        // the session cookie is written once with the user profile
         cookies = response.getCookies();
-        Map<String, String> mapCookies = new HashMap<>();
-        assertEquals(3, cookies.size());
-        for (final Cookie cookie : cookies) {
-            mapCookies.put(cookie.getName(), cookie.getValue());
-        }
-        assertNull(mapCookies.get(KnoxSessionStore.PAC4J_SESSION_PREFIX + CLIENT_CLASS + "$attemptedAuthentication"));
-        assertNotNull(mapCookies.get(KnoxSessionStore.PAC4J_SESSION_PREFIX + Pac4jConstants.USER_PROFILE));
-        assertNull(mapCookies.get(KnoxSessionStore.PAC4J_SESSION_PREFIX + Pac4jConstants.REQUESTED_URL));
+        assertEquals(1, cookies.size());
+        final Cookie userProfileSessionCookie = cookies.get(0);
+        assertEquals(KnoxSessionStore.PAC4J_SESSION_COOKIE, userProfileSessionCookie.getName());
+        session = codec.decode(userProfileSessionCookie.getValue());
+        assertNull(session.get(CLIENT_CLASS + "$attemptedAuthentication"));
+        assertNotNull(session.get(Pac4jConstants.USER_PROFILE));
+        assertNull(session.get(Pac4jConstants.REQUESTED_URL));
 
         // step 3: turn pac4j identity into KnoxSSO identity
         request = new MockHttpServletRequest();
-        request.setCookies(cookies.toArray(new Cookie[cookies.size()]));
+        request.setCookies(new Cookie[]{userProfileSessionCookie});
         request.setRequestURL(KNOXSSO_SERVICE_URL + "?" + ORIGINAL_URL + "=" + HADOOP_SERVICE_URL);
         request.setServerName(LOCALHOST);
         response = new MockHttpServletResponse();
@@ -143,8 +145,9 @@ public class Pac4jProviderTest {
         assertEquals(1, cookies.size());
         final Cookie userProfileCookie = cookies.get(0);
         // the user profile has been cleaned
-        assertEquals(KnoxSessionStore.PAC4J_SESSION_PREFIX + Pac4jConstants.USER_PROFILE, userProfileCookie.getName());
+        assertEquals(KnoxSessionStore.PAC4J_SESSION_COOKIE, userProfileCookie.getName());
         assertNull(userProfileCookie.getValue());
+        assertEquals(0, userProfileCookie.getMaxAge());
         assertEquals(USERNAME, adapter.getTestIdentifier());
     }
 }
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.pac4j.session;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.hadoop.gateway.pac4j.MockHttpServletRequest;
+import org.apache.hadoop.gateway.pac4j.MockHttpServletResponse;
+import org.apache.hadoop.gateway.services.security.AliasService;
+import org.apache.hadoop.gateway.services.security.EncryptionResult;
+import org.apache.hadoop.gateway.services.security.impl.DefaultCryptoService;
+import org.junit.Before;
+import org.junit.Test;
+import org.pac4j.core.context.J2EContext;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.util.JavaSerializationHelper;
+
+import javax.servlet.http.Cookie;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class KnoxSessionStoreTest {
+
+    private final static String CLUSTER_NAME = "knox";
+    private final static String PAC4J_PASSWORD = "pwdfortest";
+    private final static String URL = "https://127.0.0.1:8443/gateway/idp/api/v1/websso";
+
+    private DefaultCryptoService cryptoService;
+    private KnoxSessionStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        final AliasService aliasService = mock(AliasService.class);
+        when(aliasService.getPasswordFromAliasForCluster(CLUSTER_NAME, KnoxSessionStore.PAC4J_PASSWORD)).thenReturn(PAC4J_PASSWORD.toCharArray());
+        cryptoService = new DefaultCryptoService();
+        cryptoService.setAliasService(aliasService);
+        store = new KnoxSessionStore(cryptoService, PAC4J_PASSWORD.toCharArray(), CLUSTER_NAME, null, 10);
+    }
+
+    @Test
+    public void testAllValuesSavedInOneCookie() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        J2EContext context = newContext(new Cookie[0], response);
+        final HashMap<String, String> profile = new HashMap<>();
+        profile.put("id", "jleleu");
+        store.set(context, "requestedUrl", URL);
+        store.set(context, "profile", profile);
+        assertEquals(URL, store.get(context, "requestedUrl"));
+
+        final Cookie cookie = lastSessionCookie(response);
+
+        response = new MockHttpServletResponse();
+        context = newContext(new Cookie[]{cookie}, response);
+        assertEquals(URL, store.get(context, "requestedUrl"));
+        assertEquals(profile, store.get(context, "profile"));
+        assertNull(store.get(context, "missing"));
+        // removing a missing value does not rewrite the cookie
+        store.set(context, "missing", null);
+        assertTrue(response.getCookies().isEmpty());
+
+        store.set(context, "requestedUrl", null);
+        store.set(context, "profile", "");
+        final Cookie cleared = lastSessionCookie(response);
+        assertNull(cleared.getValue());
+        assertEquals(0, cleared.getMaxAge());
+    }
+
+    @Test
+    public void testDecodedSessionIsCached() {
+        final KnoxSessionCodec codec = new KnoxSessionCodec(PAC4J_PASSWORD.toCharArray(), CLUSTER_NAME, 10);
+        final Map<String, Object> session = new LinkedHashMap<>();
+        final HashMap<String, String> profile = new HashMap<>();
+        profile.put("id", "jleleu");
+        session.put("requestedUrl", URL);
+        session.put("profile", profile);
+        final String value = codec.encode(session);
+        final Map<String, Object> decoded = codec.decode(value);
+        assertEquals(session, decoded);
+
+        // a cached session does not share its mutable values between requests
+        @SuppressWarnings("unchecked")
+        final Map<String, String> decodedProfile = (Map<String, String>) decoded.get("profile");
+        decodedProfile.put("id", "changed");
+        final Map<String, Object> again = codec.decode(value);
+        assertNotSame(decoded, again);
+        assertNotSame(decodedProfile, again.get("profile"));
+        assertEquals(profile, again.get("profile"));
+        assertSame(decoded.get("requestedUrl"), again.get("requestedUrl"));
+
+        // another gateway sharing the password reads the cookie
+        assertEquals(session, new KnoxSessionCodec(PAC4J_PASSWORD.toCharArray(), CLUSTER_NAME, 10).decode(value));
+        assertNull(new KnoxSessionCodec("other".toCharArray(), CLUSTER_NAME, 10).decode(value));
+
+        final byte[] tampered = Base64.decodeBase64(value);
+        tampered[tampered.length / 2] ^= 1;
+        assertNull(codec.decode(Base64.encodeBase64URLSafeString(tampered)));
+    }
+
+    @Test
+    public void testSessionCookieWrittenOncePerResponse() throws Exception {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final KnoxSessionResponseWrapper wrapper = new KnoxSessionResponseWrapper(response);
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURL(URL);
+        request.setServerName("127.0.0.1");
+        request.setCookies(new Cookie[]{legacyCookie("attemptedAuthentication", "true")});
+        final J2EContext context = new J2EContext(request, wrapper, store);
+        store.set(context, "requestedUrl", URL);
+        store.set(context, "attemptedAuthentication", null);
+        store.set(context, "clientName", "client");
+
+        // only the expired cookie of the previous format went through so far
+        assertEquals(1, response.getCookies().size());
+        assertNotEquals(KnoxSessionStore.PAC4J_SESSION_COOKIE, response.getCookies().get(0).getName());
+
+        wrapper.sendRedirect(URL);
+        wrapper.writeSessionCookie();
+        assertEquals(2, response.getCookies().size());
+        final Map<String, Object> session = new KnoxSessionCodec(PAC4J_PASSWORD.toCharArray(), CLUSTER_NAME, 10)
+                .decode(lastSessionCookie(response).getValue());
+        assertEquals(2, session.size());
+        assertEquals(URL, session.get("requestedUrl"));
+        assertEquals("client", session.get("clientName"));
+    }
+
+    @Test
+    public void testSessionTooLargeForCookieIsRefused() {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final J2EContext context = newContext(new Cookie[0], response);
+        store.set(context, "requestedUrl", URL);
+        final byte[] random = new byte[KnoxSessionStore.MAX_COOKIE_VALUE_LENGTH];
+        new SecureRandom().nextBytes(random);
+        try {
+            store.set(context, "profile", Base64.encodeBase64String(random));
+            fail("Expected TechnicalException");
+        } catch (final TechnicalException e) {
+            // Expected.
+        }
+        assertNull(store.get(context, "profile"));
+        assertEquals(URL, store.get(context, "requestedUrl"));
+        assertEquals(1, response.getCookies().size());
+    }
+
+    @Test
+    public void testPreviousFormatCookiesAreMigrated() {
+        final Cookie requestedUrl = legacyCookie("requestedUrl", URL);
+        final Cookie attempted = legacyCookie("attemptedAuthentication", "true");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        J2EContext context = newContext(new Cookie[]{requestedUrl, attempted}, response);
+        assertEquals(URL, store.get(context, "requestedUrl"));
+        assertEquals("true", store.get(context, "attemptedAuthentication"));
+
+        store.set(context, "attemptedAuthentication", null);
+        final List<String> expired = new ArrayList<>();
+        for (final Cookie cookie : response.getCookies()) {
+            if (!KnoxSessionStore.PAC4J_SESSION_COOKIE.equals(cookie.getName())) {
+                assertNull(cookie.getValue());
+                assertEquals(0, cookie.getMaxAge());
+                expired.add(cookie.getName());
+            }
+        }
+        assertEquals(2, expired.size());
+
+        // the new session cookie holds the remaining value
+        final Cookie cookie = lastSessionCookie(response);
+        response = new MockHttpServletResponse();
+        context = newContext(new Cookie[]{cookie}, response);
+        assertEquals(URL, store.get(context, "requestedUrl"));
+        assertNull(store.get(context, "attemptedAuthentication"));
+    }
+
+    private J2EContext newContext(final Cookie[] cookies, final MockHttpServletResponse response) {
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURL(URL);
+        request.setServerName("127.0.0.1");
+        request.setCookies(cookies);
+        return new J2EContext(request, response, store);
+    }
+
+    private Cookie lastSessionCookie(final MockHttpServletResponse response) {
+        Cookie last = null;
+        for (final Cookie cookie : response.getCookies()) {
+            if (KnoxSessionStore.PAC4J_SESSION_COOKIE.equals(cookie.getName())) {
+                last = cookie;
+            }
+        }
+        assertNotNull(last);
+        return last;
+    }
+
+    private Cookie legacyCookie(final String key, final String value) {
+        final byte[] bytes = new JavaSerializationHelper().serializeToBytes(value);
+        final EncryptionResult result = cryptoService.encryptForCluster(CLUSTER_NAME, KnoxSessionStore.PAC4J_PASSWORD, bytes);
+        return new Cookie(KnoxSessionStore.PAC4J_SESSION_PREFIX + key, Base64.encodeBase64String(result.toByteAray()));
+    }
+}
@@ -33,6 +33,7 @@ import org.apache.hadoop.gateway.audit.api.AuditService;
 import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
 import org.apache.hadoop.gateway.audit.api.Auditor;
 import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 
 public class PicketlinkIdentityAdapter implements Filter {
@@ -58,6 +59,7 @@ public class PicketlinkIdentityAdapter implements Filter {
     PrimaryPrincipal pp = new PrimaryPrincipal(username);
     Subject subject = new Subject();
     subject.getPrincipals().add(pp);
+    GatewaySecurityContext.set(request, subject);
     
     doAs(request, response, chain, subject);
   }
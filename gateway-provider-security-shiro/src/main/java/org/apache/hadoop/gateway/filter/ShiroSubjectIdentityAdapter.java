@@ -38,6 +38,7 @@ import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
 import org.apache.hadoop.gateway.audit.api.Auditor;
 import org.apache.hadoop.gateway.audit.api.ResourceType;
 import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
+import org.apache.hadoop.gateway.security.GatewaySecurityContext;
 import org.apache.hadoop.gateway.security.GroupPrincipal;
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 import org.apache.shiro.SecurityUtils;
@@ -126,6 +127,7 @@ public class ShiroSubjectIdentityAdapter implements Filter {
 //      To modify the public credential Set, the caller must have AuthPermission("modifyPublicCredentials"). 
 //      To modify the private credential Set, the caller must have AuthPermission("modifyPrivateCredentials").
       javax.security.auth.Subject subject = new javax.security.auth.Subject(true, principals, emptySet, emptySet);
+      GatewaySecurityContext.set( request, subject );
       javax.security.auth.Subject.doAs( subject, action );
       
       return null;
@@ -77,6 +77,9 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.INFO, text = "Monitoring topologies in directory: {0}" )
   void monitoringTopologyChangesInDirectory( String topologiesDir );
 
+  @Message( level = MessageLevel.WARN, text = "Unable to watch topologies directory {0} for changes, polling it instead: {1}" )
+  void failedToWatchTopologiesDirectory( String topologiesDir, @StackTrace(level=MessageLevel.DEBUG) Exception e );
+
   @Message( level = MessageLevel.INFO, text = "Deploying topology {0} to {1}" )
   void deployingTopology( String clusterName, String warDirName );
 
@@ -119,6 +122,9 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.INFO, text = "Deleting topology {0}" )
   void deletingTopology( String topologyName );
 
+  @Message( level = MessageLevel.INFO, text = "Topology {0} is unchanged, keeping the current deployment" )
+  void topologyUnchanged( String topologyName );
+
   @Message( level = MessageLevel.INFO, text = "Deleting deployed topology {0}" )
   void deletingDeployment( String warDirName );
 
@@ -173,6 +179,9 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.INFO, text = "Keystore for the gateway instance found - no need to create one." )
   void keyStoreForGatewayFoundNotCreating();
 
+  @Message( level = MessageLevel.INFO, text = "Registered security provider {0} for the gateway TLS engine." )
+  void registeredSSLProvider( String providerName );
+
   @Message( level = MessageLevel.INFO, text = "Creating credential store for the cluster: {0}" )
   void creatingCredentialStoreForCluster(String clusterName);
 
@@ -295,6 +304,9 @@ public interface GatewayMessages {
 
   @Message( level = MessageLevel.ERROR, text = "Failed to get map from Json string {0}: {1}" )
   void failedToGetMapFromJsonString( String json, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to persist the service registry to {0}: {1}" )
+  void failedToPersistServiceRegistry( String fileName, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
   
   @Message( level = MessageLevel.DEBUG, text = "Successful Knox->Hadoop SPNegotiation authentication for URL: {0}" )
   void successfulSPNegoAuthn(String uri);
@@ -412,4 +424,16 @@ public interface GatewayMessages {
 
   @Message( level = MessageLevel.DEBUG, text = "Default topology forward from {0} to {1}" )
   void defaultTopologyForward( String oldTarget, String newTarget );
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to load the token verification key {0}: {1}" )
+  void failedToLoadTokenVerificationKey( String alias, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to load the token signing key {0}: {1}" )
+  void failedToLoadTokenSigningKey( String alias, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to load the token signing secret: {0}" )
+  void failedToLoadTokenSigningSecret( @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.ERROR, text = "Provisioned signing key secret must be at least 256 bits, HS256 tokens are disabled." )
+  void tokenSigningSecretTooShort();
 }
@@ -39,6 +39,16 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -115,6 +125,11 @@ public class GatewayServer {
   private TopologyService monitor;
   private TopologyListener listener;
   private Map<String, WebAppContext> deployments;
+  private ScheduledExecutorService retiredContexts;
+  private ThreadPoolExecutor deployer;
+
+  // How long a replaced context keeps running so that requests already dispatched to it can complete.
+  private static final long RETIRED_CONTEXT_STOP_DELAY = 30 * 1000L;
 
   public static void main( String[] args ) {
     try {
@@ -332,6 +347,11 @@ public class GatewayServer {
     }
     connector.setHost( address.getHostName() );
     connector.setPort( address.getPort() );
+    // Keep browser connections open between page loads so their TLS handshakes are not repeated.
+    long idleTimeout = config.getHttpServerIdleTimeout();
+    if( idleTimeout > 0 ) {
+      connector.setIdleTimeout( idleTimeout );
+    }
 
     return connector;
   }
@@ -362,6 +382,27 @@ public class GatewayServer {
     contexts = new ContextHandlerCollection();
      // A map to keep track of current deployments by cluster name.
     deployments = new ConcurrentHashMap<String, WebAppContext>();
+    retiredContexts = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, "topology-context-stopper" );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    // Builds the deployments of a batch of topology changes in parallel, the threads exit once idle.
+    int deployThreads = Runtime.getRuntime().availableProcessors();
+    deployer = new ThreadPoolExecutor( deployThreads, deployThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, "topology-deployer-" + count.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    deployer.allowCoreThreadTimeOut( true );
 
     // Start Jetty.
     jetty = new Server( new QueuedThreadPool( config.getThreadPoolMax() ) );
@@ -400,6 +441,11 @@ public class GatewayServer {
     log.stoppingGateway();
     services.stop();
     monitor.stopMonitor();
+    deployer.shutdownNow();
+    // Replaced contexts are no longer part of the handler tree so stop them now rather than waiting.
+    for( Runnable stopContext : retiredContexts.shutdownNow() ) {
+      stopContext.run();
+    }
     jetty.stop();
     jetty.join();
     log.stoppedGateway();
@@ -459,19 +505,20 @@ public class GatewayServer {
   }
 
   private void mergeWebXmlOverrides( File webInfDir ) throws IOException, SAXException, ParserConfigurationException, TransformerException {
-    File webXmlFile = new File( webInfDir, "web.xml" );
-    Document webXmlDoc;
-    if( webXmlFile.exists() ) {
-      // Backup original web.xml file.
-      File originalWebXmlFile = new File( webInfDir, "original-web.xml" );
-      FileUtils.copyFile( webXmlFile, originalWebXmlFile );
-      webXmlDoc = XmlUtils.readXml( webXmlFile );
-    } else {
-      webXmlDoc = XmlUtils.createDocument();
-      webXmlDoc.appendChild( webXmlDoc.createElement( "web-app" ) );
-    }
+    // Most archives have no overrides so avoid copying and parsing web.xml unless there is something to merge.
     File overrideWebXmlFile = new File( webInfDir, "override-web.xml" );
     if( overrideWebXmlFile.exists() ) {
+      File webXmlFile = new File( webInfDir, "web.xml" );
+      Document webXmlDoc;
+      if( webXmlFile.exists() ) {
+        // Backup original web.xml file.
+        File originalWebXmlFile = new File( webInfDir, "original-web.xml" );
+        FileUtils.copyFile( webXmlFile, originalWebXmlFile );
+        webXmlDoc = XmlUtils.readXml( webXmlFile );
+      } else {
+        webXmlDoc = XmlUtils.createDocument();
+        webXmlDoc.appendChild( webXmlDoc.createElement( "web-app" ) );
+      }
       Document overrideWebXmlDoc = XmlUtils.readXml( overrideWebXmlFile );
       Element originalRoot = webXmlDoc.getDocumentElement();
       Element overrideRoot = overrideWebXmlDoc.getDocumentElement();
@@ -487,7 +534,8 @@ public class GatewayServer {
     }
   }
 
-  private synchronized void internalDeployApplications( Topology topology, File topoDir ) throws IOException, ZipException, ParserConfigurationException, TransformerException, SAXException {
+  // Only touches the topology's own deployment directory so it does not need the server lock.
+  private void internalDeployApplications( Topology topology, File topoDir ) throws IOException, ZipException, ParserConfigurationException, TransformerException, SAXException {
     if( topology != null ) {
       Collection<Application> applications = topology.getApplications();
       if( applications != null ) {
@@ -505,7 +553,7 @@ public class GatewayServer {
     }
   }
 
-  private synchronized void internalDeployApplication( Topology topology, File topoDir, Application application, String url ) throws IOException, ZipException, TransformerException, SAXException, ParserConfigurationException {
+  private void internalDeployApplication( Topology topology, File topoDir, Application application, String url ) throws IOException, ZipException, TransformerException, SAXException, ParserConfigurationException {
     File appsDir = new File( config.getGatewayApplicationsDir() );
     File appDir = new File( appsDir, application.getName() );
     File[] implFiles = appDir.listFiles( new RegexFilenameFilter( "app|app\\..*" ) );
@@ -535,27 +583,74 @@ public class GatewayServer {
     try {
       WebAppContext newContext = createWebAppContext( topology, warDir, Urls.decode( warDir.getName() ) );
       WebAppContext oldContext = deployments.get( newContext.getContextPath() );
-      deployments.put( newContext.getContextPath(), newContext );
-      if( oldContext != null ) {
-        contexts.removeHandler( oldContext );
-      }
+      // Start the new context before removing the old one so that the path is served throughout.
       contexts.addHandler( newContext );
       if( contexts.isRunning() && !newContext.isRunning() ) {
           newContext.start();
       }
+      deployments.put( newContext.getContextPath(), newContext );
+      if( oldContext != null && oldContext != newContext ) {
+        contexts.removeHandler( oldContext );
+        retireContext( topology, oldContext );
+      }
     } catch( Exception e ) {
       auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
       log.failedToDeployTopology( topology.getName(), e );
     }
   }
 
+  // Stops a context that no longer receives requests once the requests it is already processing are likely done.
+  private void retireContext( final Topology topology, final WebAppContext context ) {
+    Runnable stop = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          context.stop();
+        } catch( Exception e ) {
+          auditor.audit( Action.UNDEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
+          log.failedToUndeployTopology( topology.getName(), e );
+        }
+      }
+    };
+    try {
+      retiredContexts.schedule( stop, RETIRED_CONTEXT_STOP_DELAY, TimeUnit.MILLISECONDS );
+    } catch( RejectedExecutionException e ) {
+      stop.run();
+    }
+  }
+
+  private List<WebAppContext> findTopologyContexts( Topology topology ) {
+    String topoPath = "/" + Urls.trimLeadingAndTrailingSlashJoin( config.getGatewayPath(), topology.getName() );
+    String topoPathSlash = topoPath + "/";
+    List<WebAppContext> found = new ArrayList<WebAppContext>();
+    if( deployments != null ) {
+      for( WebAppContext app : deployments.values() ) {
+        String appPath = app.getContextPath();
+        if( appPath.equals( topoPath ) || appPath.startsWith( topoPathSlash ) ) {
+          found.add( app );
+        }
+      }
+    }
+    return found;
+  }
+
+  // Retires the contexts of a topology that were not replaced when it was activated again, e.g. removed applications.
+  private synchronized void internalRetireTopologyContexts( Topology topology, List<WebAppContext> previous ) {
+    for( WebAppContext context : previous ) {
+      String contextPath = context.getContextPath();
+      if( deployments.get( contextPath ) == context ) {
+        deployments.remove( contextPath );
+        contexts.removeHandler( context );
+        retireContext( topology, context );
+      }
+    }
+  }
+
   private synchronized void internalDeactivateTopology( Topology topology ) {
 
     log.deactivatingTopology( topology.getName() );
 
     String topoName = topology.getName();
-    String topoPath = "/" + Urls.trimLeadingAndTrailingSlashJoin( config.getGatewayPath(), topoName );
-    String topoPathSlash = topoPath + "/";
 
     ServiceRegistry sr = getGatewayServices().getService(GatewayServices.SERVICE_REGISTRY_SERVICE);
     if (sr != null) {
@@ -563,15 +658,7 @@ public class GatewayServer {
     }
 
     // Find all the deployed contexts we need to deactivate.
-    List<WebAppContext> deactivate = new ArrayList<WebAppContext>();
-    if( deployments != null ) {
-      for( WebAppContext app : deployments.values() ) {
-        String appPath = app.getContextPath();
-        if( appPath.equals( topoPath ) || appPath.startsWith( topoPathSlash ) ) {
-          deactivate.add( app );
-        }
-      }
-    }
+    List<WebAppContext> deactivate = findTopologyContexts( topology );
     // Deactivate the required deployed contexts.
     for( WebAppContext context : deactivate ) {
       String contextPath = context.getContextPath();
@@ -589,20 +676,25 @@ public class GatewayServer {
   }
 
   // Using an inner class to hide the handleTopologyEvent method from consumers of GatewayServer.
+  // Deployment archives are built in parallel since each only writes to its own directory.
+  // Everything that changes the Jetty contexts or the service registry happens on the calling thread,
+  // while holding the server lock, in the order of the events.
   private class InternalTopologyListener implements TopologyListener {
 
     @Override
     public void handleTopologyEvent( List<TopologyEvent> events ) {
       synchronized ( GatewayServer.this ) {
+        File deployDir = calculateAbsoluteDeploymentsDir();
+        List<TopologyEvent> deploy = new ArrayList<TopologyEvent>();
         for( TopologyEvent event : events ) {
           Topology topology = event.getTopology();
-          File deployDir = calculateAbsoluteDeploymentsDir();
           if( event.getType().equals( TopologyEvent.Type.DELETED ) ) {
             handleDeleteDeployment(topology, deployDir);
           } else {
-            handleCreateDeployment(topology, deployDir);
+            deploy.add( event );
           }
         }
+        handleCreateDeployments( deploy, deployDir );
       }
     }
 
@@ -620,42 +712,95 @@ public class GatewayServer {
       }
     }
 
-    private void handleCreateDeployment(Topology topology, File deployDir) {
-      try {
-        File topoDir = calculateDeploymentDir( topology );
-        if( !topoDir.exists() ) {
-          auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
-
-//          KNOX-564 - Topology should fail to deploy with no providers configured.
+    private void handleCreateDeployments( List<TopologyEvent> events, File deployDir ) {
+      List<PendingDeployment> pending = new ArrayList<PendingDeployment>( events.size() );
+      List<PendingDeployment> builds = new ArrayList<PendingDeployment>();
+      for( TopologyEvent event : events ) {
+        Topology topology = event.getTopology();
+        try {
+          PendingDeployment deployment = new PendingDeployment( topology, calculateDeploymentDir( topology ), deployDir );
+          if( deployment.create ) {
+            auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
+
+//            KNOX-564 - Topology should fail to deploy with no providers configured.
 //TODO:APPS:This should only fail if there are services in the topology.
-          if(topology.getProviders().isEmpty()) {
-            throw new DeploymentException("No providers found inside topology.");
-          }
-
-          log.deployingTopology( topology.getName(), topoDir.getAbsolutePath() );
-          internalDeactivateTopology( topology ); // KNOX-152
+            if(topology.getProviders().isEmpty()) {
+              throw new DeploymentException("No providers found inside topology.");
+            }
 
-          EnterpriseArchive ear = DeploymentFactory.createDeployment( config, topology );
-          if( !deployDir.exists() ) {
-            deployDir.mkdirs();
-            if( !deployDir.exists() ) {
-              throw new DeploymentException( "Failed to create topology deployment temporary directory: " + deployDir.getAbsolutePath() );
+            log.deployingTopology( topology.getName(), deployment.topoDir.getAbsolutePath() );
+            // An updated topology keeps serving from its current contexts until the new ones are activated.
+            if( !event.getType().equals( TopologyEvent.Type.UPDATED ) ) {
+              internalDeactivateTopology( topology ); // KNOX-152
             }
+            builds.add( deployment );
+          }
+          pending.add( deployment );
+        } catch( Throwable e ) {
+          auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
+          log.failedToDeployTopology( topology.getName(), e );
+        }
+      }
+      buildDeployments( builds );
+      for( PendingDeployment deployment : pending ) {
+        activateDeployment( deployment, deployDir );
+      }
+    }
+
+    private void buildDeployments( List<PendingDeployment> builds ) {
+      if( builds.size() == 1 ) {
+        builds.get( 0 ).run();
+      } else if( builds.size() > 1 ) {
+        List<Future<?>> futures = new ArrayList<Future<?>>( builds.size() );
+        for( PendingDeployment deployment : builds ) {
+          try {
+            futures.add( deployer.submit( deployment ) );
+          } catch( RejectedExecutionException e ) {
+            // Stopping so build it on this thread.
+            deployment.run();
+            futures.add( null );
           }
-          File tmp = ear.as( ExplodedExporter.class ).exportExploded( deployDir, topoDir.getName() + ".tmp" );
-          if( !tmp.renameTo( topoDir ) ) {
-            FileUtils.deleteQuietly( tmp );
-            throw new DeploymentException( "Failed to create topology deployment directory: " + topoDir.getAbsolutePath() );
+        }
+        for( int i = 0, n = futures.size(); i < n; i++ ) {
+          Future<?> future = futures.get( i );
+          if( future == null ) {
+            continue;
+          }
+          try {
+            future.get();
+          } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            for( int j = i; j < n; j++ ) {
+              if( futures.get( j ) != null ) {
+                futures.get( j ).cancel( true );
+                builds.get( j ).failure = e;
+              }
+            }
+            break;
+          } catch( ExecutionException e ) {
+            builds.get( i ).failure = e.getCause();
           }
-          internalDeployApplications( topology, topoDir );
-          internalActivateTopology( topology, topoDir );
+        }
+      }
+    }
+
+    private void activateDeployment( PendingDeployment deployment, File deployDir ) {
+      Topology topology = deployment.topology;
+      try {
+        if( deployment.failure != null ) {
+          throw deployment.failure;
+        }
+        List<WebAppContext> previous = findTopologyContexts( topology );
+        if( deployment.create ) {
+          internalActivateTopology( topology, deployment.topoDir );
           log.deployedTopology( topology.getName());
         } else {
           auditor.audit( Action.REDEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
-          log.redeployingTopology( topology.getName(), topoDir.getAbsolutePath() );
-          internalActivateTopology( topology, topoDir );
+          log.redeployingTopology( topology.getName(), deployment.topoDir.getAbsolutePath() );
+          internalActivateTopology( topology, deployment.topoDir );
           log.redeployedTopology( topology.getName() );
         }
+        internalRetireTopologyContexts( topology, previous );
         cleanupTopologyDeployments( deployDir, topology );
       } catch( Throwable e ) {
         auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
@@ -665,6 +810,45 @@ public class GatewayServer {
 
   }
 
+  // Builds and explodes the archives for a topology that has no deployment directory yet.
+  private class PendingDeployment implements Runnable {
+
+    private final Topology topology;
+    private final File topoDir;
+    private final File deployDir;
+    private final boolean create;
+    private volatile Throwable failure;
+
+    private PendingDeployment( Topology topology, File topoDir, File deployDir ) {
+      this.topology = topology;
+      this.topoDir = topoDir;
+      this.deployDir = deployDir;
+      this.create = !topoDir.exists();
+    }
+
+    @Override
+    public void run() {
+      try {
+        EnterpriseArchive ear = DeploymentFactory.createDeployment( config, topology );
+        if( !deployDir.exists() ) {
+          deployDir.mkdirs();
+          if( !deployDir.exists() ) {
+            throw new DeploymentException( "Failed to create topology deployment temporary directory: " + deployDir.getAbsolutePath() );
+          }
+        }
+        File tmp = ear.as( ExplodedExporter.class ).exportExploded( deployDir, topoDir.getName() + ".tmp" );
+        if( !tmp.renameTo( topoDir ) ) {
+          FileUtils.deleteQuietly( tmp );
+          throw new DeploymentException( "Failed to create topology deployment directory: " + topoDir.getAbsolutePath() );
+        }
+        internalDeployApplications( topology, topoDir );
+      } catch( Throwable e ) {
+        failure = e;
+      }
+    }
+
+  }
+
   private File createArchiveTempDir( File warDir ) {
     File tempDir = FileUtils.getFile( warDir, "META-INF", "temp" );
     if( !tempDir.exists() ) {
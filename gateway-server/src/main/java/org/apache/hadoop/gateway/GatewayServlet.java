@@ -22,6 +22,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URISyntaxException;
 import java.util.Enumeration;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -35,6 +37,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.hadoop.gateway.audit.api.Action;
 import org.apache.hadoop.gateway.audit.api.ActionOutcome;
+import org.apache.hadoop.gateway.audit.api.AuditContext;
 import org.apache.hadoop.gateway.audit.api.AuditService;
 import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
 import org.apache.hadoop.gateway.audit.api.Auditor;
@@ -149,9 +152,7 @@ public class GatewayServlet implements Servlet, Filter {
       } else {
         ((HttpServletResponse)servletResponse).setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
       }
-      String requestUri = (String)servletRequest.getAttribute( AbstractGatewayFilter.SOURCE_REQUEST_CONTEXT_URL_ATTRIBUTE_NAME );
-      int status = ((HttpServletResponse)servletResponse).getStatus();
-      auditor.audit( Action.ACCESS, requestUri, ResourceType.URI, ActionOutcome.SUCCESS, res.responseStatus( status ) );
+      auditAccess( servletRequest, servletResponse );
     } finally {
       auditService.detachContext();
     }
@@ -180,14 +181,47 @@ public class GatewayServlet implements Servlet, Filter {
       } else {
         ((HttpServletResponse)servletResponse).setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
       }
-      String requestUri = (String)servletRequest.getAttribute( AbstractGatewayFilter.SOURCE_REQUEST_CONTEXT_URL_ATTRIBUTE_NAME );
-      int status = ((HttpServletResponse)servletResponse).getStatus();
-      auditor.audit( Action.ACCESS, requestUri, ResourceType.URI, ActionOutcome.SUCCESS, res.responseStatus( status ) );
+      auditAccess( servletRequest, servletResponse );
     } finally {
       auditService.detachContext();
     }
   }
 
+  private static void auditAccess( final ServletRequest servletRequest, final ServletResponse servletResponse ) {
+    if( servletRequest.isAsyncStarted() ) {
+      // The response status is only known once the asynchronous dispatch completes.
+      final AuditContext auditContext = auditService.getContext();
+      servletRequest.getAsyncContext().addListener( new AsyncListener() {
+        @Override
+        public void onComplete( AsyncEvent event ) {
+          auditService.attachContext( auditContext );
+          try {
+            auditAccessStatus( servletRequest, servletResponse );
+          } finally {
+            auditService.detachContext();
+          }
+        }
+        @Override
+        public void onTimeout( AsyncEvent event ) {
+        }
+        @Override
+        public void onError( AsyncEvent event ) {
+        }
+        @Override
+        public void onStartAsync( AsyncEvent event ) {
+        }
+      } );
+    } else {
+      auditAccessStatus( servletRequest, servletResponse );
+    }
+  }
+
+  private static void auditAccessStatus( ServletRequest servletRequest, ServletResponse servletResponse ) {
+    String requestUri = (String)servletRequest.getAttribute( AbstractGatewayFilter.SOURCE_REQUEST_CONTEXT_URL_ATTRIBUTE_NAME );
+    int status = ((HttpServletResponse)servletResponse).getStatus();
+    auditor.audit( Action.ACCESS, requestUri, ResourceType.URI, ActionOutcome.SUCCESS, res.responseStatus( status ) );
+  }
+
   @Override
   public String getServletInfo() {
     return res.gatewayServletInfo();
@@ -120,14 +120,25 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   private static final String KEYSTORE_TYPE = GATEWAY_CONFIG_FILE_PREFIX + ".keystore.type";
   private static final String XFORWARDED_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".xforwarded.enabled";
   private static final String EPHEMERAL_DH_KEY_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".jdk.tls.ephemeralDHKeySize";
+  private static final String SSL_SESSION_CACHE_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".ssl.session.cacheSize";
+  private static final String SSL_SESSION_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".ssl.session.timeout";
+  private static final String SSL_PROVIDER = GATEWAY_CONFIG_FILE_PREFIX + ".ssl.provider";
+  private static final String SSL_PROVIDER_CLASS = GATEWAY_CONFIG_FILE_PREFIX + ".ssl.provider.class";
   private static final String HTTP_CLIENT_MAX_CONNECTION = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.maxConnections";
   private static final String HTTP_CLIENT_CONNECTION_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionTimeout";
   private static final String HTTP_CLIENT_SOCKET_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.socketTimeout";
+  private static final String HTTP_CLIENT_POOL_MAX_CONNECTIONS = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.pool.maxConnections";
+  private static final String HTTP_CLIENT_POOL_MAX_CONNECTIONS_PER_ROUTE = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.pool.maxConnectionsPerRoute";
+  private static final String HTTP_CLIENT_POOL_IDLE_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.pool.idleTimeout";
+  private static final String HTTP_CLIENT_CONNECTION_TIME_TO_LIVE = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionTimeToLive";
+  private static final String HTTP_CLIENT_VALIDATE_AFTER_INACTIVITY = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.validateAfterInactivity";
+  private static final String DISPATCH_ASYNC_MAX_THREADS = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.async.maxThreads";
   private static final String THREAD_POOL_MAX = GATEWAY_CONFIG_FILE_PREFIX + ".threadpool.max";
   public static final String HTTP_SERVER_REQUEST_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.requestBuffer";
   public static final String HTTP_SERVER_REQUEST_HEADER_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.requestHeaderBuffer";
   public static final String HTTP_SERVER_RESPONSE_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.responseBuffer";
   public static final String HTTP_SERVER_RESPONSE_HEADER_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.responseHeaderBuffer";
+  public static final String HTTP_SERVER_IDLE_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.idleTimeout";
   public static final String DEPLOYMENTS_BACKUP_VERSION_LIMIT =  GATEWAY_CONFIG_FILE_PREFIX + ".deployment.backup.versionLimit";
   public static final String DEPLOYMENTS_BACKUP_AGE_LIMIT =  GATEWAY_CONFIG_FILE_PREFIX + ".deployment.backup.ageLimit";
 
@@ -512,6 +523,26 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return get( EPHEMERAL_DH_KEY_SIZE, "2048");
   }
 
+  @Override
+  public int getSSLSessionCacheSize() {
+    return getInt( SSL_SESSION_CACHE_SIZE, -1 );
+  }
+
+  @Override
+  public int getSSLSessionTimeout() {
+    return getInt( SSL_SESSION_TIMEOUT, -1 );
+  }
+
+  @Override
+  public String getSSLProvider() {
+    return get( SSL_PROVIDER );
+  }
+
+  @Override
+  public String getSSLProviderClass() {
+    return get( SSL_PROVIDER_CLASS );
+  }
+
   /* (non-Javadoc)
    * @see org.apache.hadoop.gateway.config.GatewayConfig#getHttpClientMaxConnections()
    */
@@ -548,6 +579,65 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return t;
   }
 
+  @Override
+  public int getHttpClientPoolMaxConnections() {
+    return getInt( HTTP_CLIENT_POOL_MAX_CONNECTIONS, 1024 );
+  }
+
+  @Override
+  public int getHttpClientPoolMaxConnectionsPerRoute() {
+    // Dispatches used to get a pool of gateway.httpclient.maxConnections each, so an explicit value keeps
+    // limiting the connections to each backend now that the pool is shared.
+    return getInt( HTTP_CLIENT_POOL_MAX_CONNECTIONS_PER_ROUTE, getInt( HTTP_CLIENT_MAX_CONNECTION, 256 ) );
+  }
+
+  @Override
+  public long getHttpClientPoolIdleTimeout() {
+    long t = 60 * 1000;
+    String s = get( HTTP_CLIENT_POOL_IDLE_TIMEOUT, null );
+    if ( s != null ) {
+      try {
+        t = parseNetworkTimeout( s );
+      } catch ( Exception e ) {
+        // Ignore it and use the default.
+      }
+    }
+    return t;
+  }
+
+  @Override
+  public long getHttpClientConnectionTimeToLive() {
+    long t = -1;
+    String s = get( HTTP_CLIENT_CONNECTION_TIME_TO_LIVE, null );
+    if ( s != null ) {
+      try {
+        t = parseNetworkTimeout( s );
+      } catch ( Exception e ) {
+        // Ignore it and use the default.
+      }
+    }
+    return t;
+  }
+
+  @Override
+  public int getHttpClientValidateAfterInactivity() {
+    int t = 1000;
+    String s = get( HTTP_CLIENT_VALIDATE_AFTER_INACTIVITY, null );
+    if ( s != null ) {
+      try {
+        t = (int)parseNetworkTimeout( s );
+      } catch ( Exception e ) {
+        // Ignore it and use the default.
+      }
+    }
+    return t;
+  }
+  @Override
+  public int getDispatchAsyncMaxThreads() {
+    return getInt( DISPATCH_ASYNC_MAX_THREADS, 200 );
+  }
+
+
   /* (non-Javadoc)
    * @see org.apache.hadoop.gateway.config.GatewayConfig#getThreadPoolMax()
    */
@@ -585,6 +675,20 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return i;
   }
 
+  @Override
+  public long getHttpServerIdleTimeout() {
+    long t = 30 * 1000;
+    String s = get( HTTP_SERVER_IDLE_TIMEOUT, null );
+    if ( s != null ) {
+      try {
+        t = parseNetworkTimeout( s );
+      } catch ( Exception e ) {
+        // Ignore it and use the default.
+      }
+    }
+    return t;
+  }
+
   @Override
   public int getGatewayDeploymentsBackupVersionLimit() {
     int i = getInt( DEPLOYMENTS_BACKUP_VERSION_LIMIT, 5 );
@@ -69,8 +69,12 @@ public abstract class DeploymentFactory {
   private static final String FILTER_NAME_SUFFIX = "-knox-gateway-filter";
   private static GatewayMessages log = MessagesFactory.get( GatewayMessages.class );
   private static GatewayServices gatewayServices = null;
+  private static JAXBContext topologyContext = null;
+  private static String loadedServicesDir = null;
+  private static long loadedServicesStamp = 0;
 
-  private static Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> SERVICE_CONTRIBUTOR_MAP;
+  // Replaced as a whole, never changed once published, so deployments can read it without the lock.
+  private static volatile Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> SERVICE_CONTRIBUTOR_MAP;
   static {
     loadServiceContributors();
   }
@@ -202,11 +206,7 @@ public abstract class DeploymentFactory {
     StringWriter writer = new StringWriter();
     String xml;
     try {
-      Map<String,Object> properties = new HashMap<String,Object>(2);
-      properties.put( "eclipselink-oxm-xml", "org/apache/hadoop/gateway/topology/topology_binding-xml.xml" );
-      properties.put( "eclipselink.media-type", "application/xml" );
-      JAXBContext jaxbContext = JAXBContext.newInstance( Topology.class.getPackage().getName(), Topology.class.getClassLoader() , properties );
-      Marshaller marshaller = jaxbContext.createMarshaller();
+      Marshaller marshaller = getTopologyContext().createMarshaller();
       marshaller.setProperty( Marshaller.JAXB_FORMATTED_OUTPUT, true );
       marshaller.marshal( topology, writer );
       writer.close();
@@ -220,6 +220,17 @@ public abstract class DeploymentFactory {
     return asset;
   }
 
+  // The context is thread safe and costly to build so it is shared by every deployment.
+  private static synchronized JAXBContext getTopologyContext() throws JAXBException {
+    if( topologyContext == null ) {
+      Map<String,Object> properties = new HashMap<String,Object>(2);
+      properties.put( "eclipselink-oxm-xml", "org/apache/hadoop/gateway/topology/topology_binding-xml.xml" );
+      properties.put( "eclipselink.media-type", "application/xml" );
+      topologyContext = JAXBContext.newInstance( Topology.class.getPackage().getName(), Topology.class.getClassLoader() , properties );
+    }
+    return topologyContext;
+  }
+
   private static DeploymentContext createDeploymentContext(
       GatewayConfig config,
       String archivePath,
@@ -349,11 +360,12 @@ public abstract class DeploymentFactory {
     String topoName = context.getTopology().getName();
     if( applications == null ) {
       String servletName = topoName + SERVLET_NAME_SUFFIX;
-      wad.createServlet().servletName( servletName ).servletClass( GatewayServlet.class.getName() );
+      // Async support lets dispatches configured with dispatch.async release the container thread.
+      wad.createServlet().servletName( servletName ).servletClass( GatewayServlet.class.getName() ).asyncSupported( true );
       wad.createServletMapping().servletName( servletName ).urlPattern( "/*" );
     } else {
       String filterName = topoName + FILTER_NAME_SUFFIX;
-      wad.createFilter().filterName( filterName ).filterClass( GatewayServlet.class.getName() );
+      wad.createFilter().filterName( filterName ).filterClass( GatewayServlet.class.getName() ).asyncSupported( true );
       wad.createFilterMapping().filterName( filterName ).urlPattern( "/*" );
     }
     if (gatewayServices != null) {
@@ -670,22 +682,49 @@ public abstract class DeploymentFactory {
     return null;
   }
 
-  private static void loadStacksServiceContributors( GatewayConfig config ) {
+  // Each topology deployment calls this so the definitions are only loaded again when the directory changes.
+  private static synchronized void loadStacksServiceContributors( GatewayConfig config ) {
     String stacks = config.getGatewayServicesDir();
-    log.usingServicesDirectory(stacks);
     File stacksDir = new File(stacks);
+    long stamp = ServiceDefinitionsLoader.getServiceDefinitionsStamp(stacksDir);
+    if( stacks.equals( loadedServicesDir ) && stamp == loadedServicesStamp ) {
+      return;
+    }
+    log.usingServicesDirectory(stacks);
     Set<ServiceDeploymentContributor> deploymentContributors = ServiceDefinitionsLoader.loadServiceDefinitions(stacksDir);
-    addServiceDeploymentContributors(deploymentContributors.iterator());
+    Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> contributorMap = copyServiceContributorMap(SERVICE_CONTRIBUTOR_MAP);
+    addServiceDeploymentContributors(contributorMap, deploymentContributors.iterator());
+    SERVICE_CONTRIBUTOR_MAP = contributorMap;
+    loadedServicesDir = stacks;
+    loadedServicesStamp = stamp;
   }
 
   private static void loadServiceContributors() {
-    SERVICE_CONTRIBUTOR_MAP = new HashMap<String, Map<String, Map<Version, ServiceDeploymentContributor>>>();
+    Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> contributorMap
+        = new HashMap<String, Map<String, Map<Version, ServiceDeploymentContributor>>>();
     ServiceLoader<ServiceDeploymentContributor> loader = ServiceLoader.load( ServiceDeploymentContributor.class );
     Iterator<ServiceDeploymentContributor> contributors = loader.iterator();
-    addServiceDeploymentContributors(contributors);
+    addServiceDeploymentContributors(contributorMap, contributors);
+    SERVICE_CONTRIBUTOR_MAP = contributorMap;
+  }
+
+  private static Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> copyServiceContributorMap(
+      Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> contributorMap ) {
+    Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> copy
+        = new HashMap<String, Map<String, Map<Version, ServiceDeploymentContributor>>>();
+    for( Map.Entry<String,Map<String,Map<Version, ServiceDeploymentContributor>>> role : contributorMap.entrySet() ) {
+      Map<String,Map<Version, ServiceDeploymentContributor>> nameMap = new HashMap<String,Map<Version, ServiceDeploymentContributor>>();
+      for( Map.Entry<String,Map<Version, ServiceDeploymentContributor>> name : role.getValue().entrySet() ) {
+        nameMap.put( name.getKey(), new TreeMap<Version, ServiceDeploymentContributor>( name.getValue() ) );
+      }
+      copy.put( role.getKey(), nameMap );
+    }
+    return copy;
   }
 
-   private static void addServiceDeploymentContributors(Iterator<ServiceDeploymentContributor> contributors) {
+   private static void addServiceDeploymentContributors(
+       Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> contributorMap,
+       Iterator<ServiceDeploymentContributor> contributors) {
       while( contributors.hasNext() ) {
         ServiceDeploymentContributor contributor = contributors.next();
         if( contributor.getName() == null ) {
@@ -700,10 +739,10 @@ public abstract class DeploymentFactory {
           log.ignoringServiceContributorWithMissingVersion(contributor.getClass().getName());
           continue;
         }
-        Map<String,Map<Version, ServiceDeploymentContributor>> nameMap = SERVICE_CONTRIBUTOR_MAP.get( contributor.getRole() );
+        Map<String,Map<Version, ServiceDeploymentContributor>> nameMap = contributorMap.get( contributor.getRole() );
         if( nameMap == null ) {
           nameMap = new HashMap<String,Map<Version, ServiceDeploymentContributor>>();
-          SERVICE_CONTRIBUTOR_MAP.put( contributor.getRole(), nameMap );
+          contributorMap.put( contributor.getRole(), nameMap );
         }
         Map<Version, ServiceDeploymentContributor> versionMap = nameMap.get(contributor.getName());
         if (versionMap == null) {
@@ -25,6 +25,8 @@ import org.apache.hadoop.gateway.descriptor.ResourceDescriptor;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.services.topology.impl.DefaultTopologyService;
 import org.apache.hadoop.gateway.services.hostmap.impl.DefaultHostMapperService;
+import org.apache.hadoop.gateway.services.httpclient.HttpClientService;
+import org.apache.hadoop.gateway.services.httpclient.impl.DefaultHttpClientService;
 import org.apache.hadoop.gateway.services.registry.impl.DefaultServiceRegistryService;
 import org.apache.hadoop.gateway.services.security.KeystoreServiceException;
 import org.apache.hadoop.gateway.services.security.SSLService;
@@ -102,6 +104,10 @@ public class DefaultGatewayServices implements GatewayServices {
     sis.init( config, options );
     services.put( SERVER_INFO_SERVICE, sis );
 
+    DefaultHttpClientService hcs = new DefaultHttpClientService();
+    hcs.init( config, options );
+    services.put( HTTP_CLIENT_SERVICE, hcs );
+
     DefaultTopologyService tops = new DefaultTopologyService();
     tops.init(  config, options  );
     services.put(  TOPOLOGY_SERVICE, tops  );
@@ -118,9 +124,15 @@ public class DefaultGatewayServices implements GatewayServices {
     SSLService ssl = (SSLService) services.get(SSL_SERVICE);
     ssl.start();
 
+    DefaultServiceRegistryService sr = (DefaultServiceRegistryService) services.get(SERVICE_REGISTRY_SERVICE);
+    sr.start();
+
     ServerInfoService sis = (ServerInfoService) services.get(SERVER_INFO_SERVICE);
     sis.start();
 
+    HttpClientService hcs = (HttpClientService) services.get(HTTP_CLIENT_SERVICE);
+    hcs.start();
+
     DefaultTopologyService tops = (DefaultTopologyService)services.get(TOPOLOGY_SERVICE);
     tops.start();
   }
@@ -136,9 +148,15 @@ public class DefaultGatewayServices implements GatewayServices {
     SSLService ssl = (SSLService) services.get(SSL_SERVICE);
     ssl.stop();
 
+    DefaultServiceRegistryService sr = (DefaultServiceRegistryService) services.get(SERVICE_REGISTRY_SERVICE);
+    sr.stop();
+
     ServerInfoService sis = (ServerInfoService) services.get(SERVER_INFO_SERVICE);
     sis.stop();
 
+    HttpClientService hcs = (HttpClientService) services.get(HTTP_CLIENT_SERVICE);
+    hcs.stop();
+
     DefaultTopologyService tops = (DefaultTopologyService)services.get(TOPOLOGY_SERVICE);
     tops.stop();
   }
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.httpclient.impl;
+
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.dispatch.AsyncDispatch;
+import org.apache.hadoop.gateway.services.ServiceLifecycleException;
+import org.apache.hadoop.gateway.services.httpclient.HttpClientService;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pools the backend connections of all the dispatches in a single connection manager.
+ * The default socket factories are used so backend TLS sessions are cached once for the gateway
+ * rather than once per dispatch filter.  Dispatches configured with their own limits keep a private pool
+ * which is registered here so that all the pools can be monitored together.
+ */
+public class DefaultHttpClientService implements HttpClientService {
+
+  public static final String SHARED_POOL_NAME = "gateway";
+
+  private static final long MAX_EVICTION_INTERVAL = 10 * 1000;
+
+  private PoolingHttpClientConnectionManager connectionManager;
+  private IdleConnectionEvictor evictor;
+  private ThreadPoolExecutor asyncDispatchExecutor;
+  private final ConcurrentMap<String, PoolingHttpClientConnectionManager> pools =
+      new ConcurrentHashMap<String, PoolingHttpClientConnectionManager>();
+
+  @Override
+  public void init( GatewayConfig config, Map<String, String> options ) throws ServiceLifecycleException {
+    connectionManager = new PoolingHttpClientConnectionManager(
+        config.getHttpClientConnectionTimeToLive(), TimeUnit.MILLISECONDS );
+    int validateAfterInactivity = config.getHttpClientValidateAfterInactivity();
+    if( validateAfterInactivity > 0 ) {
+      connectionManager.setValidateAfterInactivity( validateAfterInactivity );
+    }
+    int maxConnections = config.getHttpClientPoolMaxConnections();
+    if( maxConnections > 0 ) {
+      connectionManager.setMaxTotal( maxConnections );
+    }
+    int maxConnectionsPerRoute = config.getHttpClientPoolMaxConnectionsPerRoute();
+    if( maxConnectionsPerRoute > 0 ) {
+      connectionManager.setDefaultMaxPerRoute( maxConnectionsPerRoute );
+    }
+    long idleTimeout = config.getHttpClientPoolIdleTimeout();
+    if( idleTimeout > 0 ) {
+      evictor = new IdleConnectionEvictor(
+          connectionManager,
+          Math.min( idleTimeout, MAX_EVICTION_INTERVAL ), TimeUnit.MILLISECONDS,
+          idleTimeout, TimeUnit.MILLISECONDS );
+    }
+    asyncDispatchExecutor = AsyncDispatch.newExecutor( Math.max( 1, config.getDispatchAsyncMaxThreads() ) );
+  }
+
+  @Override
+  public void start() throws ServiceLifecycleException {
+    if( evictor != null ) {
+      evictor.start();
+    }
+  }
+
+  @Override
+  public void stop() throws ServiceLifecycleException {
+    if( evictor != null ) {
+      evictor.shutdown();
+    }
+    asyncDispatchExecutor.shutdown();
+    connectionManager.shutdown();
+  }
+
+  @Override
+  public HttpClientConnectionManager getConnectionManager() {
+    return connectionManager;
+  }
+
+  @Override
+  public PoolStats getTotalStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  @Override
+  public Map<HttpRoute, PoolStats> getRouteStats() {
+    return getRouteStats( connectionManager );
+  }
+
+  @Override
+  public void addConnectionPool( String name, PoolingHttpClientConnectionManager pool ) {
+    pools.put( name, pool );
+  }
+
+  @Override
+  public void removeConnectionPool( String name, PoolingHttpClientConnectionManager pool ) {
+    pools.remove( name, pool );
+  }
+
+  @Override
+  public Map<String, PoolingHttpClientConnectionManager> getConnectionPools() {
+    Map<String, PoolingHttpClientConnectionManager> all = new LinkedHashMap<String, PoolingHttpClientConnectionManager>();
+    all.put( SHARED_POOL_NAME, connectionManager );
+    all.putAll( new TreeMap<String, PoolingHttpClientConnectionManager>( pools ) );
+    return Collections.unmodifiableMap( all );
+  }
+
+  @Override
+  public ThreadPoolExecutor getAsyncDispatchExecutor() {
+    return asyncDispatchExecutor;
+  }
+
+  private static Map<HttpRoute, PoolStats> getRouteStats( PoolingHttpClientConnectionManager pool ) {
+    Map<HttpRoute, PoolStats> stats = new LinkedHashMap<HttpRoute, PoolStats>();
+    for( HttpRoute route : pool.getRoutes() ) {
+      stats.put( route, pool.getStats( route ) );
+    }
+    return Collections.unmodifiableMap( stats );
+  }
+
+}
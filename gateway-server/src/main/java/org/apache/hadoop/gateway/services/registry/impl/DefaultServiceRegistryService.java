@@ -35,11 +35,26 @@ import org.apache.hadoop.gateway.services.security.CryptoService;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * The registry is read on request threads without locking.  Each cluster maps service names to
+ * RegEntry instances that are replaced, never modified, on registration.
+ * Once started the registry is persisted by a background thread.  Registrations made while a write
+ * is pending are coalesced into that write and the file is replaced atomically.
+ */
 public class DefaultServiceRegistryService implements ServiceRegistry, Service {
   private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
   
@@ -49,11 +64,24 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
   'M', 'N', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
   '2', '3', '4', '5', '6', '7', '8', '9',};
 
+  private static final long STOP_TIMEOUT_SECONDS = 30;
+
   private CryptoService crypto;
-  private Registry registry = new Registry();
+  private volatile Registry registry = new Registry();
+  private final ObjectMapper mapper = new ObjectMapper();
 
   private String registryFileName;
-  
+
+  private final AtomicBoolean persistPending = new AtomicBoolean();
+  private final Object persistLock = new Object();
+  private volatile ExecutorService persister;
+  private final Runnable persistTask = new Runnable() {
+    @Override
+    public void run() {
+      persistRegistry();
+    }
+  };
+
   public DefaultServiceRegistryService() {
   }
   
@@ -79,7 +107,9 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
   }
   
   public void removeClusterServices(String clusterName) {
-    registry.remove(clusterName);
+    if (registry.remove(clusterName) != null) {
+      persist();
+    }
   }
 
   public boolean registerService(String regCode, String clusterName, String serviceName, List<String> urls) {
@@ -93,41 +123,73 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
     // part one is the code and part two is the signature
     boolean verified = crypto.verify("SHA256withRSA", "gateway-identity", parts[0], Base64.decodeBase64(parts[1]));
     if (verified) {
-      HashMap<String,RegEntry> clusterServices = registry.get(clusterName);
+      ConcurrentHashMap<String,RegEntry> clusterServices = registry.get(clusterName);
       if (clusterServices == null) {
-        synchronized(this) {
-          clusterServices = new HashMap<String,RegEntry>();
-          registry.put(clusterName, clusterServices);
+        ConcurrentHashMap<String,RegEntry> newClusterServices = new ConcurrentHashMap<String,RegEntry>();
+        clusterServices = registry.putIfAbsent(clusterName, newClusterServices);
+        if (clusterServices == null) {
+          clusterServices = newClusterServices;
+        }
+      }
+      clusterServices.put(serviceName, new RegEntry(clusterName, serviceName, urls));
+      rc = persist();
+    }
+    
+    return rc;
+  }
+
+  /**
+   * Writes the registry in the background once started, otherwise on the calling thread.
+   * @return false if the registry was written on the calling thread and the write failed.
+   */
+  private boolean persist() {
+    if (persistPending.compareAndSet(false, true)) {
+      ExecutorService executor = persister;
+      if (executor != null) {
+        try {
+          executor.execute(persistTask);
+          return true;
+        } catch (RejectedExecutionException e) {
+          // Stopped so write on the calling thread.
         }
       }
-      RegEntry regEntry = new RegEntry();
-      regEntry.setClusterName(clusterName);
-      regEntry.setServiceName(serviceName);
-      regEntry.setUrls(urls);
-      clusterServices.put(serviceName , regEntry);
+      return persistRegistry();
+    }
+    // Covered by the pending write.
+    return true;
+  }
+
+  private boolean persistRegistry() {
+    synchronized (persistLock) {
+      // Registrations from now on schedule another write.
+      persistPending.set(false);
       String json = renderAsJsonString(registry);
+      if (json == null) {
+        return false;
+      }
+      File registryFile = new File(registryFileName);
+      File tempFile = new File(registryFile.getParentFile(), registryFile.getName() + ".tmp");
       try {
-        FileUtils.write(new File(registryFileName), json);
-        rc = true;
+        FileUtils.write(tempFile, json);
+        try {
+          Files.move(tempFile.toPath(), registryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(tempFile.toPath(), registryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
       } catch (IOException e) {
-        // log appropriately
-        e.printStackTrace(); //TODO: I18N
+        LOG.failedToPersistServiceRegistry(registryFileName, e);
+        return false;
       }
     }
-    
-    return rc;
   }
   
-  private String renderAsJsonString(HashMap<String,HashMap<String,RegEntry>> registry) {
+  private String renderAsJsonString(Map<String,ConcurrentHashMap<String,RegEntry>> registry) {
     String json = null;
-    ObjectMapper mapper = new ObjectMapper();
-    
     try {
-      // write JSON to a file
       json = mapper.writeValueAsString((Object)registry);
-    
     } catch ( JsonProcessingException e ) {
-      e.printStackTrace(); //TODO: I18N
+      LOG.failedToPersistServiceRegistry(registryFileName, e);
     }
     return json;
   }
@@ -143,10 +205,9 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
 
   @Override
   public List<String> lookupServiceURLs( String clusterName, String serviceName ) {
-    RegEntry entry = null;
-    HashMap clusterServices = registry.get(clusterName);
+    Map<String,RegEntry> clusterServices = registry.get(clusterName);
     if (clusterServices != null) {
-      entry = (RegEntry) clusterServices.get(serviceName);
+      RegEntry entry = clusterServices.get(serviceName);
       if( entry != null ) {
         return entry.getUrls();
       }
@@ -154,7 +215,7 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
     return null;
   }
   
-  private HashMap<String, HashMap<String,RegEntry>> getMapFromJsonString(String json) {
+  private Registry getMapFromJsonString(String json) {
     Registry map = null;
     JsonFactory factory = new JsonFactory(); 
     ObjectMapper mapper = new ObjectMapper(factory); 
@@ -185,7 +246,7 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
     if (registryFile.exists()) {
       try {
         String json = FileUtils.readFileToString(registryFile);
-        Registry reg = (Registry) getMapFromJsonString(json);
+        Registry reg = getMapFromJsonString(json);
         if (reg != null) {
           registry = reg;
         }
@@ -198,10 +259,29 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
 
   @Override
   public void start() throws ServiceLifecycleException {
+    persister = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "service-registry-persister");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
   }
 
   @Override
   public void stop() throws ServiceLifecycleException {
+    ExecutorService executor = persister;
+    persister = null;
+    if (executor != null) {
+      // Let a pending write finish so no registration is lost.
+      executor.shutdown();
+      try {
+        executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
 }
@@ -18,8 +18,13 @@
 package org.apache.hadoop.gateway.services.registry.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A registered service.  The entries created by the registry are never modified once published,
+ * the setters are only used when the persisted registry is loaded.
+ */
 public class RegEntry {
   public String clusterName;
   public String serviceName;
@@ -29,6 +34,14 @@ public class RegEntry {
   public RegEntry() {
   }
 
+  RegEntry(String clusterName, String serviceName, List<String> urls) {
+    this.clusterName = clusterName;
+    this.serviceName = serviceName;
+    if (urls != null) {
+      this.urls = Collections.unmodifiableList(new ArrayList<String>(urls));
+    }
+  }
+
   public String getClusterName() {
     return clusterName;
   }
@@ -47,8 +60,7 @@ public class RegEntry {
 
   public List<String> getUrls() {
     if (urls == null && url != null && !"null".equals(url)) {
-      urls = new ArrayList<String>();
-      urls.add(url);
+      return Collections.singletonList(url);
     }
     return urls;
   }
@@ -17,9 +17,9 @@
  */
 package org.apache.hadoop.gateway.services.registry.impl;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-class Registry extends HashMap<String,HashMap<String,RegEntry>> {
+class Registry extends ConcurrentHashMap<String,ConcurrentHashMap<String,RegEntry>> {
 
   /**
    * 
@@ -23,6 +23,8 @@ import java.io.InputStream;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
@@ -31,6 +33,7 @@ import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import javax.net.ssl.SSLSessionContext;
 import javax.security.auth.x500.X500Principal;
 
 import org.apache.hadoop.gateway.GatewayMessages;
@@ -63,6 +66,9 @@ public class JettySSLService implements SSLService {
   private String truststorePath;
   private String keystoreType;
   private String trustStoreType;
+  private int sslSessionCacheSize;
+  private int sslSessionTimeout;
+  private String sslProvider;
 
   public void setMasterService(MasterService ms) {
     this.ms = ms;
@@ -129,6 +135,29 @@ public class JettySSLService implements SSLService {
     truststorePath = config.getTruststorePath();
     trustAllCerts = config.getTrustAllCerts();
     trustStoreType = config.getTruststoreType();
+    sslSessionCacheSize = config.getSSLSessionCacheSize();
+    sslSessionTimeout = config.getSSLSessionTimeout();
+    sslProvider = config.getSSLProvider();
+    registerSSLProvider(config.getSSLProviderClass());
+  }
+
+  // Allows a faster TLS engine, such as an OpenSSL based provider, to be dropped into the gateway's lib directory.
+  private void registerSSLProvider(String providerClass) throws ServiceLifecycleException {
+    if (providerClass == null || providerClass.trim().isEmpty()) {
+      return;
+    }
+    try {
+      Provider provider = (Provider) Class.forName(providerClass.trim()).newInstance();
+      if (Security.getProvider(provider.getName()) == null) {
+        Security.addProvider(provider);
+      }
+      if (sslProvider == null) {
+        sslProvider = provider.getName();
+      }
+      log.registeredSSLProvider(provider.getName());
+    } catch (Exception e) {
+      throw new ServiceLifecycleException("Unable to register the security provider " + providerClass + " for the gateway TLS engine.", e);
+    }
   }
 
   private void logAndValidateCertificate() throws ServiceLifecycleException {
@@ -167,7 +196,10 @@ public class JettySSLService implements SSLService {
   }
 
   public Object buildSslContextFactory( String keystoreFileName ) throws KeyStoreException, IOException, CertificateException, NoSuchAlgorithmException {
-    SslContextFactory sslContextFactory = new SslContextFactory( true );
+    SslContextFactory sslContextFactory = new SessionCachingSslContextFactory( sslSessionCacheSize, sslSessionTimeout );
+    if (sslProvider != null) {
+      sslContextFactory.setProvider(sslProvider);
+    }
     sslContextFactory.setCertAlias( "gateway-identity" );
     sslContextFactory.setKeyStoreType(keystoreType);
     sslContextFactory.setKeyStorePath(keystoreFileName);
@@ -238,6 +270,34 @@ public class JettySSLService implements SSLService {
     
   }
 
+  /**
+   * Jetty 9.2 keeps the session cache settings but never applies them, so they are applied to the
+   * server session context here once the SSL context exists.
+   */
+  private static class SessionCachingSslContextFactory extends SslContextFactory {
+
+    private SessionCachingSslContextFactory( int sessionCacheSize, int sessionTimeout ) {
+      super( true );
+      setSslSessionCacheSize( sessionCacheSize );
+      setSslSessionTimeout( sessionTimeout );
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+      super.doStart();
+      SSLSessionContext sessions = getSslContext().getServerSessionContext();
+      if( sessions != null ) {
+        if( getSslSessionCacheSize() >= 0 ) {
+          sessions.setSessionCacheSize( getSslSessionCacheSize() );
+        }
+        if( getSslSessionTimeout() >= 0 ) {
+          sessions.setSessionTimeout( getSslSessionTimeout() );
+        }
+      }
+    }
+
+  }
+
   private static KeyStore loadKeyStore( String fileName, String storeType, char[] storePass ) throws CertificateException, NoSuchAlgorithmException, IOException, KeyStoreException {
     KeyStore keystore = KeyStore.getInstance(storeType);
     //Coverity CID 1352655
@@ -17,9 +17,17 @@
  */
 package org.apache.hadoop.gateway.services.token.impl;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.security.KeyStoreException;
 import java.security.Principal;
+import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.Map;
@@ -28,28 +36,55 @@ import java.util.ArrayList;
 
 import javax.security.auth.Subject;
 
+import org.apache.hadoop.gateway.GatewayMessages;
 import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.services.Service;
 import org.apache.hadoop.gateway.services.ServiceLifecycleException;
 import org.apache.hadoop.gateway.services.security.AliasService;
 import org.apache.hadoop.gateway.services.security.AliasServiceException;
 import org.apache.hadoop.gateway.services.security.KeystoreService;
 import org.apache.hadoop.gateway.services.security.KeystoreServiceException;
+import org.apache.hadoop.gateway.services.security.impl.DefaultKeystoreService;
 import org.apache.hadoop.gateway.services.security.token.JWTokenAuthority;
 import org.apache.hadoop.gateway.services.security.token.TokenServiceException;
 import org.apache.hadoop.gateway.services.security.token.impl.JWTToken;
 
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
 
+/**
+ * Issues and verifies the gateway's JWTs.
+ * <p>The signer and verifier for the signing key are created once and reused until the signing keystore
+ * or the gateway credential store changes on disk, which is checked at most once per
+ * {@link #RELOAD_CHECK_INTERVAL} ms.  RS256 or ES256 (ES384/ES512 for larger curves) is available depending
+ * on the type of the signing key.  HS256 is available when a secret of at least 256 bits has been provisioned
+ * under the {@link #SIGNING_KEY_SECRET} gateway alias.</p>
+ */
 public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
+  private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
+
   private static String SIGNING_KEY_PASSPHRASE = "signing.key.passphrase";
+  static final String SIGNING_KEY_SECRET = "signing.key.secret";
+  static final long RELOAD_CHECK_INTERVAL = 1000;
+  private static final int MIN_SECRET_LENGTH = 32;
+  private static final String GATEWAY_CREDENTIAL_STORE = "__gateway-credentials.jceks";
+
   private AliasService as = null;
   private KeystoreService ks = null;
   String signingKeyAlias = null;
+  private File[] watchedStores = new File[0];
+  private volatile SigningKeys signingKeys = null;
+  private volatile long nextReloadCheck = 0;
 
   public void setKeystoreService(KeystoreService ks) {
     this.ks = ks;
@@ -117,28 +152,12 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
       claimArray[3] = String.valueOf(expires);
     }
 
-    JWTToken token = null;
-    if ("RS256".equals(algorithm)) {
-      token = new JWTToken("RS256", claimArray, audiences);
-      RSAPrivateKey key;
-      char[] passphrase = null;
-      try {
-        passphrase = getSigningKeyPassphrase();
-      } catch (AliasServiceException e) {
-        throw new TokenServiceException(e);
-      }
-      try {
-        key = (RSAPrivateKey) ks.getSigningKey(getSigningKeyAlias(),
-            passphrase);
-        JWSSigner signer = new RSASSASigner(key);
-        token.sign(signer);
-      } catch (KeystoreServiceException e) {
-        throw new TokenServiceException(e);
-      }
-    }
-    else {
+    JWSSigner signer = getSigningKeys().getSigner(algorithm);
+    if (signer == null) {
       throw new TokenServiceException("Cannot issue token - Unsupported algorithm");
     }
+    JWTToken token = new JWTToken(algorithm, claimArray, audiences);
+    token.sign(signer);
 
     return token;
   }
@@ -161,20 +180,126 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
   @Override
   public boolean verifyToken(JWTToken token)
       throws TokenServiceException {
-    boolean rc = false;
-    PublicKey key;
+    // TODO: interrogate the token for issuer claim in order to determine the public key to use for verification
+    // consider jwk for specifying the key too
+    JWSAlgorithm algorithm = token.getSignatureAlgorithm();
+    if (algorithm == null) {
+      return false;
+    }
+    JWSVerifier verifier = getSigningKeys().getVerifier(algorithm.getName());
+    return verifier != null && token.verify(verifier);
+  }
+
+  /**
+   * @return The cached signing keys, reloaded first if the backing stores have changed since they were loaded.
+   */
+  SigningKeys getSigningKeys() {
+    SigningKeys keys = signingKeys;
+    if (keys != null && System.currentTimeMillis() < nextReloadCheck) {
+      return keys;
+    }
+    synchronized (this) {
+      keys = signingKeys;
+      long now = System.currentTimeMillis();
+      if (keys == null || now >= nextReloadCheck) {
+        long stamp = getStoresStamp();
+        if (keys == null || keys.stamp != stamp) {
+          keys = loadSigningKeys(stamp);
+          signingKeys = keys;
+        }
+        nextReloadCheck = now + RELOAD_CHECK_INTERVAL;
+      }
+      return keys;
+    }
+  }
+
+  private long getStoresStamp() {
+    long stamp = 17;
+    for (File store : watchedStores) {
+      stamp = stamp * 31 + store.lastModified();
+      stamp = stamp * 31 + store.length();
+    }
+    return stamp;
+  }
+
+  private static String getECAlgorithm(ECKey key) {
+    switch (key.getParams().getCurve().getField().getFieldSize()) {
+      case 256:
+        return JWSAlgorithm.ES256.getName();
+      case 384:
+        return JWSAlgorithm.ES384.getName();
+      case 521:
+        return JWSAlgorithm.ES512.getName();
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Each of the verifier, signer and HS256 secret is loaded on its own so that a problem with one of them,
+   * which is logged, doesn't take the others down.  Verification only needs the signing certificate.
+   */
+  private SigningKeys loadSigningKeys(long stamp) {
+    String alias = getSigningKeyAlias();
+
+    String verifierAlgorithm = null;
+    JWSVerifier verifier = null;
     try {
-      key = ks.getSigningKeystore().getCertificate(getSigningKeyAlias()).getPublicKey();
-      JWSVerifier verifier = new RSASSAVerifier((RSAPublicKey) key);
-      // TODO: interrogate the token for issuer claim in order to determine the public key to use for verification
-      // consider jwk for specifying the key too
-      rc = token.verify(verifier);
+      Certificate cert = ks.getSigningKeystore().getCertificate(alias);
+      PublicKey publicKey = cert == null ? null : cert.getPublicKey();
+      if (publicKey instanceof RSAPublicKey) {
+        verifierAlgorithm = JWSAlgorithm.RS256.getName();
+        verifier = new RSASSAVerifier((RSAPublicKey) publicKey);
+      } else if (publicKey instanceof ECPublicKey) {
+        verifierAlgorithm = getECAlgorithm((ECPublicKey) publicKey);
+        verifier = new ECDSAVerifier((ECPublicKey) publicKey);
+      }
+    } catch (KeystoreServiceException e) {
+      LOG.failedToLoadTokenVerificationKey(alias, e);
     } catch (KeyStoreException e) {
-      throw new TokenServiceException("Cannot verify token.", e);
+      LOG.failedToLoadTokenVerificationKey(alias, e);
+    } catch (JOSEException e) {
+      LOG.failedToLoadTokenVerificationKey(alias, e);
+    }
+
+    String signerAlgorithm = null;
+    JWSSigner signer = null;
+    try {
+      Key key = ks.getSigningKey(alias, getSigningKeyPassphrase());
+      if (key instanceof RSAPrivateKey) {
+        signerAlgorithm = JWSAlgorithm.RS256.getName();
+        signer = new RSASSASigner((RSAPrivateKey) key);
+      } else if (key instanceof ECPrivateKey) {
+        signerAlgorithm = getECAlgorithm((ECPrivateKey) key);
+        signer = new ECDSASigner((ECPrivateKey) key);
+      }
+    } catch (AliasServiceException e) {
+      LOG.failedToLoadTokenSigningKey(alias, e);
     } catch (KeystoreServiceException e) {
-      throw new TokenServiceException("Cannot verify token.", e);
+      LOG.failedToLoadTokenSigningKey(alias, e);
+    } catch (JOSEException e) {
+      LOG.failedToLoadTokenSigningKey(alias, e);
     }
-    return rc;
+
+    JWSSigner macSigner = null;
+    JWSVerifier macVerifier = null;
+    try {
+      char[] secret = as.getPasswordFromAliasForGateway(SIGNING_KEY_SECRET);
+      if (secret != null) {
+        byte[] bytes = new String(secret).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < MIN_SECRET_LENGTH) {
+          LOG.tokenSigningSecretTooShort();
+        } else {
+          macSigner = new MACSigner(bytes);
+          macVerifier = new MACVerifier(bytes);
+        }
+      }
+    } catch (AliasServiceException e) {
+      LOG.failedToLoadTokenSigningSecret(e);
+    } catch (JOSEException e) {
+      LOG.failedToLoadTokenSigningSecret(e);
+    }
+    return new SigningKeys(stamp, signerAlgorithm, signer, verifierAlgorithm, verifier, macSigner, macVerifier);
   }
 
   @Override
@@ -185,15 +310,12 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     }
     signingKeyAlias = config.getSigningKeyAlias();
 
-    @SuppressWarnings("unused")
-    RSAPrivateKey key;
     char[] passphrase = null;
     try {
       passphrase = as.getPasswordFromAliasForGateway(SIGNING_KEY_PASSPHRASE);
       if (passphrase != null) {
-        key = (RSAPrivateKey) ks.getSigningKey(getSigningKeyAlias(),
-            passphrase);
-        if (key == null) {
+        Key key = ks.getSigningKey(getSigningKeyAlias(), passphrase);
+        if (!(key instanceof PrivateKey)) {
           throw new ServiceLifecycleException("Provisioned passphrase cannot be used to acquire signing key.");
         }
       }
@@ -202,6 +324,22 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     } catch (KeystoreServiceException e) {
       throw new ServiceLifecycleException("Provisioned signing key passphrase cannot be acquired.", e);
     }
+
+    try {
+      char[] secret = as.getPasswordFromAliasForGateway(SIGNING_KEY_SECRET);
+      if (secret != null && new String(secret).getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_LENGTH) {
+        throw new ServiceLifecycleException("Provisioned signing key secret must be at least 256 bits.");
+      }
+    } catch (AliasServiceException e) {
+      throw new ServiceLifecycleException("Provisioned signing key secret cannot be acquired.", e);
+    }
+
+    File keystoreDir = new File(config.getGatewaySecurityDir(), "keystores");
+    String signingKeystoreName = config.getSigningKeystoreName();
+    watchedStores = new File[] {
+        new File(keystoreDir, signingKeystoreName == null ? DefaultKeystoreService.GATEWAY_KEYSTORE : signingKeystoreName),
+        new File(keystoreDir, GATEWAY_CREDENTIAL_STORE) };
+    signingKeys = null;
   }
 
   @Override
@@ -212,4 +350,48 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
   public void stop() throws ServiceLifecycleException {
   }
 
+  /**
+   * The signers and verifiers created from one load of the signing keystore and credential store.
+   */
+  static class SigningKeys {
+    private final long stamp;
+    private final String signerAlgorithm;
+    private final JWSSigner signer;
+    private final String verifierAlgorithm;
+    private final JWSVerifier verifier;
+    private final JWSSigner macSigner;
+    private final JWSVerifier macVerifier;
+
+    SigningKeys(long stamp, String signerAlgorithm, JWSSigner signer, String verifierAlgorithm, JWSVerifier verifier,
+        JWSSigner macSigner, JWSVerifier macVerifier) {
+      this.stamp = stamp;
+      this.signerAlgorithm = signerAlgorithm;
+      this.signer = signer;
+      this.verifierAlgorithm = verifierAlgorithm;
+      this.verifier = verifier;
+      this.macSigner = macSigner;
+      this.macVerifier = macVerifier;
+    }
+
+    JWSSigner getSigner(String alg) {
+      if (alg != null && alg.equals(signerAlgorithm)) {
+        return signer;
+      }
+      if (JWSAlgorithm.HS256.getName().equals(alg)) {
+        return macSigner;
+      }
+      return null;
+    }
+
+    JWSVerifier getVerifier(String alg) {
+      if (alg != null && alg.equals(verifierAlgorithm)) {
+        return verifier;
+      }
+      if (JWSAlgorithm.HS256.getName().equals(alg)) {
+        return macVerifier;
+      }
+      return null;
+    }
+  }
+
 }
@@ -25,7 +25,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.monitor.FileAlterationListener;
 import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
-import org.apache.commons.io.monitor.FileAlterationMonitor;
 import org.apache.commons.io.monitor.FileAlterationObserver;
 import org.apache.hadoop.gateway.GatewayMessages;
 import org.apache.hadoop.gateway.audit.api.Action;
@@ -39,6 +38,8 @@ import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.service.definition.ServiceDefinition;
 import org.apache.hadoop.gateway.services.ServiceLifecycleException;
 import org.apache.hadoop.gateway.services.topology.TopologyService;
+import org.apache.hadoop.gateway.topology.Provider;
+import org.apache.hadoop.gateway.topology.Service;
 import org.apache.hadoop.gateway.topology.Topology;
 import org.apache.hadoop.gateway.topology.TopologyEvent;
 import org.apache.hadoop.gateway.topology.TopologyListener;
@@ -58,15 +59,26 @@ import javax.xml.bind.Marshaller;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
 
@@ -84,10 +96,18 @@ public class DefaultTopologyService
   }
   private static GatewayMessages log = MessagesFactory.get(GatewayMessages.class);
   private static DigesterLoader digesterLoader = newLoader(new KnoxFormatXmlTopologyRules(), new AmbariFormatXmlTopologyRules());
-  private FileAlterationMonitor monitor;
+  private TopologyDirectoryWatcher watcher;
+  private volatile boolean directoryChanged;
   private File directory;
   private Set<TopologyListener> listeners;
   private volatile Map<File, Topology> topologies;
+  // Explicit redeploys are recorded in a marker file next to the topology so that a redeploy requested by
+  // another process, such as knoxcli, is honored even though the definition is unchanged.
+  private static final String REDEPLOY_MARKER_EXTENSION = ".redeploy";
+  private static final String CREDENTIAL_STORE_SUFFIX = "-credentials.jceks";
+  private File credentialStoreDirectory;
+  // Parses the topology files in parallel, the threads exit once idle.
+  private final ThreadPoolExecutor loader = createLoader();
 
   private Topology loadTopology(File file) throws IOException, SAXException, URISyntaxException, InterruptedException {
     final long TIMEOUT = 250; //ms
@@ -120,8 +140,18 @@ public class DefaultTopologyService
 
   private Topology loadTopologyAttempt(File file) throws IOException, SAXException, URISyntaxException {
     Topology topology;
-    Digester digester = digesterLoader.newDigester();
-    TopologyBuilder topologyBuilder = digester.parse(FileUtils.openInputStream(file));
+    Digester digester;
+    // The loader binds its rules lazily on first use and topologies may be loaded concurrently.
+    synchronized (digesterLoader) {
+      digester = digesterLoader.newDigester();
+    }
+    TopologyBuilder topologyBuilder;
+    InputStream input = FileUtils.openInputStream(file);
+    try {
+      topologyBuilder = digester.parse(input);
+    } finally {
+      input.close();
+    }
     if (null == topologyBuilder) {
       return null;
     }
@@ -137,10 +167,18 @@ public class DefaultTopologyService
     try {
       TopologyValidator tv = new TopologyValidator(topology);
 
-      if(tv.validateTopology()) {
+      if(!tv.validateTopology()) {
         throw new SAXException(tv.getErrorString());
       }
 
+      try {
+        FileUtils.touch(getRedeployMarker(topology.getName()));
+      } catch (IOException e) {
+        auditor.audit(Action.REDEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE);
+        log.failedToRedeployTopology(topology.getName(), e);
+        return;
+      }
+
       long start = System.currentTimeMillis();
       long limit = 1000L; // One second.
       long elapsed = 1;
@@ -187,20 +225,104 @@ public class DefaultTopologyService
       }
     }
     // Go through the new topologies and figure out what was updated vs added.
-    for (File file : newTopologies.keySet()) {
+    for (Map.Entry<File, Topology> entry : newTopologies.entrySet()) {
+      File file = entry.getKey();
       if (oldTopologies.containsKey(file)) {
         Topology oldTopology = oldTopologies.get(file);
-        Topology newTopology = newTopologies.get(file);
+        Topology newTopology = entry.getValue();
         if (newTopology.getTimestamp() > oldTopology.getTimestamp()) {
-          events.add(new TopologyEvent(TopologyEvent.Type.UPDATED, newTopologies.get(file)));
+          boolean forced = consumeRedeployMarker(newTopology.getName());
+          if (forced || isCredentialStoreChanged(oldTopology) || !isSameDefinition(oldTopology, newTopology)) {
+            events.add(new TopologyEvent(TopologyEvent.Type.UPDATED, newTopology));
+          } else {
+            // Keep the deployed topology since its deployment is named after its timestamp.
+            log.topologyUnchanged(newTopology.getName());
+            entry.setValue(oldTopology);
+          }
         }
       } else {
-        events.add(new TopologyEvent(TopologyEvent.Type.CREATED, newTopologies.get(file)));
+        events.add(new TopologyEvent(TopologyEvent.Type.CREATED, entry.getValue()));
       }
     }
     return events;
   }
 
+  private File getRedeployMarker(String topologyName) {
+    return new File(directory, topologyName + REDEPLOY_MARKER_EXTENSION);
+  }
+
+  private boolean consumeRedeployMarker(String topologyName) {
+    File marker = getRedeployMarker(topologyName);
+    return marker.exists() && marker.delete();
+  }
+
+  // Aliases are resolved at deployment time so touching the topology after changing its aliases must redeploy it.
+  private boolean isCredentialStoreChanged(Topology deployed) {
+    if (credentialStoreDirectory == null) {
+      return false;
+    }
+    File store = new File(credentialStoreDirectory, deployed.getName() + CREDENTIAL_STORE_SUFFIX);
+    return store.lastModified() > deployed.getTimestamp();
+  }
+
+  // Rewriting a file without changing it, as editors and configuration management tools often do,
+  // should not cost a redeploy.  Service.equals only compares identity so the contents are compared here.
+  private static boolean isSameDefinition(Topology oldTopology, Topology newTopology) {
+    if (!equal(oldTopology.getName(), newTopology.getName())) {
+      return false;
+    }
+    List<Provider> oldProviders = new ArrayList<Provider>(oldTopology.getProviders());
+    List<Provider> newProviders = new ArrayList<Provider>(newTopology.getProviders());
+    if (oldProviders.size() != newProviders.size()) {
+      return false;
+    }
+    for (int i = 0; i < oldProviders.size(); i++) {
+      Provider oldProvider = oldProviders.get(i);
+      Provider newProvider = newProviders.get(i);
+      if (!equal(oldProvider.getRole(), newProvider.getRole())
+          || !equal(oldProvider.getName(), newProvider.getName())
+          || oldProvider.isEnabled() != newProvider.isEnabled()
+          || !equalParams(oldProvider.getParams(), newProvider.getParams())) {
+        return false;
+      }
+    }
+    return isSameServices(oldTopology.getServices(), newTopology.getServices())
+        && isSameServices(oldTopology.getApplications(), newTopology.getApplications());
+  }
+
+  private static boolean isSameServices(Collection<? extends Service> oldCollection, Collection<? extends Service> newCollection) {
+    List<Service> oldServices = new ArrayList<Service>(oldCollection);
+    List<Service> newServices = new ArrayList<Service>(newCollection);
+    if (oldServices.size() != newServices.size()) {
+      return false;
+    }
+    for (int i = 0; i < oldServices.size(); i++) {
+      Service oldService = oldServices.get(i);
+      Service newService = newServices.get(i);
+      if (!equal(oldService.getRole(), newService.getRole())
+          || !equal(oldService.getName(), newService.getName())
+          || !equal(oldService.getVersion(), newService.getVersion())
+          || !oldService.getUrls().equals(newService.getUrls())
+          || !equalParams(oldService.getParams(), newService.getParams())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Param order matters to some providers so the maps are compared in order.
+  private static boolean equalParams(Map<String, String> oldParams, Map<String, String> newParams) {
+    if (oldParams == null || newParams == null) {
+      return oldParams == newParams;
+    }
+    return new ArrayList<Map.Entry<String, String>>(oldParams.entrySet()).equals(
+        new ArrayList<Map.Entry<String, String>>(newParams.entrySet()));
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
   private File calculateAbsoluteTopologiesDir(GatewayConfig config) {
 
     File topoDir = new File(config.getGatewayTopologyDir());
@@ -208,59 +330,105 @@ public class DefaultTopologyService
     return topoDir;
   }
 
-  private void initListener(FileAlterationMonitor monitor, File directory) {
+  private void initListener(File directory) throws IOException, SAXException {
     this.directory = directory;
-    this.monitor = monitor;
-
 
     FileAlterationObserver observer = new FileAlterationObserver(this.directory, this);
     observer.addListener(this);
-    monitor.addObserver(observer);
+    this.watcher = new TopologyDirectoryWatcher(observer);
 
     this.listeners = new HashSet<TopologyListener>();
     this.topologies = new HashMap<File, Topology>(); //loadTopologies( this.directory );
   }
 
-  private void initListener(File directory) throws IOException, SAXException {
-    // Increasing the monitoring interval to 5 seconds as profiling has shown
-    // this is rather expensive in terms of generated garbage objects.
-    initListener(new FileAlterationMonitor(5000L), directory);
-  }
-
-  private Map<File, Topology> loadTopologies(File directory) {
-    Map<File, Topology> map = new HashMap<File, Topology>();
+  // Topologies are parsed in parallel but returned in file name order so that the change events,
+  // and therefore the deployments, always happen in the same order.
+  private Map<File, Topology> loadTopologies(File directory) throws InterruptedException, ExecutionException {
+    Map<File, Topology> map = new LinkedHashMap<File, Topology>();
     if (directory.exists() && directory.canRead()) {
-      for (File file : directory.listFiles(this)) {
+      File[] files = directory.listFiles(this);
+      if (files == null) {
+        return map;
+      }
+      Arrays.sort(files);
+      if (files.length == 1) {
+        Topology topology = loadTopologyFile(files[0]);
+        if (topology != null) {
+          map.put(files[0], topology);
+        }
+      } else if (files.length > 1) {
+        List<Future<Topology>> results = new ArrayList<Future<Topology>>(files.length);
         try {
-          Topology loadTopology = loadTopology(file);
-          if (null != loadTopology) {
-            map.put(file, loadTopology);
-          } else {
-            auditor.audit(Action.LOAD, file.getAbsolutePath(), ResourceType.TOPOLOGY,
-              ActionOutcome.FAILURE);
-            log.failedToLoadTopology(file.getAbsolutePath());
+          for (final File file : files) {
+            results.add(loader.submit(new Callable<Topology>() {
+              @Override
+              public Topology call() {
+                return loadTopologyFile(file);
+              }
+            }));
           }
-        } catch (IOException e) {
-          // Maybe it makes sense to throw exception
-          auditor.audit(Action.LOAD, file.getAbsolutePath(), ResourceType.TOPOLOGY,
-            ActionOutcome.FAILURE);
-          log.failedToLoadTopology(file.getAbsolutePath(), e);
-        } catch (SAXException e) {
-          // Maybe it makes sense to throw exception
-          auditor.audit(Action.LOAD, file.getAbsolutePath(), ResourceType.TOPOLOGY,
-            ActionOutcome.FAILURE);
-          log.failedToLoadTopology(file.getAbsolutePath(), e);
-        } catch (Exception e) {
-          // Maybe it makes sense to throw exception
-          auditor.audit(Action.LOAD, file.getAbsolutePath(), ResourceType.TOPOLOGY,
-            ActionOutcome.FAILURE);
-          log.failedToLoadTopology(file.getAbsolutePath(), e);
+          for (int i = 0; i < files.length; i++) {
+            Topology topology = results.get(i).get();
+            if (topology != null) {
+              map.put(files[i], topology);
+            }
+          }
+        } catch (InterruptedException e) {
+          for (Future<Topology> result : results) {
+            result.cancel(true);
+          }
+          throw e;
         }
       }
     }
     return map;
   }
 
+  private static ThreadPoolExecutor createLoader() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "topology-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private Topology loadTopologyFile(File file) {
+    try {
+      Topology loadTopology = loadTopology(file);
+      if (null != loadTopology) {
+        return loadTopology;
+      } else {
+        auditor.audit(Action.LOAD, file.getAbsolutePath(), ResourceType.TOPOLOGY,
+          ActionOutcome.FAILURE);
+        log.failedToLoadTopology(file.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      // Maybe it makes sense to throw exception
+      auditor.audit(Action.LOAD, file.getAbsolutePath(), ResourceType.TOPOLOGY,
+        ActionOutcome.FAILURE);
+      log.failedToLoadTopology(file.getAbsolutePath(), e);
+    } catch (SAXException e) {
+      // Maybe it makes sense to throw exception
+      auditor.audit(Action.LOAD, file.getAbsolutePath(), ResourceType.TOPOLOGY,
+        ActionOutcome.FAILURE);
+      log.failedToLoadTopology(file.getAbsolutePath(), e);
+    } catch (Exception e) {
+      // Maybe it makes sense to throw exception
+      auditor.audit(Action.LOAD, file.getAbsolutePath(), ResourceType.TOPOLOGY,
+        ActionOutcome.FAILURE);
+      log.failedToLoadTopology(file.getAbsolutePath(), e);
+    }
+    return null;
+  }
+
   public void deployTopology(Topology t){
 
     try {
@@ -385,12 +553,12 @@ public class DefaultTopologyService
 
   @Override
   public void startMonitor() throws Exception {
-    monitor.start();
+    watcher.start();
   }
 
   @Override
   public void stopMonitor() throws Exception {
-    monitor.stop();
+    watcher.stop();
   }
 
   @Override
@@ -417,7 +585,16 @@ public class DefaultTopologyService
 
   @Override
   public void onFileChange(File file) {
-    reloadTopologies();
+    directoryChanged = true;
+  }
+
+  @Override
+  public void onStop(FileAlterationObserver observer) {
+    // Reload once per check however many files changed.
+    if (directoryChanged) {
+      directoryChanged = false;
+      reloadTopologies();
+    }
   }
 
   @Override
@@ -433,6 +610,9 @@ public class DefaultTopologyService
   @Override
   public void init(GatewayConfig config, Map<String, String> options) throws ServiceLifecycleException {
 
+    if (config.getGatewaySecurityDir() != null) {
+      credentialStoreDirectory = new File(config.getGatewaySecurityDir(), "keystores");
+    }
     try {
       initListener(calculateAbsoluteTopologiesDir(config));
     } catch (IOException io) {
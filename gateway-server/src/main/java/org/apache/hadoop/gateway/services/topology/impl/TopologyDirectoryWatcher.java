@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.topology.impl;
+
+import org.apache.commons.io.monitor.FileAlterationObserver;
+import org.apache.hadoop.gateway.GatewayMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a FileAlterationObserver's check as soon as a WatchService reports a change to the observed directory.
+ * Writes and renames produce bursts of events so the check waits until the directory has been quiet for a moment.
+ * The directory is still scanned now and then since some file systems, e.g. network mounts, never report changes.
+ * Where the directory cannot be watched at all it is polled as the FileAlterationMonitor did.
+ */
+class TopologyDirectoryWatcher implements Runnable {
+
+  private static GatewayMessages log = MessagesFactory.get(GatewayMessages.class);
+
+  // How long the directory must be quiet before it is checked.
+  static final long DEBOUNCE_INTERVAL = 100L;
+  // Upper bound on debouncing so a directory that changes constantly is still checked.
+  static final long MAX_DEBOUNCE_DELAY = 1000L;
+  // Scan interval while events are being received.
+  static final long SCAN_INTERVAL = 60000L;
+  // Scan interval when the directory cannot be watched.  Scans are rather expensive in terms of generated
+  // garbage objects so this is not any shorter.
+  static final long POLL_INTERVAL = 5000L;
+
+  private final FileAlterationObserver observer;
+  private volatile WatchService watchService;
+  private volatile Thread thread;
+
+  TopologyDirectoryWatcher(FileAlterationObserver observer) {
+    this.observer = observer;
+  }
+
+  synchronized void start() throws Exception {
+    if (thread != null) {
+      return;
+    }
+    observer.initialize();
+    Path directory = observer.getDirectory().toPath();
+    try {
+      watchService = directory.getFileSystem().newWatchService();
+      directory.register(watchService,
+          StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException | UnsupportedOperationException e) {
+      log.failedToWatchTopologiesDirectory(observer.getDirectory().getAbsolutePath(), e);
+      closeWatchService();
+    }
+    thread = new Thread(this, "topology-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  synchronized void stop() throws Exception {
+    Thread stopping = thread;
+    if (stopping == null) {
+      return;
+    }
+    thread = null;
+    stopping.interrupt();
+    closeWatchService();
+    stopping.join(POLL_INTERVAL);
+    observer.destroy();
+  }
+
+  @Override
+  public void run() {
+    Thread current = Thread.currentThread();
+    while (thread == current) {
+      try {
+        WatchService service = watchService;
+        if (service == null) {
+          Thread.sleep(POLL_INTERVAL);
+        } else {
+          awaitChange(service);
+        }
+        if (thread == current) {
+          observer.checkAndNotify();
+        }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        break;
+      }
+    }
+  }
+
+  private void awaitChange(WatchService service) throws InterruptedException {
+    WatchKey key = service.poll(SCAN_INTERVAL, TimeUnit.MILLISECONDS);
+    long deadline = System.currentTimeMillis() + MAX_DEBOUNCE_DELAY;
+    while (key != null) {
+      key.pollEvents();
+      if (!key.reset()) {
+        // The directory is gone or no longer accessible so fall back to polling it.
+        closeWatchService();
+        return;
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return;
+      }
+      key = service.poll(Math.min(DEBOUNCE_INTERVAL, remaining), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void closeWatchService() {
+    WatchService closing = watchService;
+    watchService = null;
+    if (closing != null) {
+      try {
+        closing.close();
+      } catch (IOException e) {
+        // Ignore.
+      }
+    }
+  }
+
+}
@@ -37,6 +37,8 @@ import org.xml.sax.SAXParseException;
 
 public class TopologyValidator {
 
+  private static final String SCHEMA_RESOURCE = "conf/topology-v1.xsd";
+
   private Collection<String> errors = null;
   private final String filePath;
 
@@ -57,7 +59,11 @@ public class TopologyValidator {
     try {
       SchemaFactory fact = SchemaFactory
           .newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-      URL schemaUrl = ClassLoader.getSystemResource( "conf/topology-v1.xsd" );
+      URL schemaUrl = getSchemaUrl( TopologyValidator.class.getClassLoader() );
+      if( schemaUrl == null ) {
+        errors.add("Error retrieving schema from ClassLoader");
+        return false;
+      }
       Schema s = fact.newSchema( schemaUrl );
       Validator validator = s.newValidator();
       final List<SAXParseException> exceptions = new LinkedList<>();
@@ -94,12 +100,21 @@ public class TopologyValidator {
       errors.add("There was a fatal error in parsing the xml file.");
       errors.add(e.getMessage());
       return false;
-    } catch (NullPointerException n) {
-      errors.add("Error retrieving schema from ClassLoader");
-      return false;
     }
   }
 
+  // The launcher loads the gateway through its own class loader which the system class loader can't see.
+  static URL getSchemaUrl(ClassLoader loader) {
+    URL url = null;
+    if( loader != null ) {
+      url = loader.getResource( SCHEMA_RESOURCE );
+    }
+    if( url == null ) {
+      url = ClassLoader.getSystemResource( SCHEMA_RESOURCE );
+    }
+    return url;
+  }
+
   public Collection<String> getTopologyErrors(){
 
     if(errors != null){
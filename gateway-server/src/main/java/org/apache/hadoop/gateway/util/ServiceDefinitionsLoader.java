@@ -49,12 +49,49 @@ public class ServiceDefinitionsLoader {
 
   private static String REWRITE_FILE = "rewrite.xml";
 
+  private static JAXBContext serviceDefinitionContext;
+
+  // Creating the context is far more expensive than unmarshalling a definition so it is shared.
+  private static synchronized JAXBContext getServiceDefinitionContext() throws JAXBException {
+    if ( serviceDefinitionContext == null ) {
+      serviceDefinitionContext = JAXBContext.newInstance(ServiceDefinition.class);
+    }
+    return serviceDefinitionContext;
+  }
+
+  /**
+   * Returns a value that changes when a file below the services directory is added, removed or modified,
+   * so that the definitions only need to be loaded again when it changes.
+   */
+  public static long getServiceDefinitionsStamp(File servicesDir) {
+    if ( servicesDir.exists() && servicesDir.isDirectory() ) {
+      return getServiceDefinitionsStamp(FileUtils.listFiles(servicesDir, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE));
+    }
+    return 0;
+  }
+
+  static long getServiceDefinitionsStamp(Collection<File> files) {
+    // The per file hashes are summed so that the listing order, which is not defined, doesn't matter.
+    long stamp = 0;
+    for ( File file : files ) {
+      long hash = file.getPath().hashCode();
+      hash = 31 * hash + file.lastModified();
+      hash = 31 * hash + file.length();
+      stamp += mix(hash);
+    }
+    return mix(stamp);
+  }
+
+  private static long mix(long value) {
+    value *= 0x9E3779B97F4A7C15L;
+    return value ^ (value >>> 29);
+  }
+
   public static Set<ServiceDeploymentContributor> loadServiceDefinitions(File servicesDir) {
     Set<ServiceDeploymentContributor> contributors = new HashSet<ServiceDeploymentContributor>();
     if ( servicesDir.exists() && servicesDir.isDirectory() ) {
       try {
-        JAXBContext context = JAXBContext.newInstance(ServiceDefinition.class);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Unmarshaller unmarshaller = getServiceDefinitionContext().createUnmarshaller();
 
         for ( File file : getFileList(servicesDir) ) {
           try {
@@ -78,8 +115,7 @@ public class ServiceDefinitionsLoader {
   public static Set<ServiceDefinition> getServiceDefinitions(File servicesDir) {
     Set<ServiceDefinition> definitions = new HashSet<>();
     try {
-      JAXBContext context = JAXBContext.newInstance(ServiceDefinition.class);
-      Unmarshaller unmarshaller = context.createUnmarshaller();
+      Unmarshaller unmarshaller = getServiceDefinitionContext().createUnmarshaller();
 
       for (File f : getFileList(servicesDir)){
         ServiceDefinition definition = (ServiceDefinition) unmarshaller.unmarshal(f);
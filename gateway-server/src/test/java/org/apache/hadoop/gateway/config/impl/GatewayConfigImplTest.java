@@ -99,6 +99,19 @@ public class GatewayConfigImplTest {
   }
 
 
+  @Test
+  public void testHttpClientPoolMaxConnectionsPerRoute() {
+    GatewayConfigImpl config = new GatewayConfigImpl();
+    assertThat( config.getHttpClientPoolMaxConnectionsPerRoute(), is( 256 ) );
+
+    // The legacy per dispatch limit still caps the connections to each backend.
+    config.setInt( "gateway.httpclient.maxConnections", 16 );
+    assertThat( config.getHttpClientPoolMaxConnectionsPerRoute(), is( 16 ) );
+
+    config.setInt( "gateway.httpclient.pool.maxConnectionsPerRoute", 64 );
+    assertThat( config.getHttpClientPoolMaxConnectionsPerRoute(), is( 64 ) );
+  }
+
   @Test
   public void testSSLCiphers() {
     GatewayConfigImpl config = new GatewayConfigImpl();
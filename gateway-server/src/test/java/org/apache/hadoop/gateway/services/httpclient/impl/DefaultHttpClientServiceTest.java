@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.httpclient.impl;
+
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.dispatch.AsyncDispatch;
+import org.apache.hadoop.gateway.dispatch.DefaultDispatch;
+import org.apache.hadoop.gateway.dispatch.DefaultHttpClientFactory;
+import org.apache.hadoop.gateway.dispatch.GatewayDispatchFilter;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DefaultHttpClientServiceTest {
+
+  @Test
+  public void testDispatchClientsShareTheGatewayPool() throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( config.getHttpClientPoolMaxConnections() ).andReturn( 8 ).anyTimes();
+    EasyMock.expect( config.getHttpClientPoolMaxConnectionsPerRoute() ).andReturn( 2 ).anyTimes();
+    EasyMock.expect( config.getHttpClientPoolIdleTimeout() ).andReturn( 1000L ).anyTimes();
+    EasyMock.replay( config );
+
+    DefaultHttpClientService service = new DefaultHttpClientService();
+    service.init( config, Collections.<String,String>emptyMap() );
+    service.start();
+    try {
+      GatewayServices services = EasyMock.createNiceMock( GatewayServices.class );
+      EasyMock.expect( services.getService( GatewayServices.HTTP_CLIENT_SERVICE ) ).andReturn( service ).anyTimes();
+      ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+      EasyMock.expect( context.getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE ) ).andReturn( services ).anyTimes();
+      FilterConfig filterConfig = EasyMock.createNiceMock( FilterConfig.class );
+      EasyMock.expect( filterConfig.getServletContext() ).andReturn( context ).anyTimes();
+      EasyMock.replay( services, context, filterConfig );
+
+      HttpClient client = new DefaultHttpClientFactory().createHttpClient( filterConfig );
+      ((CloseableHttpClient)client).close();
+
+      // Closing a dispatch client must leave the shared pool usable by the others.
+      HttpRoute route = new HttpRoute( new HttpHost( "localhost", 50070 ) );
+      HttpClientConnection connection = service.getConnectionManager().requestConnection( route, null ).get( 1, TimeUnit.SECONDS );
+      assertThat( service.getTotalStats().getMax(), is( 8 ) );
+      assertThat( service.getTotalStats().getLeased(), is( 1 ) );
+      assertThat( service.getRouteStats().get( route ).getMax(), is( 2 ) );
+      service.getConnectionManager().releaseConnection( connection, null, 0, TimeUnit.MILLISECONDS );
+      assertThat( service.getTotalStats().getLeased(), is( 0 ) );
+    } finally {
+      service.stop();
+    }
+  }
+
+  @Test
+  public void testPrivatePoolIsListedUntilItsClientCloses() throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( config.getHttpClientValidateAfterInactivity() ).andReturn( 500 ).anyTimes();
+    EasyMock.replay( config );
+
+    DefaultHttpClientService service = new DefaultHttpClientService();
+    service.init( config, Collections.<String,String>emptyMap() );
+    service.start();
+    try {
+      GatewayServices services = EasyMock.createNiceMock( GatewayServices.class );
+      EasyMock.expect( services.getService( GatewayServices.HTTP_CLIENT_SERVICE ) ).andReturn( service ).anyTimes();
+      ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+      EasyMock.expect( context.getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE ) ).andReturn( services ).anyTimes();
+      EasyMock.expect( context.getAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE ) ).andReturn( "sandbox" ).anyTimes();
+      EasyMock.expect( context.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE ) ).andReturn( config ).anyTimes();
+      FilterConfig filterConfig = EasyMock.createNiceMock( FilterConfig.class );
+      EasyMock.expect( filterConfig.getServletContext() ).andReturn( context ).anyTimes();
+      EasyMock.expect( filterConfig.getFilterName() ).andReturn( "WEBHDFS-dispatch" ).anyTimes();
+      EasyMock.expect( filterConfig.getInitParameter( "httpclient.maxConnections" ) ).andReturn( "4" ).anyTimes();
+      EasyMock.replay( services, context, filterConfig );
+
+      HttpClient client = new DefaultHttpClientFactory().createHttpClient( filterConfig );
+      assertThat( service.getConnectionPools().keySet(),
+          is( (Set<String>)new LinkedHashSet<String>( Arrays.asList( DefaultHttpClientService.SHARED_POOL_NAME, "sandbox/WEBHDFS-dispatch" ) ) ) );
+      PoolingHttpClientConnectionManager pool = service.getConnectionPools().get( "sandbox/WEBHDFS-dispatch" );
+      assertThat( pool.getTotalStats().getMax(), is( 4 ) );
+      assertThat( pool.getValidateAfterInactivity(), is( 500 ) );
+
+      ((CloseableHttpClient)client).close();
+      assertThat( service.getConnectionPools().keySet(),
+          is( Collections.singleton( DefaultHttpClientService.SHARED_POOL_NAME ) ) );
+    } finally {
+      service.stop();
+    }
+  }
+
+  @Test
+  public void testAsyncDispatchFiltersShareOneExecutor() throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( config.getDispatchAsyncMaxThreads() ).andReturn( 3 ).anyTimes();
+    EasyMock.replay( config );
+
+    DefaultHttpClientService service = new DefaultHttpClientService();
+    service.init( config, Collections.<String,String>emptyMap() );
+    service.start();
+    try {
+      GatewayServices services = EasyMock.createNiceMock( GatewayServices.class );
+      EasyMock.expect( services.getService( GatewayServices.HTTP_CLIENT_SERVICE ) ).andReturn( service ).anyTimes();
+      ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+      EasyMock.expect( context.getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE ) ).andReturn( services ).anyTimes();
+      FilterConfig filterConfig = EasyMock.createNiceMock( FilterConfig.class );
+      EasyMock.expect( filterConfig.getServletContext() ).andReturn( context ).anyTimes();
+      EasyMock.expect( filterConfig.getInitParameter( "dispatch-impl" ) ).andReturn( DefaultDispatch.class.getName() ).anyTimes();
+      EasyMock.expect( filterConfig.getInitParameter( "dispatch.async" ) ).andReturn( "true" ).anyTimes();
+      EasyMock.expect( filterConfig.getInitParameterNames() ).andReturn( Collections.enumeration( Arrays.asList( "dispatch-impl", "dispatch.async" ) ) ).anyTimes();
+      EasyMock.replay( services, context, filterConfig );
+
+      GatewayDispatchFilter first = new GatewayDispatchFilter();
+      first.init( filterConfig );
+      GatewayDispatchFilter second = new GatewayDispatchFilter();
+      second.init( filterConfig );
+      assertThat( first.getDispatch(), instanceOf( AsyncDispatch.class ) );
+      assertThat( second.getDispatch(), instanceOf( AsyncDispatch.class ) );
+      assertThat( service.getAsyncDispatchExecutor().getMaximumPoolSize(), is( 3 ) );
+
+      first.destroy();
+      second.destroy();
+      assertThat( service.getAsyncDispatchExecutor().isShutdown(), is( false ) );
+    } finally {
+      service.stop();
+    }
+    assertThat( service.getAsyncDispatchExecutor().isShutdown(), is( true ) );
+  }
+
+}
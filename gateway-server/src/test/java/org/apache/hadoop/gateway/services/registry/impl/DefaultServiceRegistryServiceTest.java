@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.registry.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.gateway.services.security.CryptoService;
+import org.apache.hadoop.test.TestUtils;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DefaultServiceRegistryServiceTest {
+
+  private File dir;
+  private CryptoService crypto;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = TestUtils.createTempDir( this.getClass().getSimpleName() + "-" );
+    crypto = EasyMock.createNiceMock( CryptoService.class );
+    EasyMock.expect( crypto.sign( EasyMock.anyObject( String.class ), EasyMock.anyObject( String.class ), EasyMock.anyObject( String.class ) ) )
+        .andReturn( new byte[]{ 1, 2, 3 } ).anyTimes();
+    EasyMock.expect( crypto.verify( EasyMock.anyObject( String.class ), EasyMock.anyObject( String.class ), EasyMock.anyObject( String.class ), EasyMock.anyObject( byte[].class ) ) )
+        .andReturn( true ).anyTimes();
+    EasyMock.replay( crypto );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteQuietly( dir );
+  }
+
+  private DefaultServiceRegistryService createRegistry() throws Exception {
+    DefaultServiceRegistryService registry = new DefaultServiceRegistryService();
+    registry.setCryptoService( crypto );
+    registry.setupRegistryFile( dir.getAbsolutePath(), "registry" );
+    return registry;
+  }
+
+  @Test
+  public void testConcurrentRegistrationAndLookup() throws Exception {
+    final DefaultServiceRegistryService registry = createRegistry();
+    registry.start();
+
+    final int clusters = 8;
+    final int services = 50;
+    ExecutorService executor = Executors.newFixedThreadPool( clusters * 2 );
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for( int c = 0; c < clusters; c++ ) {
+      final String cluster = "cluster-" + c;
+      futures.add( executor.submit( new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for( int s = 0; s < services; s++ ) {
+            String code = registry.getRegistrationCode( cluster );
+            assertThat( registry.registerService( code, cluster, "SERVICE-" + s, Arrays.asList( "http://" + cluster + ":" + s ) ), is( true ) );
+          }
+          return null;
+        }
+      } ) );
+      futures.add( executor.submit( new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for( int i = 0; i < services * 10; i++ ) {
+            int s = i % services;
+            String url = registry.lookupServiceURL( cluster, "SERVICE-" + s );
+            // Either not registered yet or the complete entry.
+            if( url != null ) {
+              assertThat( url, is( "http://" + cluster + ":" + s ) );
+            }
+          }
+          return null;
+        }
+      } ) );
+    }
+    for( Future<Void> future : futures ) {
+      future.get();
+    }
+    executor.shutdown();
+    registry.stop();
+
+    // All the registrations are persisted once stopped.
+    DefaultServiceRegistryService reloaded = createRegistry();
+    for( int c = 0; c < clusters; c++ ) {
+      for( int s = 0; s < services; s++ ) {
+        assertThat( reloaded.lookupServiceURL( "cluster-" + c, "SERVICE-" + s ), is( "http://cluster-" + c + ":" + s ) );
+      }
+    }
+    assertThat( new File( dir, "registry.tmp" ).exists(), is( false ) );
+  }
+
+  @Test
+  public void testRegisteredUrlsAreSnapshots() throws Exception {
+    DefaultServiceRegistryService registry = createRegistry();
+    List<String> urls = new ArrayList<String>( Arrays.asList( "http://host:1", "http://host:2" ) );
+    assertThat( registry.registerService( registry.getRegistrationCode( "cluster" ), "cluster", "SERVICE", urls ), is( true ) );
+    urls.clear();
+    assertThat( registry.lookupServiceURLs( "cluster", "SERVICE" ), is( Arrays.asList( "http://host:1", "http://host:2" ) ) );
+
+    registry.removeClusterServices( "cluster" );
+    assertThat( registry.lookupServiceURL( "cluster", "SERVICE" ), nullValue() );
+    assertThat( createRegistry().lookupServiceURL( "cluster", "SERVICE" ), nullValue() );
+  }
+
+}
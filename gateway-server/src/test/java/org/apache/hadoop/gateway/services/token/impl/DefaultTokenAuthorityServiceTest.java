@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.token.impl;
+
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.services.ServiceLifecycleException;
+import org.apache.hadoop.gateway.services.security.AliasService;
+import org.apache.hadoop.gateway.services.security.KeystoreService;
+import org.apache.hadoop.gateway.services.security.KeystoreServiceException;
+import org.apache.hadoop.gateway.services.security.impl.X509CertificateUtil;
+import org.apache.hadoop.gateway.services.security.token.TokenServiceException;
+import org.apache.hadoop.gateway.services.security.token.impl.JWTToken;
+import org.easymock.EasyMock;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.cert.Certificate;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DefaultTokenAuthorityServiceTest {
+
+  private static final String ALIAS = "gateway-identity";
+  private static final char[] PASSPHRASE = "horton".toCharArray();
+  private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Principal principal = new Principal() {
+    @Override
+    public String getName() {
+      return "guest";
+    }
+  };
+
+  @Test
+  public void testSigningKeyIsLoadedOnceForManyTokens() throws Exception {
+    KeyPair pair = generateKeyPair( "RSA", 1024 );
+    KeystoreService ks = createKeystoreService( pair, "SHA256withRSA", 1 );
+    DefaultTokenAuthorityService service = createService( ks, null );
+
+    for( int i = 0; i < 5; i++ ) {
+      JWTToken token = service.issueToken( principal, "RS256" );
+      assertThat( token.getSignatureAlgorithm().getName(), is( "RS256" ) );
+      assertThat( service.verifyToken( new JWTToken( token.toString() ) ), is( true ) );
+    }
+    EasyMock.verify( ks );
+  }
+
+  @Test
+  public void testES256WithEllipticCurveSigningKey() throws Exception {
+    KeyPair pair = generateKeyPair( "EC", 256 );
+    DefaultTokenAuthorityService service = createService( createKeystoreService( pair, "SHA256withECDSA", 1 ), null );
+
+    JWTToken token = service.issueToken( principal, "ES256" );
+    assertThat( service.verifyToken( new JWTToken( token.toString() ) ), is( true ) );
+    try {
+      service.issueToken( principal, "RS256" );
+      fail( "Expected TokenServiceException" );
+    } catch( TokenServiceException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testES256WithProvisionedPassphrase() throws Exception {
+    KeyPair pair = generateKeyPair( "EC", 256 );
+    char[] passphrase = "signing".toCharArray();
+    KeystoreService ks = EasyMock.createMock( KeystoreService.class );
+    // Once to check the passphrase during init and once to load the signer.
+    EasyMock.expect( ks.getSigningKey( ALIAS, passphrase ) ).andReturn( pair.getPrivate() ).times( 2 );
+    EasyMock.expect( ks.getSigningKeystore() ).andReturn( createKeyStore( pair, "SHA256withECDSA" ) ).once();
+    EasyMock.replay( ks );
+    DefaultTokenAuthorityService service = createService( ks, null, passphrase );
+
+    JWTToken token = service.issueToken( principal, "ES256" );
+    assertThat( service.verifyToken( new JWTToken( token.toString() ) ), is( true ) );
+    EasyMock.verify( ks );
+  }
+
+  @Test
+  public void testVerifyWithoutSigningKey() throws Exception {
+    KeyPair pair = generateKeyPair( "RSA", 1024 );
+    DefaultTokenAuthorityService issuer = createService( createKeystoreService( pair, "SHA256withRSA", 1 ), null );
+    JWTToken token = issuer.issueToken( principal, "RS256" );
+
+    // The signing key can't be read but the certificate is enough to verify.
+    KeystoreService ks = EasyMock.createMock( KeystoreService.class );
+    EasyMock.expect( ks.getSigningKey( ALIAS, PASSPHRASE ) ).andThrow( new KeystoreServiceException( "wrong passphrase" ) ).once();
+    EasyMock.expect( ks.getSigningKeystore() ).andReturn( createKeyStore( pair, "SHA256withRSA" ) ).once();
+    EasyMock.replay( ks );
+    DefaultTokenAuthorityService verifier = createService( ks, null );
+
+    assertThat( verifier.verifyToken( new JWTToken( token.toString() ) ), is( true ) );
+    try {
+      verifier.issueToken( principal, "RS256" );
+      fail( "Expected TokenServiceException" );
+    } catch( TokenServiceException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testHS256WithProvisionedSecret() throws Exception {
+    KeyPair pair = generateKeyPair( "RSA", 1024 );
+    DefaultTokenAuthorityService service = createService( createKeystoreService( pair, "SHA256withRSA", 1 ), SECRET );
+
+    JWTToken token = service.issueToken( principal, "HS256" );
+    assertThat( service.verifyToken( new JWTToken( token.toString() ) ), is( true ) );
+
+    // An RS256 signature presented as HS256 must not verify.
+    JWTToken rsa = service.issueToken( principal, "RS256" );
+    String[] parts = rsa.toString().split( "\\." );
+    String[] hmac = token.toString().split( "\\." );
+    assertThat( service.verifyToken( new JWTToken( hmac[0] + "." + parts[1] + "." + parts[2] ) ), is( false ) );
+  }
+
+  @Test
+  public void testHS256UnavailableWithoutSecret() throws Exception {
+    KeyPair pair = generateKeyPair( "RSA", 1024 );
+    DefaultTokenAuthorityService service = createService( createKeystoreService( pair, "SHA256withRSA", 1 ), null );
+    try {
+      service.issueToken( principal, "HS256" );
+      fail( "Expected TokenServiceException" );
+    } catch( TokenServiceException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testShortSecretIsRejected() throws Exception {
+    KeyPair pair = generateKeyPair( "RSA", 1024 );
+    try {
+      createService( createKeystoreService( pair, "SHA256withRSA", 0 ), "tooshort" );
+      fail( "Expected ServiceLifecycleException" );
+    } catch( ServiceLifecycleException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testShortSecretProvisionedLaterOnlyDisablesHS256() throws Exception {
+    KeyPair pair = generateKeyPair( "RSA", 1024 );
+    File store = new File( new File( folder.getRoot(), "keystores" ), "gateway.jks" );
+    store.getParentFile().mkdirs();
+    writeBytes( store, 1 );
+
+    AliasService as = EasyMock.createNiceMock( AliasService.class );
+    EasyMock.expect( as.getGatewayIdentityPassphrase() ).andReturn( PASSPHRASE ).anyTimes();
+    // Checked during init and the first load, then replaced by a short one.
+    EasyMock.expect( as.getPasswordFromAliasForGateway( DefaultTokenAuthorityService.SIGNING_KEY_SECRET ) )
+        .andReturn( SECRET.toCharArray() ).times( 2 );
+    EasyMock.expect( as.getPasswordFromAliasForGateway( DefaultTokenAuthorityService.SIGNING_KEY_SECRET ) )
+        .andReturn( "tooshort".toCharArray() ).anyTimes();
+    EasyMock.replay( as );
+    DefaultTokenAuthorityService service = initService( createKeystoreService( pair, "SHA256withRSA", 2 ), as );
+
+    assertThat( service.verifyToken( service.issueToken( principal, "HS256" ) ), is( true ) );
+
+    writeBytes( store, 2 );
+    Thread.sleep( DefaultTokenAuthorityService.RELOAD_CHECK_INTERVAL + 100 );
+
+    assertThat( service.verifyToken( service.issueToken( principal, "RS256" ) ), is( true ) );
+    try {
+      service.issueToken( principal, "HS256" );
+      fail( "Expected TokenServiceException" );
+    } catch( TokenServiceException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testSigningKeyIsReloadedWhenKeystoreChanges() throws Exception {
+    KeyPair first = generateKeyPair( "RSA", 1024 );
+    KeyPair second = generateKeyPair( "RSA", 1024 );
+    KeystoreService ks = EasyMock.createMock( KeystoreService.class );
+    EasyMock.expect( ks.getSigningKey( ALIAS, PASSPHRASE ) ).andReturn( first.getPrivate() ).once();
+    EasyMock.expect( ks.getSigningKeystore() ).andReturn( createKeyStore( first, "SHA256withRSA" ) ).once();
+    EasyMock.expect( ks.getSigningKey( ALIAS, PASSPHRASE ) ).andReturn( second.getPrivate() ).once();
+    EasyMock.expect( ks.getSigningKeystore() ).andReturn( createKeyStore( second, "SHA256withRSA" ) ).once();
+    EasyMock.replay( ks );
+
+    File store = new File( new File( folder.getRoot(), "keystores" ), "gateway.jks" );
+    store.getParentFile().mkdirs();
+    writeBytes( store, 1 );
+    DefaultTokenAuthorityService service = createService( ks, null );
+
+    JWTToken before = service.issueToken( principal, "RS256" );
+    assertThat( service.verifyToken( before ), is( true ) );
+
+    writeBytes( store, 2 );
+    Thread.sleep( DefaultTokenAuthorityService.RELOAD_CHECK_INTERVAL + 100 );
+
+    JWTToken after = service.issueToken( principal, "RS256" );
+    assertThat( service.verifyToken( after ), is( true ) );
+    assertThat( service.verifyToken( before ), is( false ) );
+    EasyMock.verify( ks );
+  }
+
+  private DefaultTokenAuthorityService createService( KeystoreService ks, String secret ) throws Exception {
+    return createService( ks, secret, null );
+  }
+
+  private DefaultTokenAuthorityService createService( KeystoreService ks, String secret, char[] passphrase )
+      throws Exception {
+    AliasService as = EasyMock.createNiceMock( AliasService.class );
+    EasyMock.expect( as.getGatewayIdentityPassphrase() ).andReturn( PASSPHRASE ).anyTimes();
+    EasyMock.expect( as.getPasswordFromAliasForGateway( DefaultTokenAuthorityService.SIGNING_KEY_SECRET ) )
+        .andReturn( secret == null ? null : secret.toCharArray() ).anyTimes();
+    EasyMock.expect( as.getPasswordFromAliasForGateway( "signing.key.passphrase" ) )
+        .andReturn( passphrase ).anyTimes();
+    EasyMock.replay( as );
+    return initService( ks, as );
+  }
+
+  private DefaultTokenAuthorityService initService( KeystoreService ks, AliasService as ) throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( config.getGatewaySecurityDir() ).andReturn( folder.getRoot().getAbsolutePath() ).anyTimes();
+    EasyMock.replay( config );
+
+    DefaultTokenAuthorityService service = new DefaultTokenAuthorityService();
+    service.setAliasService( as );
+    service.setKeystoreService( ks );
+    service.init( config, Collections.<String,String>emptyMap() );
+    return service;
+  }
+
+  private KeystoreService createKeystoreService( KeyPair pair, String sigAlg, int loads ) throws Exception {
+    KeystoreService ks = EasyMock.createMock( KeystoreService.class );
+    if( loads > 0 ) {
+      EasyMock.expect( ks.getSigningKey( ALIAS, PASSPHRASE ) ).andReturn( pair.getPrivate() ).times( loads );
+      EasyMock.expect( ks.getSigningKeystore() ).andReturn( createKeyStore( pair, sigAlg ) ).times( loads );
+    }
+    EasyMock.replay( ks );
+    return ks;
+  }
+
+  private static KeyStore createKeyStore( KeyPair pair, String sigAlg ) throws Exception {
+    Certificate cert = X509CertificateUtil.generateCertificate( "CN=localhost", pair, 1, sigAlg );
+    KeyStore keyStore = KeyStore.getInstance( "JKS" );
+    keyStore.load( null, null );
+    keyStore.setKeyEntry( ALIAS, pair.getPrivate(), PASSPHRASE, new Certificate[]{ cert } );
+    return keyStore;
+  }
+
+  private static KeyPair generateKeyPair( String algorithm, int size ) throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance( algorithm );
+    generator.initialize( size );
+    return generator.generateKeyPair();
+  }
+
+  private static void writeBytes( File file, int count ) throws Exception {
+    OutputStream output = new FileOutputStream( file );
+    try {
+      output.write( new byte[ count ] );
+    } finally {
+      output.close();
+    }
+  }
+
+}
@@ -158,6 +158,178 @@ public class DefaultTopologyServiceTest {
     }
   }
 
+  @Test
+  public void testTopologiesLoadedInNameOrder() throws Exception {
+    File dir = createDir();
+    long time = dir.lastModified();
+    try {
+      String[] names = {"delta", "alpha", "echo", "charlie", "bravo", "foxtrot", "golf", "hotel"};
+      for (String name : names) {
+        createFile(dir, name + ".xml", "org/apache/hadoop/gateway/topology/file/topology-one.xml", time);
+      }
+
+      TestTopologyListener topoListener = new TestTopologyListener();
+      TopologyService provider = new DefaultTopologyService();
+      GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+      EasyMock.expect(config.getGatewayTopologyDir()).andReturn(dir.toString()).anyTimes();
+      EasyMock.replay(config);
+      provider.init(config, new HashMap<String, String>());
+      provider.addTopologyChangeListener(topoListener);
+
+      provider.reloadTopologies();
+
+      assertThat(provider.getTopologies().size(), is(names.length));
+      assertThat(topoListener.events.size(), is(1));
+      List<TopologyEvent> events = topoListener.events.get(0);
+      String[] sorted = names.clone();
+      Arrays.sort(sorted);
+      assertThat(events.size(), is(sorted.length));
+      for (int i = 0; i < sorted.length; i++) {
+        assertThat(events.get(i).getType(), is(TopologyEvent.Type.CREATED));
+        assertThat(events.get(i).getTopology().getName(), is(sorted[i]));
+      }
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  @Test
+  public void testUnchangedTopologyIsNotRedeployed() throws Exception {
+    File dir = createDir();
+    long time = dir.lastModified();
+    try {
+      createFile(dir, "one.xml", "org/apache/hadoop/gateway/topology/file/topology-one.xml", time);
+
+      TestTopologyListener topoListener = new TestTopologyListener();
+      TopologyService provider = new DefaultTopologyService();
+      GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+      EasyMock.expect(config.getGatewayTopologyDir()).andReturn(dir.toString()).anyTimes();
+      EasyMock.replay(config);
+      provider.init(config, new HashMap<String, String>());
+      provider.addTopologyChangeListener(topoListener);
+      provider.reloadTopologies();
+      assertThat(topoListener.events.size(), is(1));
+      topoListener.events.clear();
+
+      // Rewrite the file with the same content.
+      createFile(dir, "one.xml", "org/apache/hadoop/gateway/topology/file/topology-one.xml", time + 2000L);
+      provider.reloadTopologies();
+      assertThat(topoListener.events.size(), is(1));
+      assertThat(topoListener.events.get(0).size(), is(0));
+      assertThat(provider.getTopologies().iterator().next().getTimestamp(), is(time));
+      topoListener.events.clear();
+
+      // Changing the content is an update.
+      createFile(dir, "one.xml", "org/apache/hadoop/gateway/topology/file/topology-two.xml", System.currentTimeMillis() + 4000L);
+      provider.reloadTopologies();
+      assertThat(topoListener.events.get(0).size(), is(1));
+      assertThat(topoListener.events.get(0).get(0).getType(), is(TopologyEvent.Type.UPDATED));
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  @Test
+  public void testRedeployFromAnotherProcessIsNotSkipped() throws Exception {
+    File dir = createDir();
+    long time = dir.lastModified();
+    try {
+      createFile(dir, "one.xml", "org/apache/hadoop/gateway/topology/file/topology-one.xml", time);
+      GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+      EasyMock.expect(config.getGatewayTopologyDir()).andReturn(dir.toString()).anyTimes();
+      EasyMock.replay(config);
+
+      TestTopologyListener topoListener = new TestTopologyListener();
+      TopologyService gateway = new DefaultTopologyService();
+      gateway.init(config, new HashMap<String, String>());
+      gateway.addTopologyChangeListener(topoListener);
+      gateway.reloadTopologies();
+      topoListener.events.clear();
+
+      // The knoxcli redeploy command uses its own service instance and can only touch the files.
+      TopologyService cli = new DefaultTopologyService();
+      cli.init(config, new HashMap<String, String>());
+      cli.reloadTopologies();
+      cli.redeployTopologies("one");
+
+      gateway.reloadTopologies();
+      assertThat(topoListener.events.get(0).size(), is(1));
+      assertThat(topoListener.events.get(0).get(0).getType(), is(TopologyEvent.Type.UPDATED));
+      topoListener.events.clear();
+
+      // The request is consumed so a later rewrite without changes is skipped again.
+      File file = new File(dir, "one.xml");
+      createFile(dir, "one.xml", "org/apache/hadoop/gateway/topology/file/topology-one.xml", file.lastModified() + 2000L);
+      gateway.reloadTopologies();
+      assertThat(topoListener.events.get(0).size(), is(0));
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  @Test
+  public void testTouchAfterAliasChangeIsRedeployed() throws Exception {
+    File dir = createDir();
+    File securityDir = createDir();
+    long time = dir.lastModified();
+    try {
+      createFile(dir, "one.xml", "org/apache/hadoop/gateway/topology/file/topology-one.xml", time);
+      GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+      EasyMock.expect(config.getGatewayTopologyDir()).andReturn(dir.toString()).anyTimes();
+      EasyMock.expect(config.getGatewaySecurityDir()).andReturn(securityDir.toString()).anyTimes();
+      EasyMock.replay(config);
+
+      TestTopologyListener topoListener = new TestTopologyListener();
+      TopologyService provider = new DefaultTopologyService();
+      provider.init(config, new HashMap<String, String>());
+      provider.addTopologyChangeListener(topoListener);
+      provider.reloadTopologies();
+      topoListener.events.clear();
+
+      File store = new File(securityDir, "keystores/one-credentials.jceks");
+      FileUtils.touch(store);
+      store.setLastModified(time + 1000L);
+      new File(dir, "one.xml").setLastModified(time + 2000L);
+      provider.reloadTopologies();
+      assertThat(topoListener.events.get(0).size(), is(1));
+      assertThat(topoListener.events.get(0).get(0).getType(), is(TopologyEvent.Type.UPDATED));
+    } finally {
+      FileUtils.deleteQuietly(dir);
+      FileUtils.deleteQuietly(securityDir);
+    }
+  }
+
+  @Test
+  public void testMonitorNoticesNewTopology() throws Exception {
+    File dir = createDir();
+    try {
+      TestTopologyListener topoListener = new TestTopologyListener();
+      TopologyService provider = new DefaultTopologyService();
+      GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+      EasyMock.expect(config.getGatewayTopologyDir()).andReturn(dir.toString()).anyTimes();
+      EasyMock.replay(config);
+      provider.init(config, new HashMap<String, String>());
+      provider.addTopologyChangeListener(topoListener);
+      provider.reloadTopologies();
+      topoListener.events.clear();
+
+      provider.startMonitor();
+      try {
+        createFile(dir, "one.xml", "org/apache/hadoop/gateway/topology/file/topology-one.xml", System.currentTimeMillis());
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (provider.getTopologies().isEmpty() && System.currentTimeMillis() < deadline) {
+          Thread.sleep(20);
+        }
+      } finally {
+        provider.stopMonitor();
+      }
+      assertThat(provider.getTopologies().size(), is(1));
+      assertThat(provider.getTopologies().iterator().next().getName(), is("one"));
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
   private void kickMonitor(FileAlterationMonitor monitor) {
     for (FileAlterationObserver observer : monitor.getObservers()) {
       observer.checkAndNotify();
@@ -16,8 +16,11 @@
  */
 package org.apache.hadoop.gateway.topology.validation;
 
+import java.io.File;
 import java.net.URL;
+import java.net.URLClassLoader;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.test.TestUtils;
 import org.junit.Test;
 
@@ -45,4 +48,18 @@ public class TopologyValidatorTest {
 
   }
 
+  @Test
+  public void testSchemaLoadedFromOwnClassLoaderFirst() throws Exception {
+    File dir = TestUtils.createTempDir( "topology-schema-" );
+    try {
+      File schema = new File( dir, "conf/topology-v1.xsd" );
+      FileUtils.copyURLToFile( TopologyValidator.getSchemaUrl( TopologyValidator.class.getClassLoader() ), schema );
+      // A loader that doesn't delegate to the system class loader, like the launcher's.
+      URLClassLoader loader = new URLClassLoader( new URL[]{ dir.toURI().toURL() }, null );
+      assertThat( TopologyValidator.getSchemaUrl( loader ), is( schema.toURI().toURL() ) );
+    } finally {
+      FileUtils.deleteQuietly( dir );
+    }
+  }
+
 }
\ No newline at end of file
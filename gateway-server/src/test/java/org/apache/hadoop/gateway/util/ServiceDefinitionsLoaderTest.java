@@ -17,11 +17,17 @@
  */
 package org.apache.hadoop.gateway.util;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.gateway.deploy.ServiceDeploymentContributor;
+import org.apache.hadoop.test.TestUtils;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -46,4 +52,43 @@ public class ServiceDefinitionsLoaderTest {
       }
     }
   }
+
+  @Test
+  public void testServiceDefinitionsStampChangesWithDirectory() throws IOException {
+    File dir = TestUtils.createTempDir( "services-stamp-" );
+    try {
+      long empty = ServiceDefinitionsLoader.getServiceDefinitionsStamp(dir);
+      File file = new File(dir, "foo/1.0.0/service.xml");
+      FileUtils.writeStringToFile(file, "<service/>");
+      long added = ServiceDefinitionsLoader.getServiceDefinitionsStamp(dir);
+      assertNotEquals(empty, added);
+      assertEquals(added, ServiceDefinitionsLoader.getServiceDefinitionsStamp(dir));
+      FileUtils.writeStringToFile(file, "<service role=\"FOO\"/>");
+      assertNotEquals(added, ServiceDefinitionsLoader.getServiceDefinitionsStamp(dir));
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  @Test
+  public void testServiceDefinitionsStampIgnoresListingOrder() throws IOException {
+    File dir = TestUtils.createTempDir( "services-stamp-" );
+    try {
+      List<File> files = new ArrayList<File>();
+      for (String name : new String[] { "foo/1.0.0/service.xml", "foo/1.0.0/rewrite.xml", "bar/2.0.0/service.xml", "baz/3.0.0/service.xml" }) {
+        File file = new File(dir, name);
+        FileUtils.writeStringToFile(file, "<" + name + "/>");
+        files.add(file);
+      }
+      long stamp = ServiceDefinitionsLoader.getServiceDefinitionsStamp(files);
+      List<File> reversed = new ArrayList<File>(files);
+      Collections.reverse(reversed);
+      assertEquals(stamp, ServiceDefinitionsLoader.getServiceDefinitionsStamp(reversed));
+      Collections.swap(reversed, 0, 2);
+      assertEquals(stamp, ServiceDefinitionsLoader.getServiceDefinitionsStamp(reversed));
+      assertEquals(stamp, ServiceDefinitionsLoader.getServiceDefinitionsStamp(dir));
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
 }
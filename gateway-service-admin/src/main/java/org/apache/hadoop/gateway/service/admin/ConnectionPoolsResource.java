@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.admin;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.apache.hadoop.gateway.dispatch.HadoopAuthCookieStore;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.httpclient.HttpClientService;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+import static javax.ws.rs.core.Response.ok;
+import static javax.ws.rs.core.Response.status;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+
+/**
+ * Reports the leased, available and pending connections of the backend connection pools per route
+ * along with how often backend auth cookies spared a SPNEGO negotiation.
+ */
+@Path( "/api/v1" )
+public class ConnectionPoolsResource {
+  @Context
+  private HttpServletRequest request;
+
+  @GET
+  @Produces({APPLICATION_JSON, APPLICATION_XML})
+  @Path( "connections" )
+  public Response getConnectionPools() {
+    return getConnectionPools(request);
+  }
+
+  Response getConnectionPools(HttpServletRequest request) {
+    GatewayServices services = (GatewayServices)request.getServletContext().
+        getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+    HttpClientService hcs = services == null ? null :
+        services.<HttpClientService>getService(GatewayServices.HTTP_CLIENT_SERVICE);
+    if (hcs == null) {
+      return status(NOT_FOUND).build();
+    }
+    ConnectionPools pools = new ConnectionPools();
+    for (Map.Entry<String, PoolingHttpClientConnectionManager> entry : hcs.getConnectionPools().entrySet()) {
+      PoolingHttpClientConnectionManager manager = entry.getValue();
+      ConnectionPool pool = new ConnectionPool(entry.getKey(), manager.getTotalStats());
+      pool.routes = new ArrayList<ConnectionPool>();
+      for (HttpRoute route : manager.getRoutes()) {
+        pool.routes.add(new ConnectionPool(route.getTargetHost().toURI(), manager.getStats(route)));
+      }
+      pools.pools.add(pool);
+    }
+    pools.authCookies = new AuthCookies(
+        HadoopAuthCookieStore.getReusedCount(),
+        HadoopAuthCookieStore.getIssuedCount(),
+        HadoopAuthCookieStore.getRefreshedCount());
+    return ok(pools).build();
+  }
+
+  @XmlRootElement(name="connections")
+  public static class ConnectionPools {
+    @XmlElement(name="pool")
+    private List<ConnectionPool> pools = new ArrayList<ConnectionPool>();
+    @XmlElement
+    private AuthCookies authCookies;
+
+    public List<ConnectionPool> getPools() {
+      return pools;
+    }
+    public AuthCookies getAuthCookies() {
+      return authCookies;
+    }
+  }
+
+  public static class AuthCookies {
+    @XmlElement
+    private long reused;
+    @XmlElement
+    private long issued;
+    @XmlElement
+    private long refreshed;
+
+    public AuthCookies() { }
+
+    public AuthCookies(long reused, long issued, long refreshed) {
+      this.reused = reused;
+      this.issued = issued;
+      this.refreshed = refreshed;
+    }
+
+    public long getReused() {
+      return reused;
+    }
+    public long getIssued() {
+      return issued;
+    }
+    public long getRefreshed() {
+      return refreshed;
+    }
+  }
+
+  public static class ConnectionPool {
+    @XmlElement
+    private String name;
+    @XmlElement
+    private int leased;
+    @XmlElement
+    private int available;
+    @XmlElement
+    private int pending;
+    @XmlElement
+    private int max;
+    @XmlElementWrapper(name="routes")
+    @XmlElement(name="route")
+    private List<ConnectionPool> routes;
+
+    public ConnectionPool() { }
+
+    public ConnectionPool(String name, PoolStats stats) {
+      this.name = name;
+      this.leased = stats.getLeased();
+      this.available = stats.getAvailable();
+      this.pending = stats.getPending();
+      this.max = stats.getMax();
+    }
+
+    public String getName() {
+      return name;
+    }
+    public int getLeased() {
+      return leased;
+    }
+    public int getAvailable() {
+      return available;
+    }
+    public int getPending() {
+      return pending;
+    }
+    public int getMax() {
+      return max;
+    }
+    public List<ConnectionPool> getRoutes() {
+      return routes;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.admin;
+
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.httpclient.HttpClientService;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ConnectionPoolsResourceTest {
+
+  @Test
+  public void testPoolsAreReportedPerRoute() throws Exception {
+    PoolingHttpClientConnectionManager shared = new PoolingHttpClientConnectionManager();
+    shared.setMaxTotal( 8 );
+    shared.setDefaultMaxPerRoute( 2 );
+    PoolingHttpClientConnectionManager hive = new PoolingHttpClientConnectionManager();
+    hive.setMaxTotal( 4 );
+    try {
+      HttpRoute route = new HttpRoute( new HttpHost( "localhost", 50070 ) );
+      HttpClientConnection connection = shared.requestConnection( route, null ).get( 1, TimeUnit.SECONDS );
+
+      Map<String, PoolingHttpClientConnectionManager> pools = new LinkedHashMap<String, PoolingHttpClientConnectionManager>();
+      pools.put( "gateway", shared );
+      pools.put( "sandbox/HIVE-dispatch", hive );
+      HttpClientService hcs = EasyMock.createNiceMock( HttpClientService.class );
+      EasyMock.expect( hcs.getConnectionPools() ).andReturn( pools ).anyTimes();
+      HttpServletRequest request = createRequest( hcs );
+      EasyMock.replay( hcs );
+
+      Response response = new ConnectionPoolsResource().getConnectionPools( request );
+      assertThat( response.getStatus(), is( 200 ) );
+      ConnectionPoolsResource.ConnectionPools entity = (ConnectionPoolsResource.ConnectionPools)response.getEntity();
+      assertThat( entity.getPools().size(), is( 2 ) );
+
+      ConnectionPoolsResource.ConnectionPool gateway = entity.getPools().get( 0 );
+      assertThat( gateway.getName(), is( "gateway" ) );
+      assertThat( gateway.getLeased(), is( 1 ) );
+      assertThat( gateway.getMax(), is( 8 ) );
+      assertThat( gateway.getRoutes().size(), is( 1 ) );
+      assertThat( gateway.getRoutes().get( 0 ).getName(), is( "http://localhost:50070" ) );
+      assertThat( gateway.getRoutes().get( 0 ).getLeased(), is( 1 ) );
+      assertThat( gateway.getRoutes().get( 0 ).getMax(), is( 2 ) );
+
+      ConnectionPoolsResource.ConnectionPool hivePool = entity.getPools().get( 1 );
+      assertThat( hivePool.getName(), is( "sandbox/HIVE-dispatch" ) );
+      assertThat( hivePool.getLeased(), is( 0 ) );
+      assertThat( hivePool.getMax(), is( 4 ) );
+      assertThat( hivePool.getRoutes().size(), is( 0 ) );
+      assertThat( entity.getAuthCookies(), notNullValue() );
+
+      shared.releaseConnection( connection, null, 0, TimeUnit.MILLISECONDS );
+    } finally {
+      shared.shutdown();
+      hive.shutdown();
+    }
+  }
+
+  @Test
+  public void testNotFoundWithoutHttpClientService() {
+    Response response = new ConnectionPoolsResource().getConnectionPools( createRequest( null ) );
+    assertThat( response.getStatus(), is( 404 ) );
+  }
+
+  private static HttpServletRequest createRequest( HttpClientService hcs ) {
+    GatewayServices services = EasyMock.createNiceMock( GatewayServices.class );
+    EasyMock.expect( services.getService( GatewayServices.HTTP_CLIENT_SERVICE ) ).andReturn( hcs ).anyTimes();
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE ) ).andReturn( services ).anyTimes();
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( request.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.replay( services, context, request );
+    return request;
+  }
+
+}
@@ -56,6 +56,7 @@ public class WebSSOResource {
   private static final String SSO_COOKIE_TOKEN_AUDIENCES_PARAM = "knoxsso.token.audiences";
   private static final String SSO_COOKIE_TOKEN_WHITELIST_PARAM = "knoxsso.redirect.whitelist.regex";
   private static final String SSO_ENABLE_SESSION_PARAM = "knoxsso.enable.session";
+  private static final String SSO_SIGNATURE_ALGORITHM_PARAM = "knoxsso.token.sigalg";
   private static final String ORIGINAL_URL_REQUEST_PARAM = "originalUrl";
   private static final String ORIGINAL_URL_COOKIE_NAME = "original-url";
   private static final String JWT_COOKIE_NAME = "hadoop-jwt";
@@ -67,9 +68,11 @@ public class WebSSOResource {
   private int maxAge = -1;
   private long tokenTTL = 30000l;
   private String whitelist = null;
+  private RegExUtils.Whitelist compiledWhitelist = null;
   private String domainSuffix = null;
   private String[] targetAudiences = null;
   private boolean enableSession = false;
+  private String signatureAlgorithm = "RS256";
 
   @Context
   private HttpServletRequest request;
@@ -108,6 +111,7 @@ public class WebSSOResource {
       // default to local/relative targets
       whitelist = DEFAULT_WHITELIST;
     }
+    compiledWhitelist = RegExUtils.getWhitelist(whitelist);
 
     String audiences = context.getInitParameter(SSO_COOKIE_TOKEN_AUDIENCES_PARAM);
     if (audiences != null) {
@@ -126,6 +130,11 @@ public class WebSSOResource {
 
     String enableSession = context.getInitParameter(SSO_ENABLE_SESSION_PARAM);
     this.enableSession = ("true".equals(enableSession));
+
+    String sigAlg = context.getInitParameter(SSO_SIGNATURE_ALGORITHM_PARAM);
+    if (sigAlg != null) {
+      signatureAlgorithm = sigAlg;
+    }
   }
 
   @GET
@@ -154,7 +163,7 @@ public class WebSSOResource {
         log.originalURLNotFound();
         throw new WebApplicationException("Original URL not found in the request.", Response.Status.BAD_REQUEST);
       }
-      boolean validRedirect = RegExUtils.checkWhitelist(whitelist, original);
+      boolean validRedirect = compiledWhitelist.matches(original);
       if (!validRedirect) {
         log.whiteListMatchFail(original, whitelist);
         throw new WebApplicationException("Original URL not valid according to the configured whitelist.",
@@ -166,7 +175,7 @@ public class WebSSOResource {
     Principal p = ((HttpServletRequest)request).getUserPrincipal();
 
     try {
-      JWT token = ts.issueToken(p, "RS256", getExpiry());
+      JWT token = ts.issueToken(p, signatureAlgorithm, getExpiry());
       // Coverity CID 1327959
       if( token != null ) {
         addJWTHadoopCookie( original, token );
@@ -67,4 +67,10 @@ public interface SpiGatewayMessages {
 
   @Message( level = MessageLevel.DEBUG, text = "Inbound response entity content type: {0}" )
   void inboundResponseEntityContentType( String fullContentType );
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to dispatch request asynchronously: {0}" )
+  void failedToDispatchAsync( @StackTrace( level = MessageLevel.DEBUG ) Throwable e );
+
+  @Message( level = MessageLevel.WARN, text = "No shared executor is available for asynchronous dispatch, dispatching synchronously." )
+  void asyncDispatchExecutorUnavailable();
 }
@@ -119,12 +119,64 @@ public interface GatewayConfig {
 
   String getEphemeralDHKeySize();
 
+  /**
+   * @return The maximum number of TLS sessions the gateway listener keeps for resumption, 0 for no limit
+   * or -1 for the JSSE default.
+   */
+  int getSSLSessionCacheSize();
+
+  /**
+   * @return The time in seconds a cached TLS session can be resumed, 0 for no limit or -1 for the JSSE default.
+   */
+  int getSSLSessionTimeout();
+
+  /**
+   * @return The name of the security provider supplying the gateway listener's TLS engine or null for the default.
+   */
+  String getSSLProvider();
+
+  /**
+   * @return The class of a security provider to register before the listener is created or null for none.
+   */
+  String getSSLProviderClass();
+
   int getHttpClientMaxConnections();
 
   int getHttpClientConnectionTimeout();
 
   int getHttpClientSocketTimeout();
 
+  /**
+   * @return The maximum number of backend connections held by the gateway wide connection pool.
+   */
+  int getHttpClientPoolMaxConnections();
+
+  /**
+   * @return The maximum number of pooled connections to any one backend host and port.
+   * Defaults to the legacy per dispatch limit when only that is configured.
+   */
+  int getHttpClientPoolMaxConnectionsPerRoute();
+
+  /**
+   * @return The time in milliseconds after which an unused pooled connection is closed.
+   */
+  long getHttpClientPoolIdleTimeout();
+
+  /**
+   * @return The time in milliseconds after which a backend connection is no longer reused, or -1 for no limit.
+   */
+  long getHttpClientConnectionTimeToLive();
+
+  /**
+   * @return The time in milliseconds a pooled connection may be idle before it is checked for staleness on lease.
+   */
+  int getHttpClientValidateAfterInactivity();
+
+  /**
+   * @return The maximum number of threads shared by all the dispatches configured with dispatch.async.
+   */
+  int getDispatchAsyncMaxThreads();
+
   int getThreadPoolMax();
 
   int getHttpServerRequestBuffer();
@@ -135,6 +187,11 @@ public interface GatewayConfig {
 
   int getHttpServerResponseHeaderBuffer();
 
+  /**
+   * @return The time in milliseconds an idle client connection is kept open for further requests.
+   */
+  long getHttpServerIdleTimeout();
+
   int getGatewayDeploymentsBackupVersionLimit();
 
   long getGatewayDeploymentsBackupAgeLimit();
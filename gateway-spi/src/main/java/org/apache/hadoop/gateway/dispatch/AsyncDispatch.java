@@ -0,0 +1,274 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.gateway.SpiGatewayMessages;
+import org.apache.hadoop.gateway.audit.api.AuditContext;
+import org.apache.hadoop.gateway.audit.api.AuditService;
+import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
+import org.apache.hadoop.gateway.audit.api.CorrelationContext;
+import org.apache.hadoop.gateway.audit.api.CorrelationService;
+import org.apache.hadoop.gateway.audit.api.CorrelationServiceFactory;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.http.client.HttpClient;
+
+import javax.security.auth.Subject;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs another dispatch on a separate thread pool so that the container thread is released while the request
+ * to the backend, which may be slow or long polling, is in progress.
+ * This only moves the blocking work off the container's threads, it does not make dispatching non-blocking:
+ * each request in progress still occupies a pool thread until the backend responds.  The pool is shared by
+ * all the asynchronous dispatches of the gateway and is bounded by gateway.dispatch.async.maxThreads.
+ * The wrapped dispatch still does all the work so response rewriting and HA failover behave as before.
+ * The subject and the audit and correlation contexts of the request are carried over to the dispatch thread.
+ * When the request cannot be processed asynchronously or every dispatch thread is busy the wrapped dispatch
+ * runs on the calling thread, which bounds the number of requests in progress.
+ */
+public class AsyncDispatch implements Dispatch {
+
+  private static SpiGatewayMessages LOG = MessagesFactory.get( SpiGatewayMessages.class );
+  private static AuditService auditService = AuditServiceFactory.getAuditService();
+  private static CorrelationService correlationService = CorrelationServiceFactory.getCorrelationService();
+
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final Dispatch delegate;
+  private final ThreadPoolExecutor executor;
+
+  public AsyncDispatch( Dispatch delegate, ThreadPoolExecutor executor ) {
+    this.delegate = delegate;
+    this.executor = executor;
+  }
+
+  /**
+   * Creates a pool suitable for sharing between dispatches.  Its threads are only started on demand and
+   * it has no queue, so a dispatch finding every thread busy runs on the calling thread instead.
+   */
+  public static ThreadPoolExecutor newExecutor( int maxThreads ) {
+    final String prefix = "async-dispatch-" + POOL_COUNT.incrementAndGet() + "-";
+    ThreadPoolExecutor executor = new ThreadPoolExecutor( maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+          @Override
+          public Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, prefix + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+          }
+        } );
+    executor.allowCoreThreadTimeOut( true );
+    return executor;
+  }
+
+  public Dispatch getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public void init() {
+    delegate.init();
+  }
+
+  @Override
+  public void destroy() {
+    // The executor is shared so it is left to its owner.
+    delegate.destroy();
+  }
+
+  @Override
+  public HttpClient getHttpClient() {
+    return delegate.getHttpClient();
+  }
+
+  @Override
+  public void setHttpClient( HttpClient httpClient ) {
+    delegate.setHttpClient( httpClient );
+  }
+
+  @Override
+  public URI getDispatchUrl( HttpServletRequest request ) {
+    return delegate.getDispatchUrl( request );
+  }
+
+  @Override
+  public void doGet( final URI url, final HttpServletRequest request, final HttpServletResponse response )
+      throws IOException, ServletException, URISyntaxException {
+    dispatch( request, response, new PrivilegedExceptionAction<Void>() {
+      @Override
+      public Void run() throws Exception {
+        delegate.doGet( url, request, response );
+        return null;
+      }
+    } );
+  }
+
+  @Override
+  public void doPost( final URI url, final HttpServletRequest request, final HttpServletResponse response )
+      throws IOException, ServletException, URISyntaxException {
+    dispatch( request, response, new PrivilegedExceptionAction<Void>() {
+      @Override
+      public Void run() throws Exception {
+        delegate.doPost( url, request, response );
+        return null;
+      }
+    } );
+  }
+
+  @Override
+  public void doPut( final URI url, final HttpServletRequest request, final HttpServletResponse response )
+      throws IOException, ServletException, URISyntaxException {
+    dispatch( request, response, new PrivilegedExceptionAction<Void>() {
+      @Override
+      public Void run() throws Exception {
+        delegate.doPut( url, request, response );
+        return null;
+      }
+    } );
+  }
+
+  @Override
+  public void doDelete( final URI url, final HttpServletRequest request, final HttpServletResponse response )
+      throws IOException, ServletException, URISyntaxException {
+    dispatch( request, response, new PrivilegedExceptionAction<Void>() {
+      @Override
+      public Void run() throws Exception {
+        delegate.doDelete( url, request, response );
+        return null;
+      }
+    } );
+  }
+
+  @Override
+  public void doOptions( final URI url, final HttpServletRequest request, final HttpServletResponse response )
+      throws IOException, ServletException, URISyntaxException {
+    dispatch( request, response, new PrivilegedExceptionAction<Void>() {
+      @Override
+      public Void run() throws Exception {
+        delegate.doOptions( url, request, response );
+        return null;
+      }
+    } );
+  }
+
+  private void dispatch( HttpServletRequest request, HttpServletResponse response, PrivilegedExceptionAction<Void> action )
+      throws IOException, ServletException, URISyntaxException {
+    // Checking for a free thread first avoids starting async processing only to run on this thread anyway.
+    if( !request.isAsyncSupported() || request.isAsyncStarted() || executor.getActiveCount() >= executor.getMaximumPoolSize() ) {
+      runInline( action );
+      return;
+    }
+    AsyncContext async = request.startAsync( request, response );
+    // The backend request is bounded by the HTTP client's own timeouts.
+    async.setTimeout( 0 );
+    AsyncTask task = new AsyncTask( async, response, action );
+    try {
+      executor.execute( task );
+    } catch( RejectedExecutionException e ) {
+      task.run();
+    }
+  }
+
+  private static void runInline( PrivilegedExceptionAction<Void> action )
+      throws IOException, ServletException, URISyntaxException {
+    try {
+      action.run();
+    } catch( IOException | ServletException | URISyntaxException | RuntimeException e ) {
+      throw e;
+    } catch( Exception e ) {
+      throw new ServletException( e );
+    }
+  }
+
+  private static class AsyncTask implements Runnable {
+
+    private final AsyncContext async;
+    private final HttpServletResponse response;
+    private final PrivilegedExceptionAction<Void> action;
+    private final Thread callingThread;
+    private final Subject subject;
+    private final AuditContext auditContext;
+    private final CorrelationContext correlationContext;
+
+    private AsyncTask( AsyncContext async, HttpServletResponse response, PrivilegedExceptionAction<Void> action ) {
+      this.async = async;
+      this.response = response;
+      this.action = action;
+      this.callingThread = Thread.currentThread();
+      this.subject = Subject.getSubject( AccessController.getContext() );
+      this.auditContext = auditService.getContext();
+      this.correlationContext = correlationService.getContext();
+    }
+
+    @Override
+    public void run() {
+      // The calling thread already has the contexts and still needs them once the dispatch returns.
+      boolean attach = Thread.currentThread() != callingThread;
+      if( attach ) {
+        auditService.attachContext( auditContext );
+        correlationService.attachContext( correlationContext );
+      }
+      try {
+        if( subject == null ) {
+          action.run();
+        } else {
+          Subject.doAs( subject, action );
+        }
+      } catch( Throwable e ) {
+        if( e instanceof PrivilegedActionException ) {
+          e = e.getCause();
+        }
+        LOG.failedToDispatchAsync( e );
+        if( !response.isCommitted() ) {
+          try {
+            response.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+          } catch( IOException | IllegalStateException ignore ) {
+            // The client is gone or the response was committed meanwhile.
+          }
+        }
+      } finally {
+        try {
+          async.complete();
+        } finally {
+          if( attach ) {
+            auditService.detachContext();
+            correlationService.detachContext();
+          }
+        }
+      }
+    }
+
+  }
+
+}
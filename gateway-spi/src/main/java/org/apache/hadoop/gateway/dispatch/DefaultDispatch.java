@@ -45,6 +45,7 @@ import org.apache.http.entity.ContentType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -70,6 +71,11 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
   //Buffer size in bytes
   private int replayBufferSize = -1;
 
+  //Spill size in bytes, -1 for no limit
+  private long replaySpillSize = 0;
+
+  private String replaySpillDirectory = null;
+
   @Override
   public void init() {
     super.init();
@@ -106,6 +112,47 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
     replayBufferSize = size;
   }
 
+  protected long getReplaySpillSizeInBytes() {
+    return replaySpillSize;
+  }
+
+  /**
+   * @param size The number of KB of a request body beyond the replay buffer that may be kept in a temporary
+   * file so the request can still be replayed, -1 for no limit or 0, the default, to not spill at all.
+   */
+  @Configure
+  protected void setReplaySpillSize(@Default("0")int size) {
+    replaySpillSize = size > 0 ? size * 1024L : size;
+  }
+
+  protected String getReplaySpillDirectory() {
+    return replaySpillDirectory;
+  }
+
+  /**
+   * @param directory Where spilled request bodies are kept, by default the replay directory below the
+   * gateway data directory.
+   */
+  @Configure
+  protected void setReplaySpillDirectory(@Default("")String directory) {
+    replaySpillDirectory = directory == null || directory.trim().isEmpty() ? null : directory.trim();
+  }
+
+  private File resolveReplaySpillDirectory(GatewayConfig config) throws IOException {
+    File directory;
+    if (replaySpillDirectory != null) {
+      directory = new File(replaySpillDirectory);
+    } else if (config.getGatewayDataDir() != null) {
+      directory = new File(config.getGatewayDataDir(), "replay");
+    } else {
+      return null;
+    }
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException("Unable to create the replay spill directory " + directory.getAbsolutePath());
+    }
+    return directory;
+  }
+
 
   protected void executeRequest(
          HttpUriRequest outboundRequest,
@@ -258,13 +305,23 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
           replayBufferSize = config.getHttpServerRequestBuffer();
         }
         if (!delegationTokenPresent && replayBufferSize > 0 ) {
-          entity = new PartiallyRepeatableHttpEntity(entity, replayBufferSize);
+          File spillDirectory = replaySpillSize != 0 ? resolveReplaySpillDirectory(config) : null;
+          entity = new PartiallyRepeatableHttpEntity(entity, replayBufferSize, replaySpillSize, spillDirectory);
         }
       }
 
       return entity;
    }
 
+   /**
+    * Releases anything held to replay the request entity once the request, including any retries, is done.
+    */
+   protected void releaseRequestEntity(HttpEntity entity) {
+      if (entity instanceof PartiallyRepeatableHttpEntity) {
+         ((PartiallyRepeatableHttpEntity) entity).release();
+      }
+   }
+
    @Override
    public void doGet(URI url, HttpServletRequest request, HttpServletResponse response)
          throws IOException, URISyntaxException {
@@ -291,7 +348,11 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       HttpEntity entity = createRequestEntity(request);
       method.setEntity(entity);
       copyRequestHeaderFields(method, request);
-      executeRequest(method, request, response);
+      try {
+         executeRequest(method, request, response);
+      } finally {
+         releaseRequestEntity(entity);
+      }
    }
 
    @Override
@@ -301,7 +362,11 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       HttpEntity entity = createRequestEntity(request);
       method.setEntity(entity);
       copyRequestHeaderFields(method, request);
-      executeRequest(method, request, response);
+      try {
+         executeRequest(method, request, response);
+      } finally {
+         releaseRequestEntity(entity);
+      }
    }
 
    @Override
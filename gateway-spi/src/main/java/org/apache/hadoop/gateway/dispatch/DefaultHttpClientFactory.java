@@ -18,9 +18,16 @@
 package org.apache.hadoop.gateway.dispatch;
 
 import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.httpclient.HttpClientService;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
+import org.apache.http.NoHttpResponseException;
 import org.apache.http.ProtocolException;
+import org.apache.http.auth.AUTH;
 import org.apache.http.auth.AuthSchemeProvider;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
@@ -32,6 +39,7 @@ import org.apache.http.client.RedirectStrategy;
 import org.apache.http.client.config.AuthSchemes;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.cookie.Cookie;
@@ -40,6 +48,8 @@ import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.protocol.HttpContext;
 import org.joda.time.Period;
 import org.joda.time.format.PeriodFormatter;
@@ -51,6 +61,7 @@ import java.security.Principal;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class DefaultHttpClientFactory implements HttpClientFactory {
 
@@ -66,9 +77,12 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
           .register(AuthSchemes.SPNEGO, new KnoxSpnegoAuthSchemeFactory(true))
           .build();
 
+      HadoopAuthCookieStore cookieStore = new HadoopAuthCookieStore();
       builder = builder.setDefaultAuthSchemeRegistry(authSchemeRegistry)
-          .setDefaultCookieStore(new HadoopAuthCookieStore())
-          .setDefaultCredentialsProvider(credentialsProvider);
+          .setDefaultCookieStore(cookieStore)
+          .setDefaultCredentialsProvider(credentialsProvider)
+          .addInterceptorLast(new PreemptiveSpnegoInterceptor(cookieStore))
+          .addInterceptorLast(new HadoopAuthCookieStore.ReuseCounter());
     } else {
       builder = builder.setDefaultCookieStore(new NoCookieStore());
     }
@@ -76,11 +90,25 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     builder.setKeepAliveStrategy( DefaultConnectionKeepAliveStrategy.INSTANCE );
     builder.setConnectionReuseStrategy( DefaultConnectionReuseStrategy.INSTANCE );
     builder.setRedirectStrategy( new NeverRedirectStrategy() );
-    builder.setRetryHandler( new NeverRetryHandler() );
+    builder.setRetryHandler( new StaleConnectionRetryHandler() );
 
-    int maxConnections = getMaxConnections( filterConfig );
-    builder.setMaxConnTotal( maxConnections );
-    builder.setMaxConnPerRoute( maxConnections );
+    // Lease connections from the gateway wide pool unless the service asks for its own limit.
+    HttpClientService httpClientService = getHttpClientService( filterConfig );
+    if( httpClientService != null && filterConfig.getInitParameter( "httpclient.maxConnections" ) == null ) {
+      builder.setConnectionManager( httpClientService.getConnectionManager() );
+      builder.setConnectionManagerShared( true );
+    } else {
+      GatewayConfig config =
+          (GatewayConfig)filterConfig.getServletContext().getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
+      PoolingHttpClientConnectionManager connectionManager =
+          createConnectionManager( config, getMaxConnections( filterConfig ), getPoolName( filterConfig ), httpClientService );
+      builder.setConnectionManager( connectionManager );
+      // The client owns this pool so the evictor thread is stopped when the client is closed.
+      builder.evictExpiredConnections();
+      if( config != null && config.getHttpClientPoolIdleTimeout() > 0 ) {
+        builder.evictIdleConnections( config.getHttpClientPoolIdleTimeout(), TimeUnit.MILLISECONDS );
+      }
+    }
 
     builder.setDefaultRequestConfig( getRequestConfig( filterConfig ) );
 
@@ -138,10 +166,92 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     }
   }
 
-  private class NeverRetryHandler implements HttpRequestRetryHandler {
+  /**
+   * Only retries, once, a request without a body that got no response at all.  That is how a pooled
+   * connection closed by the backend's keep-alive timeout shows up, and the request could not have been
+   * processed.  Anything else is left to the dispatch, which may fail over to another backend.
+   */
+  private static class StaleConnectionRetryHandler implements HttpRequestRetryHandler {
     @Override
     public boolean retryRequest( IOException exception, int executionCount, HttpContext context ) {
-      return false;
+      if( executionCount > 1 || !( exception instanceof NoHttpResponseException ) ) {
+        return false;
+      }
+      HttpRequest request = HttpClientContext.adapt( context ).getRequest();
+      return !( request instanceof HttpEntityEnclosingRequest );
+    }
+  }
+
+  private static class RegisteredConnectionManager extends PoolingHttpClientConnectionManager {
+
+    private final String name;
+    private final HttpClientService service;
+
+    private RegisteredConnectionManager( long timeToLive, String name, HttpClientService service ) {
+      super( timeToLive, TimeUnit.MILLISECONDS );
+      this.name = name;
+      this.service = service;
+    }
+
+    @Override
+    public void shutdown() {
+      service.removeConnectionPool( name, this );
+      super.shutdown();
+    }
+
+  }
+
+  private static PoolingHttpClientConnectionManager createConnectionManager(
+      GatewayConfig config, int maxConnections, String name, HttpClientService service ) {
+    long timeToLive = config != null ? config.getHttpClientConnectionTimeToLive() : -1;
+    PoolingHttpClientConnectionManager connectionManager;
+    if( service != null ) {
+      connectionManager = new RegisteredConnectionManager( timeToLive, name, service );
+      service.addConnectionPool( name, connectionManager );
+    } else {
+      connectionManager = new PoolingHttpClientConnectionManager( timeToLive, TimeUnit.MILLISECONDS );
+    }
+    connectionManager.setMaxTotal( maxConnections );
+    connectionManager.setDefaultMaxPerRoute( maxConnections );
+    if( config != null && config.getHttpClientValidateAfterInactivity() > 0 ) {
+      connectionManager.setValidateAfterInactivity( config.getHttpClientValidateAfterInactivity() );
+    }
+    return connectionManager;
+  }
+
+  private static String getPoolName( FilterConfig filterConfig ) {
+    Object topology = filterConfig.getServletContext().getAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE );
+    return ( topology == null ? "" : topology + "/" ) + filterConfig.getFilterName();
+  }
+
+  /**
+   * Negotiates up front with a host whose auth cookie has fallen due, saving the round trip of the
+   * request being challenged.  Any failure leaves the request to the regular challenge handling.
+   */
+  private static class PreemptiveSpnegoInterceptor implements HttpRequestInterceptor {
+
+    private final HadoopAuthCookieStore cookieStore;
+
+    private PreemptiveSpnegoInterceptor( HadoopAuthCookieStore cookieStore ) {
+      this.cookieStore = cookieStore;
+    }
+
+    @Override
+    public void process( HttpRequest request, HttpContext context ) {
+      if( request.containsHeader( AUTH.WWW_AUTH_RESP ) ) {
+        return;
+      }
+      HttpHost target = HttpClientContext.adapt( context ).getTargetHost();
+      if( target != null && cookieStore.isRefreshDue( target.getHostName() ) ) {
+        try {
+          KnoxSpnegoAuthScheme scheme = new KnoxSpnegoAuthScheme( true );
+          scheme.processChallenge( new BasicHeader( AUTH.WWW_AUTH, AuthSchemes.SPNEGO ) );
+          request.addHeader( scheme.authenticate( new UseJaasCredentials(), request, context ) );
+          HadoopAuthCookieStore.recordRefresh();
+        } catch( Exception e ) {
+          // Ignore it and let the backend challenge the request.
+        }
+      }
     }
   }
 
@@ -157,6 +267,15 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 
   }
 
+  private static HttpClientService getHttpClientService( FilterConfig filterConfig ) {
+    GatewayServices services =
+        (GatewayServices)filterConfig.getServletContext().getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE );
+    if( services != null ) {
+      return services.getService( GatewayServices.HTTP_CLIENT_SERVICE );
+    }
+    return null;
+  }
+
   private int getMaxConnections( FilterConfig filterConfig ) {
     int maxConnections = 32;
     GatewayConfig config =
@@ -20,6 +20,8 @@ package org.apache.hadoop.gateway.dispatch;
 import org.apache.hadoop.gateway.SpiGatewayMessages;
 import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.httpclient.HttpClientService;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.CloseableHttpClient;
 
@@ -34,6 +36,7 @@ import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.apache.hadoop.gateway.config.ConfigurationInjectorBuilder.configuration;
 
@@ -41,6 +44,10 @@ public class GatewayDispatchFilter extends AbstractGatewayFilter {
 
   private static Map<String, Adapter> METHOD_ADAPTERS = createMethodAdapters();
 
+  // Services with slow or long polling backends can set this to release container threads while dispatching.
+  // The dispatch threads are shared by the whole gateway and bounded by gateway.dispatch.async.maxThreads.
+  private static final String ASYNC_PARAM = "dispatch.async";
+
   protected static SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
 
   private Dispatch dispatch;
@@ -73,6 +80,14 @@ public class GatewayDispatchFilter extends AbstractGatewayFilter {
       httpClientFactory = new DefaultHttpClientFactory();
     }
     httpClient = httpClientFactory.createHttpClient(filterConfig);
+    if (Boolean.parseBoolean(filterConfig.getInitParameter(ASYNC_PARAM)) && !(dispatch instanceof AsyncDispatch)) {
+      ThreadPoolExecutor executor = getAsyncDispatchExecutor(filterConfig);
+      if (executor != null) {
+        dispatch = new AsyncDispatch(dispatch, executor);
+      } else {
+        LOG.asyncDispatchExecutorUnavailable();
+      }
+    }
     dispatch.setHttpClient(httpClient);
     dispatch.init();
   }
@@ -89,6 +104,18 @@ public class GatewayDispatchFilter extends AbstractGatewayFilter {
     }
   }
 
+  private static ThreadPoolExecutor getAsyncDispatchExecutor(FilterConfig filterConfig) {
+    GatewayServices services =
+        (GatewayServices) filterConfig.getServletContext().getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+    if (services != null) {
+      HttpClientService httpClientService = services.getService(GatewayServices.HTTP_CLIENT_SERVICE);
+      if (httpClientService != null) {
+        return httpClientService.getAsyncDispatchExecutor();
+      }
+    }
+    return null;
+  }
+
   public Dispatch getDispatch() {
     return dispatch;
   }
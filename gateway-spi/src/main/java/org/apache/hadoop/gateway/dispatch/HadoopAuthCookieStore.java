@@ -17,15 +17,243 @@
  */
 package org.apache.hadoop.gateway.dispatch;
 
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.CookieStore;
 import org.apache.http.cookie.Cookie;
-import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.cookie.SM;
+import org.apache.http.protocol.HttpContext;
 
-public class HadoopAuthCookieStore extends BasicCookieStore {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the hadoop.auth and hive.server2.auth cookies issued to the gateway by each backend host.
+ * <p>Every outbound request reads the cookies, so reads are served without locking from an immutable
+ * snapshot that is only rebuilt when a cookie is issued or falls due.  A cookie falls due shortly before
+ * the expiry of its signed token or of the cookie itself.  It is then no longer sent and its host is
+ * reported by {@link #isRefreshDue(String)} so that the next request can negotiate up front instead of
+ * presenting a cookie the backend is about to reject.</p>
+ * <p>The cookies always authenticate the gateway's own principal, end users are passed as doAs parameters,
+ * so the cookies are keyed by host and not by end user.</p>
+ */
+public class HadoopAuthCookieStore implements CookieStore {
+
+  static final long REFRESH_MARGIN = 30 * 1000;
+
+  private static final Pattern TOKEN_EXPIRY = Pattern.compile( "(?:^\"?|&)e=(\\d+)" );
+
+  private static final AtomicLong REUSED = new AtomicLong();
+  private static final AtomicLong ISSUED = new AtomicLong();
+  private static final AtomicLong REFRESHED = new AtomicLong();
+
+  private final Map<CookieKey, StoredCookie> cookies = new HashMap<CookieKey, StoredCookie>();
+  private final Set<String> expiredDomains = new HashSet<String>();
+  private volatile Snapshot snapshot = new Snapshot( Collections.<Cookie>emptyList(), Collections.<String>emptySet(), Long.MAX_VALUE );
+
+  /**
+   * @return The number of requests that presented a cookie instead of negotiating with the backend.
+   */
+  public static long getReusedCount() {
+    return REUSED.get();
+  }
+
+  /**
+   * @return The number of cookies issued by backends, each of which followed a negotiation.
+   */
+  public static long getIssuedCount() {
+    return ISSUED.get();
+  }
+
+  /**
+   * @return The number of negotiations started before the backend had to challenge the request.
+   */
+  public static long getRefreshedCount() {
+    return REFRESHED.get();
+  }
+
+  static void recordRefresh() {
+    REFRESHED.incrementAndGet();
+  }
+
+  private static boolean isAuthCookie( String name ) {
+    return name.equals( "hadoop.auth" ) || name.equals( "hive.server2.auth" );
+  }
+
+  @Override
+  public void addCookie( Cookie cookie ) {
+    if( cookie != null && isAuthCookie( cookie.getName() ) ) {
+      long now = System.currentTimeMillis();
+      CookieKey key = new CookieKey( cookie );
+      synchronized( this ) {
+        String value = cookie.getValue();
+        if( value == null || value.isEmpty() || value.equals( "\"\"" ) || cookie.isExpired( new Date( now ) ) ) {
+          cookies.remove( key );
+        } else {
+          cookies.put( key, new StoredCookie( cookie, getRefreshTime( cookie ) ) );
+          expiredDomains.remove( key.domain );
+          ISSUED.incrementAndGet();
+        }
+        rebuild( now );
+      }
+    }
+  }
+
+  @Override
+  public List<Cookie> getCookies() {
+    long now = System.currentTimeMillis();
+    Snapshot current = snapshot;
+    if( now >= current.refreshTime ) {
+      synchronized( this ) {
+        current = rebuild( now );
+      }
+    }
+    return current.cookies;
+  }
+
+  @Override
+  public synchronized boolean clearExpired( Date date ) {
+    boolean removed = false;
+    for( StoredCookie stored : new ArrayList<StoredCookie>( cookies.values() ) ) {
+      if( stored.cookie.isExpired( date ) ) {
+        CookieKey key = new CookieKey( stored.cookie );
+        cookies.remove( key );
+        expiredDomains.add( key.domain );
+        removed = true;
+      }
+    }
+    if( removed ) {
+      rebuild( System.currentTimeMillis() );
+    }
+    return removed;
+  }
 
   @Override
-  public void addCookie(Cookie cookie) {
-    if (cookie.getName().equals("hadoop.auth") || cookie.getName().equals("hive.server2.auth")) {
-      super.addCookie(cookie);
+  public synchronized void clear() {
+    cookies.clear();
+    expiredDomains.clear();
+    rebuild( System.currentTimeMillis() );
+  }
+
+  /**
+   * @return True if a cookie issued by the host is due for renewal and is no longer being sent.
+   */
+  public boolean isRefreshDue( String host ) {
+    return host != null && snapshot.dueDomains.contains( host.toLowerCase( Locale.ROOT ) );
+  }
+
+  // Must be called while holding the lock on this store.
+  private Snapshot rebuild( long now ) {
+    List<Cookie> valid = new ArrayList<Cookie>( cookies.size() );
+    Set<String> due = new HashSet<String>( expiredDomains );
+    long refreshTime = Long.MAX_VALUE;
+    for( Map.Entry<CookieKey, StoredCookie> entry : cookies.entrySet() ) {
+      StoredCookie stored = entry.getValue();
+      if( now < stored.refreshTime ) {
+        valid.add( stored.cookie );
+        refreshTime = Math.min( refreshTime, stored.refreshTime );
+      } else {
+        due.add( entry.getKey().domain );
+      }
     }
+    Snapshot rebuilt = new Snapshot( Collections.unmodifiableList( valid ), Collections.unmodifiableSet( due ), refreshTime );
+    snapshot = rebuilt;
+    return rebuilt;
   }
+
+  private static long getRefreshTime( Cookie cookie ) {
+    long expiry = Long.MAX_VALUE;
+    if( cookie.getExpiryDate() != null ) {
+      expiry = cookie.getExpiryDate().getTime();
+    }
+    // The hadoop.auth token carries its own expiry which is often shorter than the cookie's.
+    Matcher matcher = TOKEN_EXPIRY.matcher( cookie.getValue() );
+    if( matcher.find() ) {
+      try {
+        expiry = Math.min( expiry, Long.parseLong( matcher.group( 1 ) ) );
+      } catch( NumberFormatException e ) {
+        // Ignore it and rely on the cookie's expiry.
+      }
+    }
+    return expiry == Long.MAX_VALUE ? Long.MAX_VALUE : expiry - REFRESH_MARGIN;
+  }
+
+  private static class Snapshot {
+    private final List<Cookie> cookies;
+    private final Set<String> dueDomains;
+    private final long refreshTime;
+
+    private Snapshot( List<Cookie> cookies, Set<String> dueDomains, long refreshTime ) {
+      this.cookies = cookies;
+      this.dueDomains = dueDomains;
+      this.refreshTime = refreshTime;
+    }
+  }
+
+  private static class StoredCookie {
+    private final Cookie cookie;
+    private final long refreshTime;
+
+    private StoredCookie( Cookie cookie, long refreshTime ) {
+      this.cookie = cookie;
+      this.refreshTime = refreshTime;
+    }
+  }
+
+  private static class CookieKey {
+    private final String name;
+    private final String domain;
+    private final String path;
+
+    private CookieKey( Cookie cookie ) {
+      this.name = cookie.getName();
+      this.domain = cookie.getDomain() == null ? "" : cookie.getDomain().toLowerCase( Locale.ROOT );
+      this.path = cookie.getPath() == null ? "/" : cookie.getPath();
+    }
+
+    @Override
+    public boolean equals( Object other ) {
+      if( !( other instanceof CookieKey ) ) {
+        return false;
+      }
+      CookieKey that = (CookieKey)other;
+      return name.equals( that.name ) && domain.equals( that.domain ) && path.equals( that.path );
+    }
+
+    @Override
+    public int hashCode() {
+      return ( name.hashCode() * 31 + domain.hashCode() ) * 31 + path.hashCode();
+    }
+  }
+
+  /**
+   * Counts the requests that present an auth cookie.  It must run after the cookies matching the
+   * request's origin have been added, since the store itself can't tell which of its cookies are sent.
+   */
+  static class ReuseCounter implements HttpRequestInterceptor {
+    @Override
+    public void process( HttpRequest request, HttpContext context ) {
+      for( Header header : request.getHeaders( SM.COOKIE ) ) {
+        for( String cookie : header.getValue().split( ";" ) ) {
+          int equals = cookie.indexOf( '=' );
+          if( equals > 0 && isAuthCookie( cookie.substring( 0, equals ).trim() ) ) {
+            REUSED.incrementAndGet();
+            return;
+          }
+        }
+      }
+    }
+  }
+
 }
@@ -20,9 +20,13 @@ package org.apache.hadoop.gateway.dispatch;
 import org.apache.http.impl.auth.SPNegoScheme;
 import org.ietf.jgss.GSSException;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 public class KnoxSpnegoAuthScheme extends SPNegoScheme {
 
-  private static long nano = Long.MIN_VALUE;
+  // One guard per backend host, so only tokens for the same service principal are serialized.
+  private static final ConcurrentMap<String, AuthServerGuard> GUARDS = new ConcurrentHashMap<String, AuthServerGuard>();
 
   public KnoxSpnegoAuthScheme( boolean stripPort ) {
     super( stripPort );
@@ -35,20 +39,43 @@ public class KnoxSpnegoAuthScheme extends SPNegoScheme {
   @Override
   protected byte[] generateToken(final byte[] input, final String authServer) throws GSSException {
     // This is done to avoid issues with Keberos service ticket replay detection on the service side.
-    synchronized( KnoxSpnegoAuthScheme.class ) {
+    // The service rejects a second authenticator from the same client with the same timestamp, so tokens
+    // for one host are generated one at a time and at least a microsecond apart.  Tokens for different
+    // hosts are checked against different replay caches and need not wait for each other.
+    AuthServerGuard guard = getGuard( authServer );
+    synchronized( guard ) {
       long now;
-      // This just insures that the system clock has advanced to a different nanosecond.
-      // Kerberos uses microsecond resolution and 1ms=1000ns.
-      while( ( now = System.nanoTime() ) == nano ) {
-        try {
-          Thread.sleep( 0 );
-        } catch( InterruptedException e ) {
-          // Ignore it.
-        }
+      // Kerberos uses microsecond resolution.
+      while( ( now = System.nanoTime() / 1000 ) == guard.micros ) {
+        Thread.yield();
       }
-      nano = now;
-      return super.generateToken( input, authServer );
+      guard.micros = now;
+      return generateGssToken( input, authServer );
     }
   }
 
+  /**
+   * Generates the token once the guard for the host is held.
+   */
+  protected byte[] generateGssToken( byte[] input, String authServer ) throws GSSException {
+    return super.generateToken( input, authServer );
+  }
+
+  private static AuthServerGuard getGuard( String authServer ) {
+    String key = authServer == null ? "" : authServer;
+    AuthServerGuard guard = GUARDS.get( key );
+    if( guard == null ) {
+      guard = new AuthServerGuard();
+      AuthServerGuard existing = GUARDS.putIfAbsent( key, guard );
+      if( existing != null ) {
+        guard = existing;
+      }
+    }
+    return guard;
+  }
+
+  private static class AuthServerGuard {
+    private long micros = Long.MIN_VALUE;
+  }
+
 }
@@ -22,34 +22,76 @@ import org.apache.http.HttpEntity;
 import org.apache.http.annotation.NotThreadSafe;
 import org.apache.http.entity.HttpEntityWrapper;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * Lets a non repeatable entity be sent again, for example after a SPNEGO challenge or an HA failover,
+ * by keeping the content read so far.
+ * <p>Up to the buffer size the content is kept in fixed size chunks taken from a shared pool, so a request
+ * only holds as much memory as it actually read and no memory is allocated per request in the steady state.
+ * Beyond the buffer size the content can spill to a temporary file.  Once the content outgrows both, the
+ * stream that read past them becomes the only one that can continue.</p>
+ * <p>{@link #release()} must be called once the entity is no longer needed to return the chunks to the pool
+ * and delete the spill file.</p>
+ */
 @NotThreadSafe
 public class PartiallyRepeatableHttpEntity extends HttpEntityWrapper {
 
   public static final int DEFAULT_BUFFER_SIZE = 4096;
 
-  private int replayWriteIndex;
-  private int replayWriteLimit;
-  private byte[] replayBuffer;
+  static final int CHUNK_SIZE = 8 * 1024;
+  private static final int POOL_SIZE = 256;
+  private static final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<byte[]>( POOL_SIZE );
+
+  private final int bufferSize;
+  private final long spillSize;
+  private final File spillDirectory;
+  private final List<byte[]> chunks;
+  private int buffered;
+  private RandomAccessFile spill;
+  private File spillFile;
+  private long spilled;
   private ReplayStream finalStream;
   private InputStream wrappedStream;
 
-  public PartiallyRepeatableHttpEntity(final HttpEntity entity, int bufferSize) throws IOException {
+  /**
+   * @param spillSize The number of bytes beyond the buffer size that may be kept in a temporary file,
+   * -1 for no limit or 0 to keep nothing beyond the buffer.
+   * @param spillDirectory Where the temporary file is created, which must exist, or null for the system default.
+   */
+  public PartiallyRepeatableHttpEntity(final HttpEntity entity, int bufferSize, long spillSize, File spillDirectory)
+      throws IOException {
     super( entity );
     this.wrappedStream = null;
     this.finalStream = null;
-    this.replayWriteIndex = -1;
+    this.spillDirectory = spillDirectory;
     if( !entity.isRepeatable() ) {
-      this.replayBuffer = new byte[ bufferSize ];
-      this.replayWriteLimit = bufferSize-1;
+      this.bufferSize = bufferSize;
+      this.spillSize = spillSize;
+      this.chunks = new ArrayList<byte[]>();
     } else {
-      this.replayBuffer = null;
+      this.bufferSize = 0;
+      this.spillSize = 0;
+      this.chunks = null;
     }
   }
 
+  public PartiallyRepeatableHttpEntity(final HttpEntity entity, int bufferSize, long spillSize) throws IOException {
+    this( entity, bufferSize, spillSize, null );
+  }
+
+  public PartiallyRepeatableHttpEntity(final HttpEntity entity, int bufferSize) throws IOException {
+    this( entity, bufferSize, 0 );
+  }
+
   public PartiallyRepeatableHttpEntity(final HttpEntity entity) throws IOException {
     this( entity, DEFAULT_BUFFER_SIZE );
   }
@@ -75,11 +117,11 @@ public class PartiallyRepeatableHttpEntity extends HttpEntityWrapper {
   }
 
   // This will throw an IOException if an attempt is made to getContent a second time after
-  // more bytes than the buffer can hold has been read on the first stream.
+  // more bytes than the buffer and spill file can hold has been read on the first stream.
   @Override
   public InputStream getContent() throws IOException {
     // If the wrapped stream is repeatable return it directly.
-    if( replayBuffer == null ) {
+    if( chunks == null ) {
       return wrappedEntity.getContent();
     // Else if the buffer has overflowed
     } else if( finalStream != null ) {
@@ -103,53 +145,115 @@ public class PartiallyRepeatableHttpEntity extends HttpEntityWrapper {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Returns the buffer chunks to the pool and deletes any spill file.  The content can not be read again.
+   */
+  public void release() {
+    if( chunks != null ) {
+      for( byte[] chunk : chunks ) {
+        POOL.offer( chunk );
+      }
+      chunks.clear();
+      buffered = 0;
+      deleteSpill();
+      spilled = 0;
+      finalStream = new ReplayStream();
+    }
+  }
+
+  // Keeps the bytes just read from the wrapped stream if there is room for all of them.
+  private boolean keep( byte[] buffer, int offset, int count, boolean single ) throws IOException {
+    // The limits match the historical behavior of the single buffer, where a bulk read had to leave a byte spare.
+    if( spill == null && ( single ? buffered < bufferSize : buffered + count < bufferSize ) ) {
+      int kept = 0;
+      while( kept < count ) {
+        int chunkOffset = buffered % CHUNK_SIZE;
+        if( chunkOffset == 0 ) {
+          byte[] chunk = POOL.poll();
+          chunks.add( chunk == null ? new byte[ CHUNK_SIZE ] : chunk );
+        }
+        int length = Math.min( count - kept, CHUNK_SIZE - chunkOffset );
+        System.arraycopy( buffer, offset + kept, chunks.get( chunks.size() - 1 ), chunkOffset, length );
+        kept += length;
+        buffered += length;
+      }
+      return true;
+    } else if( spillSize < 0 || spilled + count <= spillSize ) {
+      if( spill == null ) {
+        createSpill();
+      }
+      spill.seek( spilled );
+      spill.write( buffer, offset, count );
+      spilled += count;
+      return true;
+    }
+    return false;
+  }
+
+  private void createSpill() throws IOException {
+    spillFile = File.createTempFile( "knox-replay-", ".tmp", spillDirectory );
+    try {
+      spill = new RandomAccessFile( spillFile, "rw" );
+    } catch( IOException e ) {
+      deleteSpill();
+      throw e;
+    }
+  }
+
+  // The file is deleted here rather than on exit since every path registered for deletion on exit is kept
+  // until the JVM stops.
+  private void deleteSpill() {
+    if( spill != null ) {
+      IOUtils.closeQuietly( spill );
+      spill = null;
+    }
+    if( spillFile != null ) {
+      spillFile.delete();
+      spillFile = null;
+    }
+  }
+
   private class ReplayStream extends InputStream {
 
-    private int replayReadIndex = -1;
+    private long position = 0;
+    private final byte[] single = new byte[ 1 ];
 
     @Override
     public int read() throws IOException {
-      int b;
-      if( finalStream != null && finalStream != this ) {
-        throw new IOException( "Replay stream taken over by another consumer." );
-      }
-      // If we can read from the buffer do so.
-      if( replayReadIndex < replayWriteIndex ) {
-        b = replayBuffer[ ++replayReadIndex ];
-      } else {
-        b = wrappedStream.read();
-        // If the underlying stream is not closed.
-        if( b > -1 ) {
-          if( replayWriteIndex < replayWriteLimit ) {
-            replayBuffer[ ++replayWriteIndex ] = (byte)b;
-            replayReadIndex++;
-          } else {
-            finalStream = this;
-          }
-        }
-      }
-      return b;
+      int count = read( single, 0, 1, true );
+      return count < 0 ? -1 : single[ 0 ] & 0xFF;
     }
 
+    @Override
     public int read( byte buffer[], int offset, int limit ) throws IOException {
-      int count = -1;
+      return read( buffer, offset, limit, false );
+    }
+
+    private int read( byte buffer[], int offset, int limit, boolean one ) throws IOException {
+      int count;
       if( finalStream != null && finalStream != this ) {
         throw new IOException( "Replay stream taken over by another consumer." );
       }
+      if( limit == 0 ) {
+        return 0;
+      }
       // If we can read from the buffer do so.
-      if( replayReadIndex < replayWriteIndex ) {
-        count = replayWriteIndex - replayReadIndex;
-        count = Math.min( limit, count );
-        System.arraycopy( replayBuffer, replayReadIndex+1, buffer, offset, count );
-        replayReadIndex += count;
+      if( finalStream == null && position < buffered ) {
+        int chunkOffset = (int)( position % CHUNK_SIZE );
+        count = Math.min( limit, Math.min( CHUNK_SIZE - chunkOffset, (int)( buffered - position ) ) );
+        System.arraycopy( chunks.get( (int)( position / CHUNK_SIZE ) ), chunkOffset, buffer, offset, count );
+        position += count;
+      // Else if we can read from the spill file do so.
+      } else if( finalStream == null && position < buffered + spilled ) {
+        spill.seek( position - buffered );
+        count = spill.read( buffer, offset, (int)Math.min( limit, buffered + spilled - position ) );
+        position += count;
       } else {
         count = wrappedStream.read( buffer, offset, limit );
         // If the underlying stream is not closed.
-        if( count > -1 ) {
-          if( replayWriteIndex+count < replayWriteLimit ) {
-            System.arraycopy( buffer, offset, replayBuffer, replayWriteIndex+1, count );
-            replayReadIndex += count;
-            replayWriteIndex += count;
+        if( count > 0 && finalStream == null ) {
+          if( keep( buffer, offset, count, one ) ) {
+            position += count;
           } else {
             finalStream = this;
           }
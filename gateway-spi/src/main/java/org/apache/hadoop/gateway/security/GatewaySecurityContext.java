@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.security;
+
+import javax.security.auth.Subject;
+import javax.servlet.ServletRequest;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable, indexed view of the principals of the authenticated user for the current request.
+ * It is built from the Subject once by the authentication provider and stored as a request attribute
+ * so that later filters can read the principals without looking up the Subject from the access
+ * control context and copying its principal sets.  The Subject is still available for legacy callers.
+ */
+public class GatewaySecurityContext {
+
+  public static final String REQUEST_ATTRIBUTE_NAME = GatewaySecurityContext.class.getName();
+
+  private final Subject subject;
+  private final PrimaryPrincipal primaryPrincipal;
+  private final String primaryPrincipalName;
+  private final ImpersonatedPrincipal impersonatedPrincipal;
+  private final List<GroupPrincipal> groupPrincipals;
+  private final Set<String> groupNames;
+
+  private GatewaySecurityContext( Subject subject ) {
+    PrimaryPrincipal primary = null;
+    ImpersonatedPrincipal impersonated = null;
+    Principal first = null;
+    List<GroupPrincipal> groups = new ArrayList<GroupPrincipal>();
+    Set<String> names = new HashSet<String>();
+    for( Principal principal : subject.getPrincipals() ) {
+      if( first == null ) {
+        first = principal;
+      }
+      if( principal instanceof PrimaryPrincipal ) {
+        if( primary == null ) {
+          primary = (PrimaryPrincipal)principal;
+        }
+      } else if( principal instanceof ImpersonatedPrincipal ) {
+        if( impersonated == null ) {
+          impersonated = (ImpersonatedPrincipal)principal;
+        }
+      } else if( principal instanceof GroupPrincipal ) {
+        groups.add( (GroupPrincipal)principal );
+        names.add( principal.getName() );
+      }
+    }
+    this.subject = subject;
+    this.primaryPrincipal = primary;
+    // Same as SubjectUtils.getPrimaryPrincipalName which falls back to the first principal found.
+    if( primary != null ) {
+      this.primaryPrincipalName = primary.getName();
+    } else if( first != null ) {
+      this.primaryPrincipalName = first.getName();
+    } else {
+      this.primaryPrincipalName = null;
+    }
+    this.impersonatedPrincipal = impersonated;
+    this.groupPrincipals = Collections.unmodifiableList( groups );
+    this.groupNames = Collections.unmodifiableSet( names );
+  }
+
+  public static GatewaySecurityContext fromSubject( Subject subject ) {
+    return subject == null ? null : new GatewaySecurityContext( subject );
+  }
+
+  /**
+   * Stores the context for the subject on the request.
+   * @return The context stored.
+   */
+  public static GatewaySecurityContext set( ServletRequest request, Subject subject ) {
+    GatewaySecurityContext context = fromSubject( subject );
+    request.setAttribute( REQUEST_ATTRIBUTE_NAME, context );
+    return context;
+  }
+
+  /**
+   * Returns the context stored on the request for the current Subject.  If none was stored, or the one
+   * stored was built for another Subject, for example before an identity assertion provider switched to
+   * the mapped Subject, the context is built from the current Subject and stored for the rest of the request.
+   * Outside of any Subject the stored context is returned as is.
+   * @return The context or null if there is no authenticated Subject.
+   */
+  public static GatewaySecurityContext get( ServletRequest request ) {
+    Object attribute = request.getAttribute( REQUEST_ATTRIBUTE_NAME );
+    Subject subject = SubjectUtils.getCurrentSubject();
+    if( attribute instanceof GatewaySecurityContext ) {
+      GatewaySecurityContext context = (GatewaySecurityContext)attribute;
+      if( subject == null || context.getSubject() == subject ) {
+        return context;
+      }
+    }
+    if( subject == null ) {
+      return null;
+    }
+    return set( request, subject );
+  }
+
+  public Subject getSubject() {
+    return subject;
+  }
+
+  public PrimaryPrincipal getPrimaryPrincipal() {
+    return primaryPrincipal;
+  }
+
+  public String getPrimaryPrincipalName() {
+    return primaryPrincipalName;
+  }
+
+  public ImpersonatedPrincipal getImpersonatedPrincipal() {
+    return impersonatedPrincipal;
+  }
+
+  public boolean isImpersonating() {
+    return impersonatedPrincipal != null;
+  }
+
+  public String getEffectivePrincipalName() {
+    return impersonatedPrincipal != null ? impersonatedPrincipal.getName() : primaryPrincipalName;
+  }
+
+  public List<GroupPrincipal> getGroupPrincipals() {
+    return groupPrincipals;
+  }
+
+  public Set<String> getGroupNames() {
+    return groupNames;
+  }
+
+  public boolean hasGroup( String name ) {
+    return groupNames.contains( name );
+  }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.httpclient;
+
+import org.apache.hadoop.gateway.services.Service;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Owns the backend connections shared by the dispatches of every deployed topology.
+ * Connections are pooled by route so that all the services pointing at the same backend
+ * reuse the same keep-alive connections and TLS sessions.  It also owns the threads that the asynchronous
+ * dispatches of every topology run on, so that their number is bounded for the whole gateway.
+ */
+public interface HttpClientService extends Service {
+
+  /**
+   * @return The shared connection manager.  Clients built on it must be marked as not owning
+   * the manager so that closing them leaves the pool open.
+   */
+  HttpClientConnectionManager getConnectionManager();
+
+  /**
+   * @return The leased, available, pending and maximum connection counts across all routes.
+   */
+  PoolStats getTotalStats();
+
+  /**
+   * @return The connection counts of each route that currently has pooled connections.
+   */
+  Map<HttpRoute, PoolStats> getRouteStats();
+
+  /**
+   * Makes the private pool of a dispatch visible alongside the shared one.
+   * @param name The unique name of the pool, typically the topology and the dispatch filter.
+   */
+  void addConnectionPool( String name, PoolingHttpClientConnectionManager pool );
+
+  /**
+   * Forgets the pool unless it has already been replaced by another with the same name.
+   */
+  void removeConnectionPool( String name, PoolingHttpClientConnectionManager pool );
+
+  /**
+   * @return The shared pool followed by the private pools keyed by name.
+   */
+  Map<String, PoolingHttpClientConnectionManager> getConnectionPools();
+
+  /**
+   * @return The executor shared by all the dispatches configured with dispatch.async.
+   */
+  ThreadPoolExecutor getAsyncDispatchExecutor();
+
+}
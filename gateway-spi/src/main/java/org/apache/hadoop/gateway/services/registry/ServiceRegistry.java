@@ -23,6 +23,12 @@ public interface ServiceRegistry {
 
   String getRegistrationCode(String clusterName);
   
+  /**
+   * Registers the URLs of a service.  The registration is visible to lookups at once but may be written to
+   * the registry file in the background, in which case a failure to write it is only logged.
+   * @return true if the registration code was verified and the registration accepted, false if the code was
+   * not verified or the registry could not be written on the calling thread.
+   */
   boolean registerService(String regCode, String clusterName, String serviceName, List<String> urls);
   
   String lookupServiceURL(String clusterName, String serviceName);
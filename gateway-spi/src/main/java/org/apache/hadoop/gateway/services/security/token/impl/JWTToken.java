@@ -93,6 +93,13 @@ public class JWTToken implements JWT {
     return header.toString();
   }
 
+  /**
+   * @return The algorithm named in the header or null if the token could not be parsed.
+   */
+  public JWSAlgorithm getSignatureAlgorithm() {
+    return jwt == null ? null : jwt.getHeader().getAlgorithm();
+  }
+
   /* (non-Javadoc)
    * @see org.apache.hadoop.gateway.services.security.token.impl.JWT#getPayloadToSign()
    */
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.security.auth.Subject;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class AsyncDispatchTest {
+
+  @Test( timeout = 10000 )
+  public void testDispatchRunsOnPoolThreadAsSubject() throws Exception {
+    final URI url = new URI( "http://backend:80/path" );
+    final CountDownLatch completed = new CountDownLatch( 1 );
+    final AtomicReference<Thread> dispatchThread = new AtomicReference<>();
+    final AtomicReference<Subject> dispatchSubject = new AtomicReference<>();
+
+    AsyncContext async = EasyMock.createNiceMock( AsyncContext.class );
+    async.setTimeout( 0 );
+    EasyMock.expectLastCall();
+    async.complete();
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        completed.countDown();
+        return null;
+      }
+    } );
+    final HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    final HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.expect( request.isAsyncSupported() ).andReturn( true ).anyTimes();
+    EasyMock.expect( request.isAsyncStarted() ).andReturn( false ).anyTimes();
+    EasyMock.expect( request.startAsync( request, response ) ).andReturn( async ).once();
+
+    Dispatch delegate = EasyMock.createNiceMock( Dispatch.class );
+    delegate.doGet( url, request, response );
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        dispatchThread.set( Thread.currentThread() );
+        dispatchSubject.set( Subject.getSubject( AccessController.getContext() ) );
+        return null;
+      }
+    } );
+    EasyMock.replay( async, request, response, delegate );
+
+    ThreadPoolExecutor executor = AsyncDispatch.newExecutor( 2 );
+    final AsyncDispatch dispatch = new AsyncDispatch( delegate, executor );
+    Subject subject = new Subject();
+    Subject.doAs( subject, new PrivilegedExceptionAction<Void>() {
+      @Override
+      public Void run() throws Exception {
+        dispatch.doGet( url, request, response );
+        return null;
+      }
+    } );
+
+    assertTrue( completed.await( 5, TimeUnit.SECONDS ) );
+    assertThat( dispatchThread.get(), not( sameInstance( Thread.currentThread() ) ) );
+    assertThat( dispatchSubject.get(), sameInstance( subject ) );
+    dispatch.destroy();
+    // The executor is shared with the other dispatches so destroying one must leave it running.
+    assertFalse( executor.isShutdown() );
+    executor.shutdown();
+    EasyMock.verify( async, delegate );
+  }
+
+  @Test
+  public void testDispatchRunsInlineWithoutAsyncSupport() throws Exception {
+    URI url = new URI( "http://backend:80/path" );
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.expect( request.isAsyncSupported() ).andReturn( false ).anyTimes();
+
+    final AtomicReference<Thread> dispatchThread = new AtomicReference<>();
+    Dispatch delegate = EasyMock.createNiceMock( Dispatch.class );
+    delegate.doPost( url, request, response );
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        dispatchThread.set( Thread.currentThread() );
+        return null;
+      }
+    } );
+    EasyMock.replay( request, response, delegate );
+
+    ThreadPoolExecutor executor = AsyncDispatch.newExecutor( 2 );
+    AsyncDispatch dispatch = new AsyncDispatch( delegate, executor );
+    dispatch.doPost( url, request, response );
+
+    assertThat( dispatchThread.get(), is( Thread.currentThread() ) );
+    dispatch.destroy();
+    executor.shutdown();
+    EasyMock.verify( delegate );
+  }
+
+}
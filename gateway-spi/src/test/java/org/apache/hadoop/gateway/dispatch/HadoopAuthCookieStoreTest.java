@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.protocol.RequestAddCookies;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.CookieSpecProvider;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.impl.cookie.DefaultCookieSpecProvider;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HadoopAuthCookieStoreTest {
+
+  private static Cookie cookie( String name, String host, long tokenExpiry ) {
+    BasicClientCookie cookie = new BasicClientCookie( name, "\"u=knox&p=knox/gateway@EXAMPLE.COM&t=kerberos&e=" + tokenExpiry + "&s=c2lnbmF0dXJl\"" );
+    cookie.setDomain( host );
+    cookie.setPath( "/" );
+    return cookie;
+  }
+
+  @Test
+  public void testOnlyAuthCookiesAreKept() {
+    HadoopAuthCookieStore store = new HadoopAuthCookieStore();
+    long expiry = System.currentTimeMillis() + 60 * 60 * 1000;
+    store.addCookie( cookie( "JSESSIONID", "nn.example.com", expiry ) );
+    assertThat( store.getCookies().isEmpty(), is( true ) );
+
+    Cookie auth = cookie( "hadoop.auth", "nn.example.com", expiry );
+    store.addCookie( auth );
+    assertThat( store.getCookies(), is( Collections.singletonList( auth ) ) );
+    assertThat( store.isRefreshDue( "nn.example.com" ), is( false ) );
+
+    // A newer cookie from the same host replaces the previous one.
+    Cookie renewed = cookie( "hadoop.auth", "NN.example.com", expiry + 1000 );
+    store.addCookie( renewed );
+    assertThat( store.getCookies(), is( Collections.singletonList( renewed ) ) );
+  }
+
+  @Test
+  public void testCookieNearTokenExpiryIsNotSentAndFallsDue() {
+    HadoopAuthCookieStore store = new HadoopAuthCookieStore();
+    long now = System.currentTimeMillis();
+    Cookie valid = cookie( "hadoop.auth", "nn.example.com", now + 60 * 60 * 1000 );
+    store.addCookie( valid );
+    store.addCookie( cookie( "hive.server2.auth", "hs2.example.com", now + HadoopAuthCookieStore.REFRESH_MARGIN / 2 ) );
+
+    assertThat( store.getCookies(), is( Collections.singletonList( valid ) ) );
+    assertThat( store.isRefreshDue( "hs2.example.com" ), is( true ) );
+    assertThat( store.isRefreshDue( "nn.example.com" ), is( false ) );
+
+    store.addCookie( cookie( "hive.server2.auth", "hs2.example.com", now + 60 * 60 * 1000 ) );
+    assertThat( store.getCookies().size(), is( 2 ) );
+    assertThat( store.isRefreshDue( "hs2.example.com" ), is( false ) );
+  }
+
+  @Test
+  public void testClearedCookieLeavesItsHostDue() {
+    HadoopAuthCookieStore store = new HadoopAuthCookieStore();
+    BasicClientCookie auth = (BasicClientCookie)cookie( "hadoop.auth", "rm.example.com", System.currentTimeMillis() + 60 * 60 * 1000 );
+    auth.setExpiryDate( new Date( System.currentTimeMillis() + 60 * 1000 ) );
+    store.addCookie( auth );
+    assertThat( store.clearExpired( new Date( System.currentTimeMillis() + 2 * 60 * 1000 ) ), is( true ) );
+    assertThat( store.getCookies().isEmpty(), is( true ) );
+    assertThat( store.isRefreshDue( "rm.example.com" ), is( true ) );
+
+    store.clear();
+    assertThat( store.isRefreshDue( "rm.example.com" ), is( false ) );
+  }
+
+  @Test
+  public void testReuseIsOnlyCountedWhenACookieIsSent() throws Exception {
+    HadoopAuthCookieStore store = new HadoopAuthCookieStore();
+    store.addCookie( cookie( "hadoop.auth", "nn.example.com", System.currentTimeMillis() + 60 * 60 * 1000 ) );
+
+    long before = HadoopAuthCookieStore.getReusedCount();
+    // The store holds a cookie but not for this host.
+    HttpRequest other = send( store, new HttpHost( "rm.example.com", 8088 ) );
+    assertThat( other.containsHeader( "Cookie" ), is( false ) );
+    assertThat( HadoopAuthCookieStore.getReusedCount(), is( before ) );
+
+    HttpRequest matching = send( store, new HttpHost( "nn.example.com", 50070 ) );
+    assertThat( matching.containsHeader( "Cookie" ), is( true ) );
+    assertThat( HadoopAuthCookieStore.getReusedCount(), is( before + 1 ) );
+  }
+
+  private static HttpRequest send( HadoopAuthCookieStore store, HttpHost host ) throws Exception {
+    HttpClientContext context = HttpClientContext.create();
+    context.setCookieStore( store );
+    context.setCookieSpecRegistry( RegistryBuilder.<CookieSpecProvider>create()
+        .register( CookieSpecs.DEFAULT, new DefaultCookieSpecProvider() ).build() );
+    context.setAttribute( HttpClientContext.HTTP_ROUTE, new HttpRoute( host ) );
+    context.setAttribute( HttpCoreContext.HTTP_TARGET_HOST, host );
+    HttpRequest request = new BasicHttpRequest( "GET", "/webhdfs/v1/?op=LISTSTATUS" );
+    new RequestAddCookies().process( request, context );
+    new HadoopAuthCookieStore.ReuseCounter().process( request, context );
+    return request;
+  }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.ietf.jgss.GSSException;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class KnoxSpnegoAuthSchemeTest {
+
+  @Test
+  public void testTokensForSameHostAreSerialized() throws Exception {
+    final AtomicInteger inside = new AtomicInteger();
+    final AtomicInteger maxInside = new AtomicInteger();
+    final KnoxSpnegoAuthScheme scheme = new KnoxSpnegoAuthScheme() {
+      @Override
+      protected byte[] generateGssToken( byte[] input, String authServer ) throws GSSException {
+        int count = inside.incrementAndGet();
+        synchronized( maxInside ) {
+          maxInside.set( Math.max( maxInside.get(), count ) );
+        }
+        try {
+          Thread.sleep( 50 );
+        } catch( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        } finally {
+          inside.decrementAndGet();
+        }
+        return new byte[ 0 ];
+      }
+    };
+
+    runConcurrently( 4, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        scheme.generateToken( new byte[ 0 ], "same-host.example.com" );
+        return null;
+      }
+    } );
+    assertThat( maxInside.get(), is( 1 ) );
+  }
+
+  @Test
+  public void testTokensForDifferentHostsRunConcurrently() throws Exception {
+    // Both calls only return once both of them are generating a token at the same time.
+    final CyclicBarrier barrier = new CyclicBarrier( 2 );
+    final KnoxSpnegoAuthScheme scheme = new KnoxSpnegoAuthScheme() {
+      @Override
+      protected byte[] generateGssToken( byte[] input, String authServer ) throws GSSException {
+        try {
+          barrier.await( 5, TimeUnit.SECONDS );
+        } catch( InterruptedException | BrokenBarrierException | TimeoutException e ) {
+          throw new IllegalStateException( "Tokens for different hosts were serialized", e );
+        }
+        return new byte[ 0 ];
+      }
+    };
+
+    final AtomicInteger host = new AtomicInteger();
+    runConcurrently( 2, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        scheme.generateToken( new byte[ 0 ], "host-" + host.incrementAndGet() + ".example.com" );
+        return null;
+      }
+    } );
+  }
+
+  private static void runConcurrently( int count, Callable<Void> task ) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool( count );
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for( int i = 0; i < count; i++ ) {
+        futures.add( executor.submit( task ) );
+      }
+      for( Future<Void> future : futures ) {
+        future.get( 10, TimeUnit.SECONDS );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -21,10 +21,13 @@ import org.apache.http.entity.BasicHttpEntity;
 import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.InputStreamEntity;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
@@ -38,6 +41,9 @@ public class PartiallyRepeatableHttpEntityTest {
 
   private static Charset UTF8 = Charset.forName( "UTF-8" );
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   // Variables
   // Consumers: C1, C2
   // Reads: FC - Full Content, PC - Partial Content, AC - Any Content
@@ -832,6 +838,122 @@ public class PartiallyRepeatableHttpEntityTest {
     }
   }
 
+  @Test
+  public void testSpilledContentCanBeReplayed() throws IOException {
+    StringBuilder builder = new StringBuilder();
+    while( builder.length() < 3 * PartiallyRepeatableHttpEntity.CHUNK_SIZE ) {
+      builder.append( "0123456789" );
+    }
+    String data = builder.toString();
+    BasicHttpEntity basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( data.getBytes( UTF8 ) ) );
+    PartiallyRepeatableHttpEntity replay = new PartiallyRepeatableHttpEntity( basic, 2 * PartiallyRepeatableHttpEntity.CHUNK_SIZE, -1 );
+
+    // The first consumer reads past the buffer, the rest of the content goes to the spill file.
+    assertThat( blockRead( replay.getContent(), UTF8, -1, 1000 ), is( data ) );
+    assertThat( replay.isRepeatable(), is( true ) );
+    assertThat( byteRead( replay.getContent(), -1 ), is( data ) );
+    assertThat( blockRead( replay.getContent(), UTF8, -1, 7 ), is( data ) );
+
+    replay.release();
+    try {
+      replay.getContent();
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testSpillLimitStillApplies() throws IOException {
+    String data = "0123456789012345678901234567890123456789";
+    BasicHttpEntity basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( data.getBytes( UTF8 ) ) );
+    PartiallyRepeatableHttpEntity replay = new PartiallyRepeatableHttpEntity( basic, 10, 20 );
+
+    assertThat( blockRead( replay.getContent(), UTF8, -1, 5 ), is( data ) );
+    assertThat( replay.isRepeatable(), is( false ) );
+    try {
+      replay.getContent();
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      // Expected.
+    } finally {
+      replay.release();
+    }
+  }
+
+  @Test
+  public void testSpillFileIsKeptInSpillDirectoryAndDeletedOnRelease() throws IOException {
+    File dir = folder.newFolder( "replay" );
+    String data = "0123456789012345678901234567890123456789";
+    BasicHttpEntity basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( data.getBytes( UTF8 ) ) );
+    PartiallyRepeatableHttpEntity replay = new PartiallyRepeatableHttpEntity( basic, 10, -1, dir );
+
+    assertThat( blockRead( replay.getContent(), UTF8, -1, 3 ), is( data ) );
+    assertThat( dir.list().length, is( 1 ) );
+    assertThat( byteRead( replay.getContent(), -1 ), is( data ) );
+
+    replay.release();
+    assertThat( dir.list().length, is( 0 ) );
+  }
+
+  @Test
+  public void testSpillFileIsDeletedOnReleaseAfterSpillLimitExceeded() throws IOException {
+    File dir = folder.newFolder( "replay" );
+    String data = "0123456789012345678901234567890123456789";
+    BasicHttpEntity basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( data.getBytes( UTF8 ) ) );
+    PartiallyRepeatableHttpEntity replay = new PartiallyRepeatableHttpEntity( basic, 10, 20, dir );
+
+    assertThat( blockRead( replay.getContent(), UTF8, -1, 3 ), is( data ) );
+    try {
+      replay.getContent();
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      // Expected.
+    }
+
+    replay.release();
+    assertThat( dir.list().length, is( 0 ) );
+  }
+
+  @Test
+  public void testMissingSpillDirectoryFailsTheRead() throws IOException {
+    File dir = new File( folder.getRoot(), "missing" );
+    String data = "0123456789012345678901234567890123456789";
+    BasicHttpEntity basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( data.getBytes( UTF8 ) ) );
+    PartiallyRepeatableHttpEntity replay = new PartiallyRepeatableHttpEntity( basic, 10, -1, dir );
+
+    try {
+      blockRead( replay.getContent(), UTF8, -1, 3 );
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      // Expected.
+    }
+    replay.release();
+    assertThat( dir.exists(), is( false ) );
+  }
+
+  @Test
+  public void testReplayedBytesAreUnsigned() throws IOException {
+    byte[] data = new byte[]{ (byte)0xFF, (byte)0x80, 0x7F };
+    BasicHttpEntity basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( data ) );
+    PartiallyRepeatableHttpEntity replay = new PartiallyRepeatableHttpEntity( basic, 20 );
+
+    InputStream first = replay.getContent();
+    assertThat( first.read(), is( 0xFF ) );
+    InputStream second = replay.getContent();
+    assertThat( second.read(), is( 0xFF ) );
+    assertThat( second.read(), is( 0x80 ) );
+    assertThat( second.read(), is( 0x7F ) );
+    assertThat( second.read(), is( -1 ) );
+    replay.release();
+  }
+
   private static String byteRead( InputStream stream, int total ) throws IOException {
     StringBuilder string = null;
     int c = 0;
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.security;
+
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import javax.security.auth.Subject;
+import javax.servlet.ServletRequest;
+import java.security.PrivilegedAction;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class GatewaySecurityContextTest {
+
+  @Test
+  public void testPrincipalsIndexedFromSubject() {
+    Subject subject = new Subject();
+    subject.getPrincipals().add( new PrimaryPrincipal( "guest" ) );
+    subject.getPrincipals().add( new GroupPrincipal( "users" ) );
+    subject.getPrincipals().add( new GroupPrincipal( "admin" ) );
+
+    GatewaySecurityContext context = GatewaySecurityContext.fromSubject( subject );
+    assertThat( context.getSubject(), sameInstance( subject ) );
+    assertThat( context.getPrimaryPrincipalName(), is( "guest" ) );
+    assertThat( context.getEffectivePrincipalName(), is( "guest" ) );
+    assertThat( context.isImpersonating(), is( false ) );
+    assertThat( context.getGroupPrincipals().size(), is( 2 ) );
+    assertThat( context.hasGroup( "users" ), is( true ) );
+    assertThat( context.hasGroup( "admin" ), is( true ) );
+    assertThat( context.hasGroup( "guest" ), is( false ) );
+
+    subject.getPrincipals().add( new ImpersonatedPrincipal( "other" ) );
+    context = GatewaySecurityContext.fromSubject( subject );
+    assertThat( context.isImpersonating(), is( true ) );
+    assertThat( context.getEffectivePrincipalName(), is( "other" ) );
+  }
+
+  @Test
+  public void testContextBuiltOnceFromCurrentSubject() {
+    final ServletRequest request = new StubRequest().request;
+    assertThat( GatewaySecurityContext.get( request ), nullValue() );
+
+    Subject subject = new Subject();
+    subject.getPrincipals().add( new PrimaryPrincipal( "guest" ) );
+    GatewaySecurityContext context = Subject.doAs( subject, new PrivilegedAction<GatewaySecurityContext>() {
+      @Override
+      public GatewaySecurityContext run() {
+        return GatewaySecurityContext.get( request );
+      }
+    } );
+    assertThat( context.getPrimaryPrincipalName(), is( "guest" ) );
+    // Later lookups return the stored context even outside of the doAs.
+    assertThat( GatewaySecurityContext.get( request ), sameInstance( context ) );
+  }
+
+  @Test
+  public void testContextRebuiltForAnotherSubject() {
+    final ServletRequest request = new StubRequest().request;
+
+    Subject authenticated = new Subject();
+    authenticated.getPrincipals().add( new PrimaryPrincipal( "guest" ) );
+    authenticated.getPrincipals().add( new GroupPrincipal( "users" ) );
+    final GatewaySecurityContext stored = GatewaySecurityContext.set( request, authenticated );
+
+    // An identity assertion provider that switches Subjects without storing a context.
+    Subject asserted = new Subject();
+    asserted.getPrincipals().add( new PrimaryPrincipal( "guest" ) );
+    asserted.getPrincipals().add( new ImpersonatedPrincipal( "admin" ) );
+    asserted.getPrincipals().add( new GroupPrincipal( "admins" ) );
+    GatewaySecurityContext context = Subject.doAs( asserted, new PrivilegedAction<GatewaySecurityContext>() {
+      @Override
+      public GatewaySecurityContext run() {
+        return GatewaySecurityContext.get( request );
+      }
+    } );
+    assertThat( context, not( sameInstance( stored ) ) );
+    assertThat( context.getSubject(), sameInstance( asserted ) );
+    assertThat( context.getEffectivePrincipalName(), is( "admin" ) );
+    assertThat( context.hasGroup( "admins" ), is( true ) );
+    assertThat( context.hasGroup( "users" ), is( false ) );
+
+    // The stored context is reused while its own Subject is current.
+    context = Subject.doAs( asserted, new PrivilegedAction<GatewaySecurityContext>() {
+      @Override
+      public GatewaySecurityContext run() {
+        return GatewaySecurityContext.get( request );
+      }
+    } );
+    assertThat( context.getSubject(), sameInstance( asserted ) );
+  }
+
+  private static class StubRequest {
+    private Object attribute;
+    private final ServletRequest request = EasyMock.createNiceMock( ServletRequest.class );
+
+    StubRequest() {
+      EasyMock.expect( request.getAttribute( GatewaySecurityContext.REQUEST_ATTRIBUTE_NAME ) ).andAnswer( new IAnswer<Object>() {
+        @Override
+        public Object answer() {
+          return attribute;
+        }
+      } ).anyTimes();
+      request.setAttribute( EasyMock.eq( GatewaySecurityContext.REQUEST_ATTRIBUTE_NAME ), EasyMock.anyObject() );
+      EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+        @Override
+        public Object answer() {
+          attribute = EasyMock.getCurrentArguments()[ 1 ];
+          return null;
+        }
+      } ).anyTimes();
+      EasyMock.replay( request );
+    }
+  }
+
+}
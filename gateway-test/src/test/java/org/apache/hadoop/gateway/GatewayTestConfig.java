@@ -320,6 +320,26 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return "2048";
   }
 
+  @Override
+  public int getSSLSessionCacheSize() {
+    return -1;
+  }
+
+  @Override
+  public int getSSLSessionTimeout() {
+    return -1;
+  }
+
+  @Override
+  public String getSSLProvider() {
+    return null;
+  }
+
+  @Override
+  public String getSSLProviderClass() {
+    return null;
+  }
+
   @Override
   public int getHttpClientMaxConnections() {
     return 16;
@@ -335,6 +355,36 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return -1;
   }
 
+  @Override
+  public int getHttpClientPoolMaxConnections() {
+    return 64;
+  }
+
+  @Override
+  public int getHttpClientPoolMaxConnectionsPerRoute() {
+    return 16;
+  }
+
+  @Override
+  public long getHttpClientPoolIdleTimeout() {
+    return 60 * 1000;
+  }
+
+  @Override
+  public long getHttpClientConnectionTimeToLive() {
+    return -1;
+  }
+
+  @Override
+  public int getHttpClientValidateAfterInactivity() {
+    return 1000;
+  }
+
+  @Override
+  public int getDispatchAsyncMaxThreads() {
+    return 16;
+  }
+
   @Override
   public int getThreadPoolMax() {
     return 16;
@@ -360,6 +410,11 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return 8*1024;
   }
 
+  @Override
+  public long getHttpServerIdleTimeout() {
+    return 30 * 1000;
+  }
+
   private int backupVersionLimit = -1;
 
   public void setGatewayDeploymentsBackupVersionLimit( int newBackupVersionLimit ) {
@@ -17,10 +17,26 @@
  */
 package org.apache.hadoop.gateway.util;
 
-import java.util.regex.Matcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class RegExUtils {
+
+  private static final int MAX_CACHED_WHITELISTS = 64;
+  private static final ConcurrentMap<String, Whitelist> WHITELISTS = new ConcurrentHashMap<String, Whitelist>();
+
+  // Characters that make a whitelist entry something other than a literal string.
+  private static final Pattern REGEX_SYNTAX = Pattern.compile( "[\\\\^$.|?*+()\\[\\]{}]" );
+  // Back references would be renumbered once the entries are combined.
+  private static final Pattern BACK_REFERENCE = Pattern.compile( "\\\\[1-9]|\\\\k<" );
+
   /**
    * Checks for a match of a given string against
    * a whitelist of semi-colon separated regex patterns.
@@ -29,15 +45,92 @@ public class RegExUtils {
    * @return true for a match otherwise false
    */
   public static boolean checkWhitelist(String whitelist, String tomatch) {
-    String[] patterns = whitelist.split(";");
-    for (String patternString : patterns) {
-      Pattern pattern = Pattern.compile(patternString);
-      Matcher matcher = pattern.matcher(tomatch);
-      if (matcher.matches()) {
+    return getWhitelist(whitelist).matches(tomatch);
+  }
+
+  /**
+   * @param whitelist - semi-colon separated patterns
+   * @return The compiled whitelist, shared with every other caller using the same patterns.
+   */
+  public static Whitelist getWhitelist(String whitelist) {
+    Whitelist compiled = WHITELISTS.get(whitelist);
+    if (compiled == null) {
+      compiled = new Whitelist(whitelist);
+      if (WHITELISTS.size() >= MAX_CACHED_WHITELISTS) {
+        WHITELISTS.clear();
+      }
+      WHITELISTS.put(whitelist, compiled);
+    }
+    return compiled;
+  }
+
+  /**
+   * A semi-colon separated list of regex patterns compiled once.
+   * Literal entries are looked up in a set and the others are combined into a single pattern,
+   * so a check costs one match regardless of how many entries the list has.
+   */
+  public static final class Whitelist {
+
+    private final Set<String> literals;
+    private final List<Pattern> patterns;
+
+    public Whitelist(String whitelist) {
+      Set<String> literals = new HashSet<String>();
+      List<String> expressions = new ArrayList<String>();
+      boolean combinable = true;
+      for (String patternString : whitelist.split(";")) {
+        if (REGEX_SYNTAX.matcher(patternString).find()) {
+          // Fail on an invalid entry just as compiling it on its own would.
+          Pattern.compile(patternString);
+          expressions.add(patternString);
+          combinable &= !BACK_REFERENCE.matcher(patternString).find();
+        } else {
+          literals.add(patternString);
+        }
+      }
+      this.literals = Collections.unmodifiableSet(literals);
+      this.patterns = Collections.unmodifiableList(compile(expressions, combinable));
+    }
+
+    private static List<Pattern> compile(List<String> expressions, boolean combinable) {
+      List<Pattern> compiled = new ArrayList<Pattern>();
+      if (combinable && expressions.size() > 1) {
+        StringBuilder combined = new StringBuilder();
+        for (String expression : expressions) {
+          if (combined.length() > 0) {
+            combined.append('|');
+          }
+          combined.append("(?:").append(expression).append(')');
+        }
+        try {
+          compiled.add(Pattern.compile(combined.toString()));
+          return compiled;
+        } catch (PatternSyntaxException e) {
+          // Entries such as duplicate named groups can not be combined, check them one at a time.
+        }
+      }
+      for (String expression : expressions) {
+        compiled.add(Pattern.compile(expression));
+      }
+      return compiled;
+    }
+
+    /**
+     * @param tomatch - the string to match against list
+     * @return true for a match otherwise false
+     */
+    public boolean matches(String tomatch) {
+      if (literals.contains(tomatch)) {
         return true;
       }
+      for (Pattern pattern : patterns) {
+        if (pattern.matcher(tomatch).matches()) {
+          return true;
+        }
+      }
+      return false;
     }
-    return false;
+
   }
 
 }
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.util;
+
+import org.junit.Test;
+
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RegExUtilsTest {
+
+  @Test
+  public void testCombinedWhitelistMatchesLikeEachEntry() {
+    String whitelist = "^/.*$;^https?://localhost:\\d{0,9}/.*$;^https?://.*example.com:8080/.*$;https://exact.example.com/path;(?i)^https://CASE.example.com/.*$";
+    String[] candidates = {
+        "/gateway/sandbox",
+        "http://localhost:5555/foo",
+        "https://www.example.com:8080/foo",
+        "https://exact.example.com/path",
+        "https://exact.example.com/path/more",
+        "https://case.EXAMPLE.com/x",
+        "https://www.example.com:8443/foo",
+        "http://evil.com/?https://www.example.com:8080/",
+        "" };
+    for (String candidate : candidates) {
+      boolean expected = false;
+      for (String entry : whitelist.split(";")) {
+        expected |= candidate.matches(entry);
+      }
+      assertEquals(candidate, expected, RegExUtils.checkWhitelist(whitelist, candidate));
+    }
+  }
+
+  @Test
+  public void testWhitelistIsCompiledOnce() {
+    String whitelist = "^https?://.*\\.example\\.org/.*$;^https?://.*\\.example\\.net/.*$";
+    assertSame(RegExUtils.getWhitelist(whitelist), RegExUtils.getWhitelist(whitelist));
+    assertTrue(RegExUtils.getWhitelist(whitelist).matches("https://host.example.net/"));
+  }
+
+  @Test
+  public void testBackReferencesAreKeptPerEntry() {
+    String whitelist = "^(a+)b\\1$;^(c+)d\\1$";
+    assertTrue(RegExUtils.checkWhitelist(whitelist, "aabaa"));
+    assertTrue(RegExUtils.checkWhitelist(whitelist, "cdc"));
+    assertFalse(RegExUtils.checkWhitelist(whitelist, "cdcc"));
+  }
+
+  @Test
+  public void testInvalidEntryIsRejected() {
+    try {
+      RegExUtils.checkWhitelist("^/.*$;^https?://(unclosed.*$", "/foo");
+      fail("Expected PatternSyntaxException");
+    } catch (PatternSyntaxException e) {
+      // Expected.
+    }
+  }
+
+}
@@ -24,52 +24,89 @@ import org.apache.hadoop.gateway.config.spi.ConfigurationInjector;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DefaultConfigurationInjector implements ConfigurationInjector {
 
   private static ConvertUtilsBean2 DEFAULT_CONVERTER = new ConvertUtilsBean2();
 
+  // Every dispatch filter and deployment contributor is configured through here so the reflective
+  // scan of each class is done once and the resulting plan kept with the class.
+  private static final ClassValue<InjectionPlan> PLANS = new ClassValue<InjectionPlan>() {
+    @Override
+    protected InjectionPlan computeValue( Class<?> type ) {
+      return new InjectionPlan( type );
+    }
+  };
+
   @Override
   public void configure( Object target, ConfigurationAdapter adapter, ConfigurationBinding binding )
       throws ConfigurationException {
-    Class type = target.getClass();
-    while( type != null ) {
-      injectClass( type, target, adapter, binding );
-      type = type.getSuperclass();
+    InjectionPlan plan = PLANS.get( target.getClass() );
+    for( Injection injection : plan.injections ) {
+      injection.inject( target, adapter, binding );
     }
   }
 
-  private void injectClass( Class type, Object target, ConfigurationAdapter config, ConfigurationBinding binding )
-      throws ConfigurationException {
-    Field[] fields = type.getDeclaredFields();
-    for( Field field : fields ) {
-      injectFieldValue( field, target, config, binding );
-    }
-    Method[] methods = type.getDeclaredMethods();
-    for( Method method : methods ) {
-      injectMethodValue( method, target, config, binding );
+  // The annotated fields and then methods of the class followed by those of each superclass.
+  private static class InjectionPlan {
+
+    private final List<Injection> injections = new ArrayList<Injection>();
+
+    private InjectionPlan( Class<?> type ) {
+      while( type != null ) {
+        for( Field field : type.getDeclaredFields() ) {
+          Configure annotation = field.getAnnotation( Configure.class );
+          if( annotation != null ) {
+            injections.add( new FieldInjection( field ) );
+          }
+        }
+        for( Method method : type.getDeclaredMethods() ) {
+          Configure annotation = method.getAnnotation( Configure.class );
+          if( annotation != null ) {
+            injections.add( new MethodInjection( method ) );
+          }
+        }
+        type = type.getSuperclass();
+      }
     }
+
   }
 
-  private void injectFieldValue( Field field, Object target, ConfigurationAdapter adapter, ConfigurationBinding binding )
-      throws ConfigurationException {
-    Configure annotation = field.getAnnotation( Configure.class );
-    if( annotation != null ) {
-      Alias alias = field.getAnnotation( Alias.class );
-      String name = getConfigName( field, alias );
+  private interface Injection {
+    void inject( Object target, ConfigurationAdapter adapter, ConfigurationBinding binding ) throws ConfigurationException;
+  }
+
+  private static class FieldInjection implements Injection {
+
+    private final Field field;
+    private final String name;
+    private final boolean optional;
+    private volatile boolean accessible;
+
+    private FieldInjection( Field field ) {
+      this.field = field;
+      this.name = getConfigName( field, field.getAnnotation( Alias.class ) );
+      this.optional = field.getAnnotation( Optional.class ) != null;
+    }
+
+    @Override
+    public void inject( Object target, ConfigurationAdapter adapter, ConfigurationBinding binding )
+        throws ConfigurationException {
       String bind = getBindName( target, name, binding );
       Object value = retrieveValue( target, bind, name, field.getType(), adapter, binding );
       if( value == null ) {
-        Optional optional = field.getAnnotation( Optional.class );
-        if( optional == null ) {
+        if( !optional ) {
           throw new ConfigurationException( String.format(
               "Failed to find configuration for %s bound to %s of %s via %s",
               bind, name, target.getClass().getName(), adapter.getClass().getName() ) );
         }
       } else {
         try {
-          if( !field.isAccessible() ) {
+          if( !accessible ) {
             field.setAccessible( true );
+            accessible = true;
           }
           field.set( target, value );
         } catch( Exception e ) {
@@ -79,23 +116,41 @@ public class DefaultConfigurationInjector implements ConfigurationInjector {
         }
       }
     }
+
   }
 
-  private void injectMethodValue( Method method, Object target, ConfigurationAdapter adapter, ConfigurationBinding binding )
-      throws ConfigurationException {
-    Configure methodTag = method.getAnnotation( Configure.class );
-    if( methodTag != null ) {
-      Alias aliasTag = method.getAnnotation( Alias.class );
-      String methodName = getConfigName( method, aliasTag );
-      Class[] argTypes = method.getParameterTypes();
-      Object[] args = new Object[ argTypes.length ];
+  private static class MethodInjection implements Injection {
+
+    private final Method method;
+    private final String methodName;
+    private final Class<?>[] argTypes;
+    private final String[] argNames;
+    private final Default[] argDefaults;
+    private volatile boolean accessible;
+
+    private MethodInjection( Method method ) {
+      this.method = method;
+      this.methodName = getConfigName( method, method.getAnnotation( Alias.class ) );
+      this.argTypes = method.getParameterTypes();
+      this.argNames = new String[ argTypes.length ];
+      this.argDefaults = new Default[ argTypes.length ];
       Annotation[][] argTags = method.getParameterAnnotations();
       for( int i=0; i<argTypes.length; i++ ) {
-        String argName = getConfigName( methodName, argTags[i] );
+        argNames[ i ] = getConfigName( methodName, argTags[i] );
+        argDefaults[ i ] = findAnnotation( argTags[i], Default.class );
+      }
+    }
+
+    @Override
+    public void inject( Object target, ConfigurationAdapter adapter, ConfigurationBinding binding )
+        throws ConfigurationException {
+      Object[] args = new Object[ argTypes.length ];
+      for( int i=0; i<argTypes.length; i++ ) {
+        String argName = argNames[ i ];
         String bndName = getBindName( target, argName, binding );
         Object argValue = retrieveValue( target, bndName, argName, argTypes[i], adapter, binding );
         if( argValue == null ) {
-          Default defTag = findAnnotation( argTags[i], Default.class );
+          Default defTag = argDefaults[ i ];
           if( defTag != null ) {
             String strValue = defTag.value();
             argValue = convertValue( target, argName, strValue, argTypes[i] );
@@ -107,8 +162,9 @@ public class DefaultConfigurationInjector implements ConfigurationInjector {
         }
         args[ i ] = argValue;
       }
-      if( !method.isAccessible() ) {
+      if( !accessible ) {
         method.setAccessible( true );
+        accessible = true;
       }
       try {
         method.invoke( target, args );
@@ -118,9 +174,10 @@ public class DefaultConfigurationInjector implements ConfigurationInjector {
             methodName, target.getClass().getName() ), e );
       }
     }
+
   }
 
-  private Object convertValue( Object target, String name, Object strValue, Class<?> type ) {
+  private static Object convertValue( Object target, String name, Object strValue, Class<?> type ) {
     Object objValue = null;
     try {
       objValue = DEFAULT_CONVERTER.convert( strValue, type );
@@ -132,7 +189,7 @@ public class DefaultConfigurationInjector implements ConfigurationInjector {
     return objValue;
   }
 
-  private Object retrieveValue( Object target, String bind, String name, Class<?> type, ConfigurationAdapter adapter, ConfigurationBinding binding ) {
+  private static Object retrieveValue( Object target, String bind, String name, Class<?> type, ConfigurationAdapter adapter, ConfigurationBinding binding ) {
     Object value;
     try {
       value = adapter.getConfigurationValue( bind );
@@ -148,7 +205,7 @@ public class DefaultConfigurationInjector implements ConfigurationInjector {
     return value;
   }
 
-  private <T extends Annotation> T findAnnotation( Annotation[] annotations, Class<T> type ) {
+  private static <T extends Annotation> T findAnnotation( Annotation[] annotations, Class<T> type ) {
     T found = null;
     for( Annotation current : annotations ) {
       if( type.isAssignableFrom( current.getClass() ) ) {
@@ -376,4 +376,36 @@ public class FuncTest {
 
   }
 
+  public static class DerivedBean extends TestBean {
+    @Configure
+    String derivedMember = "derivedDefault";
+  }
+
+  @Test
+  public void testRepeatedInjectionIncludingSuperclass() {
+    for( int i = 0; i < 3; i++ ) {
+      Map<String,String> testConfig = new HashMap<String,String>();
+      testConfig.put( "derivedMember", "derivedValue" + i );
+      testConfig.put( "stringMember", "stringValue" + i );
+      testConfig.put( "intMember", Integer.toString( i ) );
+      testConfig.put( "integerMember", Integer.toString( i ) );
+      testConfig.put( "stringProp", "stringValue" + i );
+      testConfig.put( "altStringProp", "stringValue" );
+      testConfig.put( "altArgStringProp", "stringValue" );
+      testConfig.put( "multiArg1", "stringValue" );
+      testConfig.put( "multiArg2", "42" );
+      testConfig.put( "multiArg3", Integer.toString( i ) );
+
+      DerivedBean testBean = new DerivedBean();
+      configuration().target( testBean ).source( testConfig ).inject();
+
+      assertThat( testBean.derivedMember, is( "derivedValue" + i ) );
+      assertThat( testBean.stringMember, is( "stringValue" + i ) );
+      assertThat( testBean.intMember, is( i ) );
+      assertThat( testBean.integerMember, is( Integer.valueOf( i ) ) );
+      assertThat( testBean.stringPropField, is( "stringValue" + i ) );
+      assertThat( testBean.multiArgIntField, is( i ) );
+    }
+  }
+
 }